@@ -0,0 +1,118 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.data.element;
+
+import de.esoco.lib.model.DataModel;
+
+import java.util.ArrayList;
+
+/**
+ * A list of the rows in a page of query results, typically stored in a
+ * {@link QueryResultElement}. This class exists to provide a compact
+ * serialization format for result pages through the custom field serializer
+ * {@link QueryResultRows_CustomFieldSerializer}. Instead of serializing each
+ * row separately the rows are written in a column-oriented format where
+ * repeated strings are only transferred once per page. If a
+ * {@link ValueDictionary} has been set resource IDs are encoded with the codes
+ * of that dictionary so that they only need to be transferred once per
+ * session.
+ *
+ * @author eso
+ */
+public class QueryResultRows extends ArrayList<DataModel<String>> {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient ValueDictionary valueDictionary;
+
+	private transient int dictionaryStart;
+
+	private transient boolean dictionaryReset;
+
+	/**
+	 * Creates a new empty instance.
+	 */
+	public QueryResultRows() {
+	}
+
+	/**
+	 * Creates a new empty instance with a certain initial capacity.
+	 *
+	 * @param capacity The initial capacity
+	 */
+	public QueryResultRows(int capacity) {
+		super(capacity);
+	}
+
+	/**
+	 * Sets the session dictionary to encode resource IDs with. The ID and size
+	 * of the dictionary known to the client are used to determine which
+	 * dictionary entries need to be transferred with these rows. If the client
+	 * dictionary ID doesn't match the ID of the given dictionary or if the
+	 * client reports more entries than the dictionary contains all entries
+	 * will be transferred. In the latter case the client dictionary has been
+	 * built from a different dictionary and must be
+	 * {@link #isDictionaryReset() reset}.
+	 *
+	 * @param dictionary           The session value dictionary
+	 * @param clientDictionaryId   The ID of the client dictionary
+	 * @param clientDictionarySize The size of the client dictionary
+	 */
+	public void setValueDictionary(ValueDictionary dictionary,
+		String clientDictionaryId, int clientDictionarySize) {
+		boolean sameDictionary = dictionary.getId().equals(clientDictionaryId);
+
+		valueDictionary = dictionary;
+
+		// a client that knows more entries has received them from a different
+		// dictionary with the same ID
+		dictionaryReset =
+			sameDictionary && clientDictionarySize > dictionary.size();
+		dictionaryStart =
+			sameDictionary && !dictionaryReset ? clientDictionarySize : 0;
+	}
+
+	/**
+	 * Returns the index of the first session dictionary entry that needs to
+	 * be transferred to the client.
+	 *
+	 * @return The dictionary start index
+	 */
+	final int getDictionaryStart() {
+		return dictionaryStart;
+	}
+
+	/**
+	 * Returns the session dictionary to encode resource IDs with.
+	 *
+	 * @return The value dictionary or NULL for none
+	 */
+	final ValueDictionary getValueDictionary() {
+		return valueDictionary;
+	}
+
+	/**
+	 * Checks whether the client dictionary contains entries that don't belong
+	 * to the session dictionary and therefore must be replaced with all
+	 * entries of the session dictionary.
+	 *
+	 * @return TRUE if the client dictionary must be reset
+	 */
+	final boolean isDictionaryReset() {
+		return dictionaryReset;
+	}
+}
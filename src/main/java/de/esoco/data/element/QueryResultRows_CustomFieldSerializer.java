@@ -0,0 +1,594 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.data.element;
+
+import com.google.gwt.user.client.rpc.CustomFieldSerializer;
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.client.rpc.SerializationStreamReader;
+import com.google.gwt.user.client.rpc.SerializationStreamWriter;
+import de.esoco.lib.model.DataModel;
+import de.esoco.lib.model.ListDataModel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A GWT custom field serializer for the {@link QueryResultRows} class. If all
+ * rows are instances of {@link HierarchicalDataObject} they will be written in
+ * a column-oriented format:
+ *
+ * <ul>
+ *   <li>All value and flag strings are collected in a dictionary that is
+ *   written once, followed by the dictionary codes of the values in column
+ *   order.</li>
+ *   <li>Row indices are only written as the index of the first row if they
+ *   are consecutive (as in query results) and as deltas otherwise.</li>
+ *   <li>Value counts and editable flags are only written per row if they
+ *   differ between rows.</li>
+ *   <li>If the rows have a session {@link ValueDictionary} resource IDs are
+ *   encoded with that dictionary and only the dictionary entries that are
+ *   not yet known by the client are written. The client stores them in the
+ *   {@link ValueDictionary#getClientDictionary() client dictionary}. If the
+ *   client dictionary contains more entries than the session dictionary all
+ *   entries are written and replace those of the client dictionary.</li>
+ * </ul>
+ *
+ * <p>The de-serialized rows are standard {@link HierarchicalDataObject}
+ * instances so that client code is not affected by the encoding.</p>
+ *
+ * @author eso
+ */
+public class QueryResultRows_CustomFieldSerializer
+	extends CustomFieldSerializer<QueryResultRows> {
+
+	private static final int NULL_CODE = -1;
+
+	private static final int FIRST_SESSION_CODE = -2;
+
+	private static final String RESOURCE_PREFIX = "$";
+
+	private static final int EDITABLE_NONE = 0;
+
+	private static final int EDITABLE_ALL = 1;
+
+	private static final int EDITABLE_MIXED = 2;
+
+	// ---------------------------------------------------------
+
+	/**
+	 * Not used, implemented in {@link #instantiate(SerializationStreamReader)}
+	 * instead.
+	 *
+	 * @param reader The stream reader to read the object data from
+	 * @param object The object to de-serialize
+	 * @throws SerializationException If the stream access fails
+	 */
+	public static void deserialize(SerializationStreamReader reader,
+		QueryResultRows object) throws SerializationException {
+	}
+
+	/**
+	 * Restores the rows from a serialization stream.
+	 *
+	 * @param reader The stream reader to read the object data from
+	 * @return The restored object
+	 * @throws SerializationException If the stream access fails
+	 */
+	@SuppressWarnings("unchecked")
+	public static QueryResultRows instantiate(SerializationStreamReader reader)
+		throws SerializationException {
+		int rowCount = reader.readInt();
+		QueryResultRows result = new QueryResultRows(rowCount);
+
+		if (rowCount > 0) {
+			if (reader.readBoolean()) {
+				readColumns(reader, result, rowCount);
+			} else {
+				for (int i = 0; i < rowCount; i++) {
+					result.add((DataModel<String>) reader.readObject());
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Writes the rows to a serialization stream.
+	 *
+	 * @param writer The stream writer to write the object data to
+	 * @param object The object to serialize
+	 * @throws SerializationException If the stream access fails
+	 */
+	public static void serialize(SerializationStreamWriter writer,
+		QueryResultRows object) throws SerializationException {
+		int rowCount = object.size();
+		boolean columnar = true;
+
+		writer.writeInt(rowCount);
+
+		for (DataModel<String> row : object) {
+			if (!(row instanceof HierarchicalDataObject)) {
+				columnar = false;
+
+				break;
+			}
+		}
+
+		if (rowCount > 0) {
+			writer.writeBoolean(columnar);
+
+			if (columnar) {
+				writeColumns(writer, object, rowCount);
+			} else {
+				for (DataModel<String> row : object) {
+					writer.writeObject(row);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes a value code that has been created by
+	 * {@link #encode(String, Map, List, ValueDictionary)}.
+	 *
+	 * @param code       The value code
+	 * @param dictionary The page dictionary
+	 * @return The decoded value (NULL for the NULL code)
+	 */
+	private static String decode(int code, String[] dictionary) {
+		if (code == NULL_CODE) {
+			return null;
+		} else if (code <= FIRST_SESSION_CODE) {
+			return ValueDictionary
+				.getClientDictionary()
+				.get(FIRST_SESSION_CODE - code);
+		} else {
+			return dictionary[code];
+		}
+	}
+
+	/**
+	 * Returns the dictionary code of a string and adds it to the dictionary if
+	 * necessary. If a session dictionary is provided resource IDs will be
+	 * encoded with the negative codes of that dictionary (below
+	 * {@link #FIRST_SESSION_CODE}) if possible.
+	 *
+	 * @param value             The string value (may be NULL)
+	 * @param codes             The mapping from strings to codes
+	 * @param dictionary        The list of dictionary strings
+	 * @param sessionDictionary The session dictionary or NULL for none
+	 * @return The dictionary code
+	 */
+	private static int encode(String value, Map<String, Integer> codes,
+		List<String> dictionary, ValueDictionary sessionDictionary) {
+		int code = NULL_CODE;
+
+		if (sessionDictionary != null && value != null &&
+			value.startsWith(RESOURCE_PREFIX)) {
+			int sessionCode = sessionDictionary.encode(value);
+
+			if (sessionCode >= 0) {
+				return FIRST_SESSION_CODE - sessionCode;
+			}
+		}
+
+		if (value != null) {
+			Integer existingCode = codes.get(value);
+
+			if (existingCode != null) {
+				code = existingCode.intValue();
+			} else {
+				code = dictionary.size();
+				dictionary.add(value);
+				codes.put(value, Integer.valueOf(code));
+			}
+		}
+
+		return code;
+	}
+
+	/**
+	 * Reads the hierarchical children of a row.
+	 *
+	 * @param reader   The stream reader
+	 * @param id       The row ID
+	 * @param index    The row index
+	 * @param values   The row values
+	 * @param editable The editable state
+	 * @param flags    The row flags
+	 * @return The new data object
+	 * @throws SerializationException If the stream access fails
+	 */
+	@SuppressWarnings("unchecked")
+	private static HierarchicalDataObject readChildren(
+		SerializationStreamReader reader, String id, int index,
+		List<String> values, boolean editable, Set<String> flags)
+		throws SerializationException {
+		int count = reader.readInt();
+
+		if (count < 0) {
+			DataModel<DataModel<String>> children =
+				(DataModel<DataModel<String>>) reader.readObject();
+
+			return new HierarchicalDataObject(id, index, values, editable,
+				flags, children);
+		} else {
+			List<DataModel<String>> children = null;
+
+			if (count > 0) {
+				children = new ArrayList<DataModel<String>>(count);
+
+				for (int i = 0; i < count; i++) {
+					children.add((HierarchicalDataObject) reader.readObject());
+				}
+			}
+
+			return new HierarchicalDataObject(id, index, values, editable,
+				flags, children);
+		}
+	}
+
+	/**
+	 * Reads rows that have been written by
+	 * {@link #writeColumns(SerializationStreamWriter, QueryResultRows, int)}.
+	 *
+	 * @param reader   The stream reader
+	 * @param rows     The list to add the rows to
+	 * @param rowCount The number of rows
+	 * @throws SerializationException If the stream access fails
+	 */
+	private static void readColumns(SerializationStreamReader reader,
+		QueryResultRows rows, int rowCount) throws SerializationException {
+		if (reader.readBoolean()) {
+			readSessionDictionary(reader);
+		}
+
+		int dictionarySize = reader.readInt();
+		String[] dictionary = new String[dictionarySize];
+
+		for (int i = 0; i < dictionarySize; i++) {
+			dictionary[i] = reader.readString();
+		}
+
+		String[] ids = new String[rowCount];
+		int[] indices = new int[rowCount];
+		int[] valueCounts = new int[rowCount];
+		boolean[] editable = new boolean[rowCount];
+
+		for (int row = 0; row < rowCount; row++) {
+			ids[row] = reader.readString();
+		}
+
+		indices[0] = reader.readInt();
+
+		boolean consecutive = reader.readBoolean();
+
+		for (int row = 1; row < rowCount; row++) {
+			indices[row] = indices[row - 1] +
+				(consecutive ? 1 : reader.readInt());
+		}
+
+		int columnCount = reader.readInt();
+		boolean uniformCount = reader.readBoolean();
+
+		for (int row = 0; row < rowCount; row++) {
+			valueCounts[row] = uniformCount ? columnCount : reader.readInt();
+		}
+
+		int editableMode = reader.readInt();
+
+		for (int row = 0; row < rowCount; row++) {
+			editable[row] = editableMode == EDITABLE_MIXED ?
+			                reader.readBoolean() :
+			                editableMode == EDITABLE_ALL;
+		}
+
+		List<List<String>> rowValues = new ArrayList<>(rowCount);
+
+		for (int row = 0; row < rowCount; row++) {
+			rowValues.add(new ArrayList<String>(valueCounts[row]));
+		}
+
+		for (int column = 0; column < columnCount; column++) {
+			for (int row = 0; row < rowCount; row++) {
+				if (column < valueCounts[row]) {
+					int code = reader.readInt();
+
+					rowValues.get(row).add(decode(code, dictionary));
+				}
+			}
+		}
+
+		boolean hasChildren = reader.readBoolean();
+
+		for (int row = 0; row < rowCount; row++) {
+			int flagCount = reader.readInt();
+			Set<String> flags = null;
+
+			if (flagCount > 0) {
+				flags = new HashSet<String>(flagCount);
+
+				for (int i = 0; i < flagCount; i++) {
+					flags.add(dictionary[reader.readInt()]);
+				}
+			}
+
+			HierarchicalDataObject dataObject;
+
+			if (hasChildren) {
+				dataObject =
+					readChildren(reader, ids[row], indices[row],
+						rowValues.get(row), editable[row], flags);
+			} else {
+				List<DataModel<String>> noChildren = null;
+
+				dataObject =
+					new HierarchicalDataObject(ids[row], indices[row],
+						rowValues.get(row), editable[row], flags, noChildren);
+			}
+
+			rows.add(dataObject);
+		}
+	}
+
+	/**
+	 * Reads the new entries of the session dictionary and adds them to the
+	 * client dictionary.
+	 *
+	 * @param reader The stream reader
+	 * @throws SerializationException If the stream access fails or if the
+	 *                                entries belong to a dictionary that has
+	 *                                been replaced on the client
+	 */
+	private static void readSessionDictionary(SerializationStreamReader reader)
+		throws SerializationException {
+		String id = reader.readString();
+		boolean reset = reader.readBoolean();
+		int start = reader.readInt();
+		int count = reader.readInt() - start;
+		List<String> values = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			values.add(reader.readString());
+		}
+
+		ValueDictionary clientDictionary =
+			ValueDictionary.getClientDictionary();
+
+		if (reset) {
+			clientDictionary.replace(id, values);
+		} else if (!clientDictionary.update(id, start, values)) {
+			throw new SerializationException(
+				"Query result of a replaced value dictionary: " + id);
+		}
+	}
+
+	/**
+	 * Writes the hierarchical children of a row in the same format as the
+	 * {@link HierarchicalDataObject_CustomFieldSerializer}.
+	 *
+	 * @param writer The stream writer
+	 * @param object The row object
+	 * @throws SerializationException If the stream access fails
+	 */
+	private static void writeChildren(SerializationStreamWriter writer,
+		HierarchicalDataObject object) throws SerializationException {
+		if (object.children != null) {
+			if (object.children instanceof ListDataModel) {
+				writer.writeInt(object.children.getElementCount());
+
+				for (DataModel<String> child : object.children) {
+					writer.writeObject(child);
+				}
+			} else {
+				writer.writeInt(-1);
+				writer.writeObject(object.children);
+			}
+		} else {
+			writer.writeInt(0);
+		}
+	}
+
+	/**
+	 * Writes the rows in column-oriented format.
+	 *
+	 * @param writer   The stream writer
+	 * @param rows     The rows to write
+	 * @param rowCount The number of rows
+	 * @throws SerializationException If the stream access fails
+	 */
+	private static void writeColumns(SerializationStreamWriter writer,
+		QueryResultRows rows, int rowCount) throws SerializationException {
+		HierarchicalDataObject[] dataObjects =
+			new HierarchicalDataObject[rowCount];
+
+		Map<String, Integer> codes = new HashMap<>();
+		List<String> dictionary = new ArrayList<>();
+		ValueDictionary sessionDictionary = rows.getValueDictionary();
+
+		int columnCount = 0;
+		boolean uniformCount = true;
+		boolean consecutive = true;
+		boolean hasChildren = false;
+		int editableCount = 0;
+
+		for (int row = 0; row < rowCount; row++) {
+			HierarchicalDataObject dataObject =
+				(HierarchicalDataObject) rows.get(row);
+			int valueCount = dataObject.values.size();
+
+			dataObjects[row] = dataObject;
+
+			if (row == 0) {
+				columnCount = valueCount;
+			} else {
+				consecutive &=
+					dataObject.index == dataObjects[row - 1].index + 1;
+				uniformCount &= valueCount == columnCount;
+				columnCount = Math.max(columnCount, valueCount);
+			}
+
+			hasChildren |= dataObject.children != null;
+
+			if (dataObject.editable) {
+				editableCount++;
+			}
+		}
+
+		int[][] valueCodes = new int[columnCount][rowCount];
+
+		for (int column = 0; column < columnCount; column++) {
+			for (int row = 0; row < rowCount; row++) {
+				List<String> values = dataObjects[row].values;
+
+				if (column < values.size()) {
+					valueCodes[column][row] =
+						encode(values.get(column), codes, dictionary,
+							sessionDictionary);
+				}
+			}
+		}
+
+		int[][] flagCodes = new int[rowCount][];
+
+		for (int row = 0; row < rowCount; row++) {
+			Collection<String> flags = dataObjects[row].getFlags();
+			int[] rowFlags = new int[flags.size()];
+			int flag = 0;
+
+			for (String flagName : flags) {
+				rowFlags[flag++] = encode(flagName, codes, dictionary, null);
+			}
+
+			flagCodes[row] = rowFlags;
+		}
+
+		writer.writeBoolean(sessionDictionary != null);
+
+		if (sessionDictionary != null) {
+			// written after encoding to include the entries added by this page
+			int start = rows.getDictionaryStart();
+			List<String> newEntries =
+				sessionDictionary.getValues(start, sessionDictionary.size());
+
+			writer.writeString(sessionDictionary.getId());
+			writer.writeBoolean(rows.isDictionaryReset());
+			writer.writeInt(start);
+			writer.writeInt(start + newEntries.size());
+
+			for (String value : newEntries) {
+				writer.writeString(value);
+			}
+		}
+
+		writer.writeInt(dictionary.size());
+
+		for (String value : dictionary) {
+			writer.writeString(value);
+		}
+
+		for (HierarchicalDataObject dataObject : dataObjects) {
+			writer.writeString(dataObject.id);
+		}
+
+		writer.writeInt(dataObjects[0].index);
+		writer.writeBoolean(consecutive);
+
+		if (!consecutive) {
+			for (int row = 1; row < rowCount; row++) {
+				writer.writeInt(
+					dataObjects[row].index - dataObjects[row - 1].index);
+			}
+		}
+
+		writer.writeInt(columnCount);
+		writer.writeBoolean(uniformCount);
+
+		if (!uniformCount) {
+			for (HierarchicalDataObject dataObject : dataObjects) {
+				writer.writeInt(dataObject.values.size());
+			}
+		}
+
+		if (editableCount == 0) {
+			writer.writeInt(EDITABLE_NONE);
+		} else if (editableCount == rowCount) {
+			writer.writeInt(EDITABLE_ALL);
+		} else {
+			writer.writeInt(EDITABLE_MIXED);
+
+			for (HierarchicalDataObject dataObject : dataObjects) {
+				writer.writeBoolean(dataObject.editable);
+			}
+		}
+
+		for (int column = 0; column < columnCount; column++) {
+			for (int row = 0; row < rowCount; row++) {
+				if (column < dataObjects[row].values.size()) {
+					writer.writeInt(valueCodes[column][row]);
+				}
+			}
+		}
+
+		writer.writeBoolean(hasChildren);
+
+		for (int row = 0; row < rowCount; row++) {
+			int[] rowFlags = flagCodes[row];
+
+			writer.writeInt(rowFlags.length);
+
+			for (int flagCode : rowFlags) {
+				writer.writeInt(flagCode);
+			}
+
+			if (hasChildren) {
+				writeChildren(writer, dataObjects[row]);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------
+
+	@Override
+	public void deserializeInstance(SerializationStreamReader streamReader,
+		QueryResultRows instance) throws SerializationException {
+		deserialize(streamReader, instance);
+	}
+
+	@Override
+	public boolean hasCustomInstantiateInstance() {
+		return true;
+	}
+
+	@Override
+	public QueryResultRows instantiateInstance(
+		SerializationStreamReader streamReader) throws SerializationException {
+		return instantiate(streamReader);
+	}
+
+	@Override
+	public void serializeInstance(SerializationStreamWriter streamWriter,
+		QueryResultRows instance) throws SerializationException {
+		serialize(streamWriter, instance);
+	}
+}
@@ -0,0 +1,217 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.data.element;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary of string values that are repeated across query results, like
+ * resource IDs of enum values. On the server a dictionary exists for each
+ * session and assigns stable integer codes to values which are then used by
+ * the serialization of {@link QueryResultRows}. Each dictionary entry is only
+ * transferred once to the client which keeps the received entries in the
+ * {@link #getClientDictionary() client dictionary} and decodes subsequent
+ * query results with it.
+ *
+ * <p>The dictionary only grows up to a maximum size to limit the memory of
+ * long-running sessions. Values that are encountered after that size has been
+ * reached are transferred as plain strings.</p>
+ *
+ * @author eso
+ */
+public class ValueDictionary {
+
+	private static ValueDictionary clientDictionary = null;
+
+	private final int maxSize;
+
+	private final List<String> values = new ArrayList<>();
+
+	private final Map<String, Integer> codes = new HashMap<>();
+
+	private String id;
+
+	/**
+	 * Creates a new instance. The ID of a server dictionary must be globally
+	 * unique (e.g. a random UUID) so that it doesn't match the dictionary of
+	 * a client that has been received from another server or from a previous
+	 * run of the same server.
+	 *
+	 * @param id      The dictionary ID that allows clients to detect a
+	 *                dictionary change
+	 * @param maxSize The maximum number of entries in this dictionary
+	 */
+	public ValueDictionary(String id, int maxSize) {
+		this.id = id;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the dictionary instance of a client. This method must only be
+	 * invoked in client code.
+	 *
+	 * @return The client dictionary
+	 */
+	public static ValueDictionary getClientDictionary() {
+		if (clientDictionary == null) {
+			clientDictionary = new ValueDictionary("", Integer.MAX_VALUE);
+		}
+
+		return clientDictionary;
+	}
+
+	/**
+	 * Returns the code of a certain value. If the value doesn't exist in this
+	 * dictionary it will be added if the maximum size hasn't been reached.
+	 *
+	 * @param value The value to encode
+	 * @return The value code or -1 if the value is not in the dictionary
+	 */
+	public synchronized int encode(String value) {
+		Integer code = codes.get(value);
+
+		if (code == null) {
+			if (values.size() >= maxSize) {
+				return -1;
+			}
+
+			code = Integer.valueOf(values.size());
+			values.add(value);
+			codes.put(value, code);
+		}
+
+		return code.intValue();
+	}
+
+	/**
+	 * Returns the value for a certain code.
+	 *
+	 * @param code The value code
+	 * @return The value
+	 */
+	public synchronized String get(int code) {
+		return values.get(code);
+	}
+
+	/**
+	 * Returns the dictionary ID.
+	 *
+	 * @return The ID
+	 */
+	public final String getId() {
+		return id;
+	}
+
+	/**
+	 * Returns a copy of the dictionary values in a certain range.
+	 *
+	 * @param from The index of the first value to return
+	 * @param to   The index after the last value to return
+	 * @return A new list containing the values
+	 */
+	public synchronized List<String> getValues(int from, int to) {
+		return new ArrayList<>(values.subList(from, to));
+	}
+
+	/**
+	 * Replaces all entries of this instance with the full content of a server
+	 * dictionary. This is necessary if the server detects that this instance
+	 * contains entries that don't belong to the server dictionary with the
+	 * same ID.
+	 *
+	 * <p>This method is intended to be used on client dictionaries only.</p>
+	 *
+	 * @param dictionaryId The ID of the server dictionary
+	 * @param newValues    All values of the server dictionary
+	 */
+	public synchronized void replace(String dictionaryId,
+		List<String> newValues) {
+		id = dictionaryId;
+		values.clear();
+		codes.clear();
+		update(dictionaryId, 0, newValues);
+	}
+
+	/**
+	 * Returns the current number of entries in this dictionary.
+	 *
+	 * @return The dictionary size
+	 */
+	public synchronized int size() {
+		return values.size();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + id + ", " + size() + "]";
+	}
+
+	/**
+	 * Updates the entries of this instance with values that have been received
+	 * from a server dictionary. Because the entries of a server dictionary
+	 * never change the update is idempotent: values for indices that already
+	 * exist are ignored and only the values after the current size are added.
+	 * This allows responses of concurrent queries to arrive in any order.
+	 *
+	 * <p>If the ID of the server dictionary differs from that of this instance
+	 * and the start index is zero the update contains the full server
+	 * dictionary which then replaces the existing entries. An update with a
+	 * different ID and a start index greater than zero has been created for a
+	 * dictionary that has been replaced meanwhile. Such an update is ignored
+	 * and FALSE is returned because the values of the corresponding query
+	 * result cannot be decoded with this dictionary. The same is the case if
+	 * the start index is beyond the current size.</p>
+
+	 *
+	 * <p>This method is intended to be used on client dictionaries only.</p>
+	 *
+	 * @param dictionaryId The ID of the server dictionary
+	 * @param start        The index of the first new value
+	 * @param newValues    The values to add
+	 * @return TRUE if the update has been applied, FALSE if it is outdated
+	 */
+	public synchronized boolean update(String dictionaryId, int start,
+		List<String> newValues) {
+		if (!dictionaryId.equals(id)) {
+			if (start > 0) {
+				return false;
+			}
+
+			id = dictionaryId;
+			values.clear();
+			codes.clear();
+		}
+
+		int size = values.size();
+
+		if (start > size) {
+			return false;
+		}
+
+		for (int i = size - start; i < newValues.size(); i++) {
+			String value = newValues.get(i);
+
+			codes.put(value, Integer.valueOf(values.size()));
+			values.add(value);
+		}
+
+		return true;
+	}
+}
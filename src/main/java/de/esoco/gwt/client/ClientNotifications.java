@@ -0,0 +1,400 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.typedarrays.shared.ArrayBuffer;
+import com.google.gwt.typedarrays.shared.DataView;
+import com.google.gwt.typedarrays.shared.Int8Array;
+import com.google.gwt.typedarrays.shared.TypedArrays;
+import de.esoco.gwt.shared.NotificationBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Receives the notifications that are sent by the server-side client
+ * notification service over a WebSocket connection. An application must open
+ * the connection by invoking {@link #connect(String)} with the URL of the
+ * WebSocket endpoint of the service. Handlers for certain notification
+ * messages can then be registered with
+ * {@link #setHandler(String, NotificationHandler)}.
+ *
+ * <p>Binary notifications that are sent by the server as binary frames are
+ * dispatched by their message type to the handlers that have been registered
+ * with {@link #setBinaryHandler(int, BinaryNotificationHandler)}.</p>
+ *
+ * <p>Topic notifications are only sent to clients that have subscribed to the
+ * topic with {@link #subscribe(String)}. Subscriptions are kept by this class
+ * and will be sent again if the connection is re-opened.</p>
+ *
+ * <p>Messages that are sent repeatedly, like the notifications of a topic,
+ * can be handled with a handler that is registered for a message prefix with
+ * {@link #setPrefixHandler(String, NotificationHandler)}. Such handlers
+ * remain registered until they are removed.</p>
+ *
+ * <p>Notifications that arrive before a handler has been registered for them
+ * are kept until the registration so that they don't get lost. Only the most
+ * recent of such messages are kept to limit the memory usage. If the
+ * connection is closed all registered handlers will be notified with a NULL
+ * message so that they can switch back to polling.</p>
+ *
+ * @author eso
+ */
+public class ClientNotifications {
+
+	private static final int MAX_PENDING_MESSAGES = 100;
+
+	// must be consistent with the prefixes of ClientNotificationWebSocket
+	private static final String SUBSCRIBE_PREFIX = "Subscribe:";
+
+	private static final String UNSUBSCRIBE_PREFIX = "Unsubscribe:";
+
+	private static final Map<String, NotificationHandler> handlers =
+		new HashMap<>();
+
+	private static final Set<String> pendingMessages = new LinkedHashSet<>();
+
+	private static final Map<String, NotificationHandler> prefixHandlers =
+		new HashMap<>();
+
+	private static final Map<Integer, BinaryNotificationHandler>
+		binaryHandlers = new HashMap<>();
+
+	private static final Set<String> subscriptions = new LinkedHashSet<>();
+
+	private static JavaScriptObject webSocket = null;
+
+	private static boolean connected = false;
+
+	/**
+	 * Private, only static use.
+	 */
+	private ClientNotifications() {
+	}
+
+	/**
+	 * Opens the WebSocket connection to the notification service. Has no
+	 * effect if the connection has already been opened.
+	 *
+	 * @param url The URL of the WebSocket endpoint
+	 */
+	public static void connect(String url) {
+		if (webSocket == null) {
+			webSocket = openWebSocket(url);
+		}
+	}
+
+	/**
+	 * Checks whether the notification connection is currently open.
+	 *
+	 * @return TRUE if notifications can be received
+	 */
+	public static boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * Removes the handler for a certain message.
+	 *
+	 * @param message The notification message
+	 */
+	public static void removeHandler(String message) {
+		handlers.remove(message);
+		pendingMessages.remove(message);
+	}
+
+	/**
+	 * Sets the handler for the binary notifications of a certain type,
+	 * replacing any existing handler. Other than message handlers binary
+	 * handlers remain registered until they are replaced or removed by
+	 * setting a NULL handler.
+	 *
+	 * @param type    The binary message type
+	 * @param handler The handler or NULL to remove the handler
+	 */
+	public static void setBinaryHandler(int type,
+		BinaryNotificationHandler handler) {
+		if (handler != null) {
+			binaryHandlers.put(type, handler);
+		} else {
+			binaryHandlers.remove(type);
+		}
+	}
+
+	/**
+	 * Sets the handler for a certain notification message, replacing any
+	 * existing handler. Handlers are only invoked once and must be set again
+	 * to receive further notifications. If the message has already been
+	 * received the handler will be invoked immediately.
+	 *
+	 * @param message The notification message
+	 * @param handler The handler to be invoked when the message is received
+	 */
+	public static void setHandler(String message, NotificationHandler handler) {
+		if (pendingMessages.remove(message)) {
+			handler.onNotification(message);
+		} else {
+			handlers.put(message, handler);
+		}
+	}
+
+	/**
+	 * Sets the handler for all notification messages that start with a
+	 * certain prefix, replacing any existing handler for the prefix. Other
+	 * than message handlers prefix handlers remain registered until they are
+	 * removed by setting a NULL handler. Messages with a registered prefix are
+	 * not kept if they are received while no handler is registered for the
+	 * full message.
+	 *
+	 * @param prefix  The message prefix
+	 * @param handler The handler or NULL to remove the handler
+	 */
+	public static void setPrefixHandler(String prefix,
+		NotificationHandler handler) {
+		if (handler != null) {
+			prefixHandlers.put(prefix, handler);
+		} else {
+			prefixHandlers.remove(prefix);
+		}
+	}
+
+	/**
+	 * Subscribes to the notifications of a certain topic. If the connection
+	 * is not open yet the subscription will be sent when it has been opened.
+	 *
+	 * @param topic The topic to subscribe to
+	 */
+	public static void subscribe(String topic) {
+		if (subscriptions.add(topic) && connected) {
+			send(webSocket, SUBSCRIBE_PREFIX + topic);
+		}
+	}
+
+	/**
+	 * Cancels the subscription of a topic.
+	 *
+	 * @param topic The topic to unsubscribe from
+	 */
+	public static void unsubscribe(String topic) {
+		if (subscriptions.remove(topic) && connected) {
+			send(webSocket, UNSUBSCRIBE_PREFIX + topic);
+		}
+	}
+
+	/**
+	 * Invoked by the WebSocket when a binary frame has been received. Decodes
+	 * the binary notifications in the frame and dispatches them to the
+	 * registered handlers.
+	 *
+	 * @param frame The frame data
+	 */
+	static void handleBinaryFrame(ArrayBuffer frame) {
+		DataView data = TypedArrays.createDataView(frame);
+		int count = data.getUint16(0);
+		int position = 2;
+
+		for (int i = 0; i < count; i++) {
+			int type = data.getUint8(position++);
+			int pathLength = data.getUint16(position);
+			StringBuilder path = new StringBuilder(pathLength);
+
+			position += 2;
+
+			for (int c = 0; c < pathLength; c++) {
+				path.append((char) data.getUint16(position));
+				position += 2;
+			}
+
+			int payloadLength = data.getInt32(position);
+
+			position += 4;
+
+			BinaryNotificationHandler handler = binaryHandlers.get(type);
+
+			if (handler != null) {
+				handler.onNotification(type, path.toString(),
+					TypedArrays.createInt8Array(frame, position,
+						payloadLength));
+			}
+
+			position += payloadLength;
+		}
+	}
+
+	/**
+	 * Invoked by the WebSocket when the connection has been closed.
+	 */
+	static void handleClose() {
+		List<NotificationHandler> closedHandlers =
+			new ArrayList<>(handlers.values());
+
+		connected = false;
+		webSocket = null;
+		handlers.clear();
+		pendingMessages.clear();
+
+		for (NotificationHandler handler : closedHandlers) {
+			handler.onNotification(null);
+		}
+	}
+
+	/**
+	 * Invoked by the WebSocket when a notification frame has been received.
+	 * The frame can either contain a single message or a batch of messages.
+	 *
+	 * @param frame The notification frame
+	 */
+	static void handleMessage(String frame) {
+		if (NotificationBatch.isBatch(frame)) {
+			for (String message : NotificationBatch.decode(frame)) {
+				dispatchMessage(message);
+			}
+		} else {
+			dispatchMessage(frame);
+		}
+	}
+
+	/**
+	 * Invoked by the WebSocket when the connection has been opened.
+	 */
+	static void handleOpen() {
+		connected = true;
+
+		for (String topic : subscriptions) {
+			send(webSocket, SUBSCRIBE_PREFIX + topic);
+		}
+	}
+
+	/**
+	 * Dispatches a notification message to the registered handler or keeps it
+	 * until a handler is registered.
+	 *
+	 * @param message The notification message
+	 */
+	private static void dispatchMessage(String message) {
+		NotificationHandler handler = handlers.remove(message);
+
+		if (handler == null) {
+			handler = getPrefixHandler(message);
+		}
+
+		if (handler != null) {
+			handler.onNotification(message);
+		} else if (pendingMessages.add(message) &&
+			pendingMessages.size() > MAX_PENDING_MESSAGES) {
+			// discard the oldest message to keep the most recent ones
+			Iterator<String> oldest = pendingMessages.iterator();
+
+			oldest.next();
+			oldest.remove();
+		}
+	}
+
+	/**
+	 * Returns the handler for the prefix of a message.
+	 *
+	 * @param message The notification message
+	 * @return The prefix handler or NULL if no prefix matches
+	 */
+	private static NotificationHandler getPrefixHandler(String message) {
+		for (Map.Entry<String, NotificationHandler> entry :
+			prefixHandlers.entrySet()) {
+			if (message.startsWith(entry.getKey())) {
+				return entry.getValue();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Opens a new WebSocket connection.
+	 *
+	 * @param url The WebSocket URL
+	 * @return The WebSocket object
+	 */
+	private static native JavaScriptObject openWebSocket(String url) /*-{
+		var socket = new $wnd.WebSocket(url);
+
+		socket.binaryType = "arraybuffer";
+
+		socket.onopen = $entry(function() {
+			@de.esoco.gwt.client.ClientNotifications::handleOpen()();
+		});
+		socket.onmessage = $entry(function(event) {
+			if (typeof event.data === "string") {
+				@de.esoco.gwt.client.ClientNotifications::handleMessage(Ljava/lang/String;)(event.data);
+			} else {
+				@de.esoco.gwt.client.ClientNotifications::handleBinaryFrame(Lcom/google/gwt/typedarrays/shared/ArrayBuffer;)(event.data);
+			}
+		});
+		socket.onclose = $entry(function() {
+			@de.esoco.gwt.client.ClientNotifications::handleClose()();
+		});
+
+		return socket;
+	}-*/;
+
+	/**
+	 * Sends a message over a WebSocket.
+	 *
+	 * @param socket  The WebSocket object
+	 * @param message The message
+	 */
+	private static native void send(JavaScriptObject socket, String message) /*-{
+		socket.send(message);
+	}-*/;
+
+	/**
+	 * The interface for handlers of binary notifications.
+	 *
+	 * @author eso
+	 */
+	public interface BinaryNotificationHandler {
+
+		/**
+		 * Will be invoked when a binary notification has been received.
+		 *
+		 * @param type       The message type
+		 * @param targetPath The path of the target element
+		 * @param payload    The message payload
+		 */
+		void onNotification(int type, String targetPath, Int8Array payload);
+	}
+
+	/**
+	 * The interface for handlers of notification messages.
+	 *
+	 * @author eso
+	 */
+	public interface NotificationHandler {
+
+		/**
+		 * Will be invoked when a notification message has been received.
+		 *
+		 * @param message The notification message or NULL if the connection
+		 *                has been closed
+		 */
+		void onNotification(String message);
+	}
+}
@@ -0,0 +1,132 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static de.esoco.gwt.shared.ProcessService.ENTITY_LOCKED_NOTIFICATION;
+import static de.esoco.gwt.shared.ProcessService.ENTITY_LOCK_TOPIC;
+import static de.esoco.gwt.shared.ProcessService.ENTITY_UNLOCKED_NOTIFICATION;
+
+/**
+ * Receives the lock notifications of entities that are pushed by the process
+ * service through the {@link ClientNotifications}. Code that displays an
+ * entity can watch its lock state with
+ * {@link #watch(String, EntityLockHandler)} which subscribes to the lock
+ * topic of the entity. The handler will then be notified whenever the entity
+ * is locked or unlocked by a process until {@link #unwatch(String)} is
+ * invoked. The process UI uses this to watch the entities that are listed
+ * in the process state property
+ * {@link de.esoco.gwt.shared.ProcessService#PROCESS_DISPLAYED_ENTITIES}.
+ *
+ * <p>Lock notifications are only sent if the process service has a client
+ * notification service. Without it the entities that are locked by a
+ * process are only available from the process state property
+ * {@link de.esoco.gwt.shared.ProcessService#PROCESS_ENTITY_LOCKS}.</p>
+ *
+ * @author eso
+ */
+public class EntityLocks {
+
+	private static final Map<String, EntityLockHandler> handlers =
+		new HashMap<>();
+
+	/**
+	 * Private, only static use.
+	 */
+	private EntityLocks() {
+	}
+
+	/**
+	 * Stops watching the lock state of an entity.
+	 *
+	 * @param globalId The global ID of the entity
+	 */
+	public static void unwatch(String globalId) {
+		if (handlers.remove(globalId) != null) {
+			ClientNotifications.unsubscribe(ENTITY_LOCK_TOPIC + globalId);
+
+			if (handlers.isEmpty()) {
+				ClientNotifications.setPrefixHandler(
+					ENTITY_LOCKED_NOTIFICATION, null);
+				ClientNotifications.setPrefixHandler(
+					ENTITY_UNLOCKED_NOTIFICATION, null);
+			}
+		}
+	}
+
+	/**
+	 * Starts watching the lock state of an entity, replacing any existing
+	 * handler for the same entity.
+	 *
+	 * @param globalId The global ID of the entity
+	 * @param handler  The handler to be notified of lock changes
+	 */
+	public static void watch(String globalId, EntityLockHandler handler) {
+		if (handlers.isEmpty()) {
+			ClientNotifications.setPrefixHandler(ENTITY_LOCKED_NOTIFICATION,
+				EntityLocks::handleNotification);
+			ClientNotifications.setPrefixHandler(ENTITY_UNLOCKED_NOTIFICATION,
+				EntityLocks::handleNotification);
+		}
+
+		if (handlers.put(globalId, handler) == null) {
+			ClientNotifications.subscribe(ENTITY_LOCK_TOPIC + globalId);
+		}
+	}
+
+	/**
+	 * Handles a lock notification by dispatching it to the handler of the
+	 * entity.
+	 *
+	 * @param message The notification message or NULL if the connection has
+	 *                been closed
+	 */
+	private static void handleNotification(String message) {
+		if (message != null) {
+			boolean locked = message.startsWith(ENTITY_LOCKED_NOTIFICATION);
+			String prefix = locked ?
+			                ENTITY_LOCKED_NOTIFICATION :
+			                ENTITY_UNLOCKED_NOTIFICATION;
+			String globalId = message.substring(prefix.length());
+
+			EntityLockHandler handler = handlers.get(globalId);
+
+			if (handler != null) {
+				handler.onLockChanged(globalId, locked);
+			}
+		}
+	}
+
+	/**
+	 * The interface for handlers of entity lock changes.
+	 *
+	 * @author eso
+	 */
+	public interface EntityLockHandler {
+
+		/**
+		 * Will be invoked when the lock state of an entity has changed.
+		 *
+		 * @param globalId The global ID of the entity
+		 * @param locked   TRUE if the entity has been locked, FALSE if it
+		 *                 has been unlocked
+		 */
+		void onLockChanged(String globalId, boolean locked);
+	}
+}
@@ -16,9 +16,14 @@
 //++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 package de.esoco.gwt.client;
 
+import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+import de.esoco.data.element.DataElement;
 import de.esoco.gwt.shared.AuthenticatedServiceAsync;
+import de.esoco.gwt.shared.Command;
 import de.esoco.gwt.shared.CommandService;
 import de.esoco.gwt.shared.CommandServiceAsync;
+import de.esoco.gwt.shared.ServiceOverloadException;
 import de.esoco.gwt.shared.StorageServiceAsync;
 
 /**
@@ -32,6 +37,10 @@ import de.esoco.gwt.shared.StorageServiceAsync;
  */
 public class ServiceRegistry {
 
+	private static final int MAX_OVERLOAD_RETRIES = 4;
+
+	private static final int MIN_RETRY_DELAY = 100;
+
 	private static CommandServiceAsync commandService;
 
 	private static AuthenticatedServiceAsync authenticatedService;
@@ -44,6 +53,24 @@ public class ServiceRegistry {
 	private ServiceRegistry() {
 	}
 
+	/**
+	 * Executes a command on the registered {@link CommandService}. If the
+	 * service rejects the command with a {@link ServiceOverloadException} the
+	 * execution will be repeated after the suggested retry delay with an
+	 * exponential backoff. Only if the retries are exhausted or if another
+	 * error occurs the failure will be forwarded to the callback. All code
+	 * that executes commands should use this method instead of invoking the
+	 * command service directly.
+	 *
+	 * @param command  The command to execute
+	 * @param data     The data to be processed by the command
+	 * @param callback The callback to receive the command result
+	 */
+	public static <T extends DataElement<?>, R extends DataElement<?>> void executeCommand(
+		Command<T, R> command, T data, AsyncCallback<R> callback) {
+		executeCommand(command, data, callback, 0);
+	}
+
 	/**
 	 * Returns the current command service. If no standard services have been
 	 * registered by calling {@link #registerStandardServices(Object)} this
@@ -120,4 +147,42 @@ public class ServiceRegistry {
 			storageService = (StorageServiceAsync) serviceAsync;
 		}
 	}
+
+	/**
+	 * Internal implementation of the command execution with an overload
+	 * retry.
+	 *
+	 * @param command  The command to execute
+	 * @param data     The command data
+	 * @param callback The result callback
+	 * @param retry    The number of retries already performed
+	 */
+	private static <T extends DataElement<?>, R extends DataElement<?>> void executeCommand(
+		final Command<T, R> command, final T data,
+		final AsyncCallback<R> callback, final int retry) {
+		commandService.executeCommand(command, data, new AsyncCallback<R>() {
+			@Override
+			public void onFailure(Throwable caught) {
+				if (caught instanceof ServiceOverloadException &&
+					retry < MAX_OVERLOAD_RETRIES) {
+					int delay = Math.max(MIN_RETRY_DELAY,
+						((ServiceOverloadException) caught).getRetryDelay());
+
+					new Timer() {
+						@Override
+						public void run() {
+							executeCommand(command, data, callback, retry + 1);
+						}
+					}.schedule(delay << retry);
+				} else {
+					callback.onFailure(caught);
+				}
+			}
+
+			@Override
+			public void onSuccess(R result) {
+				callback.onSuccess(result);
+			}
+		});
+	}
 }
@@ -31,6 +31,7 @@ import de.esoco.ewt.event.EwtEvent;
 import de.esoco.ewt.event.EwtEventHandler;
 import de.esoco.ewt.event.EventType;
 
+import de.esoco.gwt.client.data.QueryDataModel;
 import de.esoco.gwt.client.ui.AuthenticationPanelManager;
 import de.esoco.gwt.client.ui.DefaultCommandResultHandler;
 import de.esoco.gwt.client.ui.PanelManager;
@@ -325,10 +326,12 @@ public abstract class GwtApplicationPanelManager<C extends Container,
 	}
 
 	/**
-	 * Performs a logout of the current user. This call is forwarded to the
-	 * parent manager so that it must be implemented by the root panel manager.
+	 * Performs a logout of the current user. This clears the query result
+	 * cache and forwards the call to the parent manager so that it must be
+	 * implemented by the root panel manager.
 	 */
 	protected void logout() {
+		QueryDataModel.clearResultCache();
 		getParent().logout();
 	}
 
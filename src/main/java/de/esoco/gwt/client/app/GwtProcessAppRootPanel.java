@@ -25,6 +25,7 @@ import de.esoco.ewt.dialog.MessageBox;
 import de.esoco.ewt.style.AlignedPosition;
 import de.esoco.ewt.style.StyleData;
 
+import de.esoco.gwt.client.data.QueryDataModel;
 import de.esoco.gwt.client.res.EsocoGwtResources;
 import de.esoco.gwt.client.ui.PanelManager;
 
@@ -164,6 +165,7 @@ public class GwtProcessAppRootPanel extends
 
 	@Override
 	protected void logout() {
+		QueryDataModel.clearResultCache();
 		dispose();
 		checkAuthentication();
 	}
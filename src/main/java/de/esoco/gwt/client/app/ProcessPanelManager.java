@@ -17,6 +17,7 @@
 package de.esoco.gwt.client.app;
 
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Timer;
 import de.esoco.data.element.DataElement;
 import de.esoco.data.element.DataElementList;
 import de.esoco.data.process.ProcessState;
@@ -38,6 +39,9 @@ import de.esoco.ewt.layout.FillLayout;
 import de.esoco.ewt.style.AlignedPosition;
 import de.esoco.ewt.style.StyleData;
 import de.esoco.ewt.style.StyleFlag;
+import de.esoco.gwt.client.ClientNotifications;
+import de.esoco.gwt.client.EntityLocks;
+import de.esoco.gwt.client.data.QueryDataModel;
 import de.esoco.gwt.client.res.EsocoGwtCss;
 import de.esoco.gwt.client.res.EsocoGwtResources;
 import de.esoco.gwt.client.ui.CommandResultHandler;
@@ -55,14 +59,23 @@ import de.esoco.lib.property.InteractionEventType;
 import de.esoco.lib.property.LayoutType;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import static de.esoco.ewt.style.StyleData.WEB_ADDITIONAL_STYLES;
+import static de.esoco.gwt.shared.ProcessService.PROCESS_DISPLAYED_ENTITIES;
+import static de.esoco.gwt.shared.ProcessService.PROCESS_UPDATE_NOTIFICATION;
+import static de.esoco.gwt.shared.ProcessService.PROCESS_UPDATE_PUSH;
 import static de.esoco.gwt.shared.StorageService.ERROR_ENTITY_LOCKED;
+import static de.esoco.gwt.shared.StorageService.ERROR_LOCKED_ENTITY_ID;
 import static de.esoco.lib.property.ContentProperties.CONTENT_TYPE;
 import static de.esoco.lib.property.ContentProperties.RESOURCE_ID;
 import static de.esoco.lib.property.LayoutProperties.LAYOUT;
@@ -87,6 +100,8 @@ public class ProcessPanelManager extends
 
 	private static final EsocoGwtCss CSS = EsocoGwtResources.INSTANCE.css();
 
+	private static final int PROCESS_UPDATE_RETRY_DELAY = 250;
+
 	private static final StyleData TOP_PANEL_STYLE = AlignedPosition.TOP
 		.h(6)
 		.set(WEB_ADDITIONAL_STYLES, CSS.gaProcessTopPanel());
@@ -159,6 +174,13 @@ public class ProcessPanelManager extends
 
 	private boolean locked = false;
 
+	private final Set<String> watchedEntities = new HashSet<>();
+
+	private final Set<String> lockedEntities = new HashSet<>();
+
+	private final Map<String, Boolean> pendingLockChanges =
+		new LinkedHashMap<>();
+
 	/**
 	 * Creates a new instance for a certain process.
 	 *
@@ -248,6 +270,12 @@ public class ProcessPanelManager extends
 			view.hide();
 		}
 
+		if (processState != null) {
+			ClientNotifications.removeHandler(getProcessUpdateMessage());
+		}
+
+		unwatchEntities();
+
 		super.dispose();
 	}
 
@@ -297,6 +325,7 @@ public class ProcessPanelManager extends
 			handleUnrecoverableError(caught);
 		}
 
+		updateEntityWatches();
 		setUserInterfaceState();
 	}
 
@@ -438,6 +467,14 @@ public class ProcessPanelManager extends
 
 			message =
 				getContext().getResourceString("msg" + message, messageArgs);
+
+			String entityId = errorParams.get(ERROR_LOCKED_ENTITY_ID);
+
+			// watch the lock to notify the user when the entity has been
+			// unlocked; the watch will be started by handleError()
+			if (entityId != null && ClientNotifications.isConnected()) {
+				lockedEntities.add(entityId);
+			}
 		} else {
 			ProcessState newState = service.getProcessState();
 
@@ -492,7 +529,8 @@ public class ProcessPanelManager extends
 	}
 
 	/**
-	 * Overridden to remove the UI inspector event handler registration.
+	 * Overridden to remove the UI inspector event handler registration and
+	 * to stop watching the locks of entities.
 	 *
 	 * @see GwtApplicationPanelManager#processFinished(PanelManager,
 	 * ProcessState)
@@ -504,6 +542,7 @@ public class ProcessPanelManager extends
 			uiInspectorEventHandler.removeHandler();
 		}
 
+		unwatchEntities();
 		super.processFinished(processPanelManager, processState);
 	}
 
@@ -514,6 +553,12 @@ public class ProcessPanelManager extends
 	 */
 	protected void update(boolean finishProcess) {
 		if (processState.isFinished()) {
+			ClientNotifications.removeHandler(getProcessUpdateMessage());
+			unwatchEntities();
+
+			// the process may have modified the data of cached queries
+			QueryDataModel.clearResultCache();
+
 			if (finishProcess) {
 				processFinished(this, processState);
 			} else {
@@ -522,12 +567,18 @@ public class ProcessPanelManager extends
 				setUserInterfaceState();
 			}
 		} else {
+			updateEntityWatches();
 			processUpdated(ProcessPanelManager.this, processState);
 			setTitle(processState.getName());
 			updateParameterPanel();
 
 			if (autoContinue && !pauseAutoContinue) {
-				executeProcess(processState, ProcessExecutionMode.EXECUTE);
+				if (processState.hasFlag(PROCESS_UPDATE_PUSH) &&
+					ClientNotifications.isConnected()) {
+					awaitProcessUpdate();
+				} else {
+					executeProcess(processState, ProcessExecutionMode.EXECUTE);
+				}
 			}
 
 			setUserInterfaceState();
@@ -620,6 +671,19 @@ public class ProcessPanelManager extends
 //				});
 	}
 
+	/**
+	 * Waits for a server notification of a process update before an
+	 * automatically continuing process is executed again. If the notification
+	 * connection is closed in the meantime the process will be executed
+	 * immediately and therefore fall back to polling.
+	 */
+	private void awaitProcessUpdate() {
+		ProcessState awaitedState = processState;
+
+		ClientNotifications.setHandler(getProcessUpdateMessage(),
+			message -> continueUpdatedProcess(awaitedState));
+	}
+
 	/**
 	 * Builds the summary panel.
 	 *
@@ -697,6 +761,30 @@ public class ProcessPanelManager extends
 		}
 	}
 
+	/**
+	 * Continues the execution of a process after it has been updated on the
+	 * server. If a command is currently executing the continuation will be
+	 * retried after a short delay unless the process state has been replaced
+	 * by the result of that command meanwhile.
+	 *
+	 * @param updatedState The process state that has been updated
+	 */
+	private void continueUpdatedProcess(ProcessState updatedState) {
+		if (updatedState == processState && autoContinue &&
+			!pauseAutoContinue && !cancelled) {
+			if (isCommandExecuting()) {
+				new Timer() {
+					@Override
+					public void run() {
+						continueUpdatedProcess(updatedState);
+					}
+				}.schedule(PROCESS_UPDATE_RETRY_DELAY);
+			} else {
+				executeProcess(processState, ProcessExecutionMode.EXECUTE);
+			}
+		}
+	}
+
 	/**
 	 * Creates a {@link ProcessState} instance for an interaction event.
 	 *
@@ -727,6 +815,16 @@ public class ProcessPanelManager extends
 		return interactionState;
 	}
 
+	/**
+	 * Returns the notification message that indicates an update of the
+	 * current process.
+	 *
+	 * @return The process update message
+	 */
+	private String getProcessUpdateMessage() {
+		return PROCESS_UPDATE_NOTIFICATION + processState.getProcessId();
+	}
+
 	/**
 	 * Handles the button selection from the confirmation message box displayed
 	 * by {@link #handleCancelProcessEvent()}.
@@ -774,6 +872,34 @@ public class ProcessPanelManager extends
 		}
 	}
 
+	/**
+	 * Handles the lock changes of watched entities. If the lock of an entity
+	 * that is displayed by the process has been acquired by another process a
+	 * message will be displayed. When a locked entity becomes available again
+	 * this will be displayed too. Changes that are received while a command is
+	 * executing are deferred until the result has been received because they
+	 * may have been caused by this process.
+	 *
+	 * @param globalId The global ID of the entity
+	 * @param isLocked TRUE if the entity has been locked, FALSE if it has been
+	 *                 unlocked
+	 */
+	private void handleEntityLockChange(String globalId, boolean isLocked) {
+		if (isCommandExecuting()) {
+			pendingLockChanges.put(globalId, isLocked);
+		} else if (isLocked) {
+			if (lockedEntities.add(globalId)) {
+				displayMessage(getContext().getResourceString(
+					"msgEntityLocked", new Object[] { globalId }),
+					MESSAGE_DISPLAY_TIME);
+			}
+		} else if (lockedEntities.remove(globalId)) {
+			displayMessage(getContext().getResourceString("msgEntityUnlocked",
+				new Object[] { globalId }), MESSAGE_DISPLAY_TIME);
+			updateEntityWatches();
+		}
+	}
+
 	/**
 	 * Handles the event of executing the next process step after an
 	 * interaction.
@@ -909,6 +1035,74 @@ public class ProcessPanelManager extends
 		}
 	}
 
+	/**
+	 * Stops watching the locks of all entities that have been watched by
+	 * {@link #updateEntityWatches()}.
+	 */
+	private void unwatchEntities() {
+		for (String globalId : watchedEntities) {
+			EntityLocks.unwatch(globalId);
+		}
+
+		watchedEntities.clear();
+		lockedEntities.clear();
+		pendingLockChanges.clear();
+	}
+
+	/**
+	 * Updates the entities that are watched for lock changes. These are the
+	 * entities that are displayed by the current process step and the
+	 * entities that are known to be locked by other processes. Entities that
+	 * are no longer displayed or locked will be unwatched. Finally any lock
+	 * changes that have been deferred during the execution of a command will
+	 * be applied if the entity is still watched.
+	 */
+	private void updateEntityWatches() {
+		Set<String> entities = new HashSet<>(lockedEntities);
+
+		if (processState != null && !processState.isFinished()) {
+			String displayedEntities =
+				processState.getProperty(PROCESS_DISPLAYED_ENTITIES, null);
+
+			if (displayedEntities != null) {
+				entities.addAll(Arrays.asList(displayedEntities.split(",")));
+			}
+		}
+
+		Iterator<String> watched = watchedEntities.iterator();
+
+		while (watched.hasNext()) {
+			String globalId = watched.next();
+
+			if (!entities.contains(globalId)) {
+				EntityLocks.unwatch(globalId);
+				watched.remove();
+			}
+		}
+
+		for (String globalId : entities) {
+			if (watchedEntities.add(globalId)) {
+				EntityLocks.watch(globalId, this::handleEntityLockChange);
+			}
+		}
+
+		if (!pendingLockChanges.isEmpty()) {
+			Map<String, Boolean> lockChanges =
+				new LinkedHashMap<>(pendingLockChanges);
+
+			pendingLockChanges.clear();
+
+			for (Entry<String, Boolean> change : lockChanges.entrySet()) {
+				String globalId = change.getKey();
+
+				if (watchedEntities.contains(globalId)) {
+					handleEntityLockChange(globalId,
+						change.getValue().booleanValue());
+				}
+			}
+		}
+	}
+
 	/**
 	 * Updates the UIs for the data elements that have been modified during the
 	 * last interaction.
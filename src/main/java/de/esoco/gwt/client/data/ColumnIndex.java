@@ -0,0 +1,304 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import de.esoco.lib.model.DataModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the values of a single column of a list of rows. The index
+ * parts are created lazily on first use: a hash index for the lookup of
+ * equal values and sorted arrays for range and prefix lookups (one for the
+ * original values and one for lower case values for case-insensitive prefix
+ * lookups). Lookups return the positions of the matching rows in the
+ * original list. NULL values are not indexed because they never match a
+ * filter constraint.
+ *
+ * @author eso
+ */
+class ColumnIndex {
+
+	private static final int[] NO_ROWS = new int[0];
+
+	private final List<? extends DataModel<String>> rows;
+
+	private final int fieldIndex;
+
+	private Map<String, int[]> valueIndex = null;
+
+	private SortedValues sortedValues = null;
+
+	private SortedValues lowerCaseValues = null;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param rows       The indexed rows (must not be modified)
+	 * @param fieldIndex The index of the indexed column
+	 */
+	ColumnIndex(List<? extends DataModel<String>> rows, int fieldIndex) {
+		this.rows = rows;
+		this.fieldIndex = fieldIndex;
+	}
+
+	/**
+	 * Returns the positions of all non-NULL rows in the ascending order of
+	 * the column values. Rows with equal values are in their original order.
+	 *
+	 * @return The sorted row positions
+	 */
+	int[] getSortedRows() {
+		return getSortedValues(false).rows;
+	}
+
+	/**
+	 * Returns the column values in the order of {@link #getSortedRows()}.
+	 *
+	 * @return The sorted values
+	 */
+	String[] getSortedValues() {
+		return getSortedValues(false).values;
+	}
+
+	/**
+	 * Returns the positions of the rows with a certain value.
+	 *
+	 * @param value The value to lookup
+	 * @return The row positions in ascending order
+	 */
+	int[] lookupEqual(String value) {
+		if (valueIndex == null) {
+			Map<String, List<Integer>> positions = new HashMap<>();
+
+			for (int i = 0; i < rows.size(); i++) {
+				String rowValue = rows.get(i).getElement(fieldIndex);
+
+				if (rowValue != null) {
+					List<Integer> valueRows = positions.get(rowValue);
+
+					if (valueRows == null) {
+						valueRows = new ArrayList<>(1);
+						positions.put(rowValue, valueRows);
+					}
+
+					valueRows.add(i);
+				}
+			}
+
+			valueIndex = new HashMap<>(positions.size());
+
+			for (Map.Entry<String, List<Integer>> entry :
+				positions.entrySet()) {
+				List<Integer> valueRows = entry.getValue();
+				int[] rowArray = new int[valueRows.size()];
+
+				for (int i = 0; i < rowArray.length; i++) {
+					rowArray[i] = valueRows.get(i);
+				}
+
+				valueIndex.put(entry.getKey(), rowArray);
+			}
+		}
+
+		int[] result = valueIndex.get(value);
+
+		return result != null ? result : NO_ROWS;
+	}
+
+	/**
+	 * Returns the positions of the rows with values that start with a
+	 * certain prefix.
+	 *
+	 * @param prefix     The prefix
+	 * @param ignoreCase TRUE for a case-insensitive lookup
+	 * @return The row positions in the order of the column values
+	 */
+	int[] lookupPrefix(String prefix, boolean ignoreCase) {
+		SortedValues sorted = getSortedValues(ignoreCase);
+
+		if (ignoreCase) {
+			prefix = prefix.toLowerCase();
+		}
+
+		int start = sorted.lowerBound(prefix);
+		int end = start;
+
+		while (end < sorted.values.length &&
+			sorted.values[end].startsWith(prefix)) {
+			end++;
+		}
+
+		return Arrays.copyOfRange(sorted.rows, start, end);
+	}
+
+	/**
+	 * Returns the positions of the rows with values in a certain lexical
+	 * range.
+	 *
+	 * @param from          The lower bound or NULL for none
+	 * @param fromInclusive TRUE to include the lower bound
+	 * @param to            The upper bound or NULL for none
+	 * @param toInclusive   TRUE to include the upper bound
+	 * @return The row positions in the order of the column values
+	 */
+	int[] lookupRange(String from, boolean fromInclusive, String to,
+		boolean toInclusive) {
+		SortedValues sorted = getSortedValues(false);
+		int start = 0;
+		int end = sorted.values.length;
+
+		if (from != null) {
+			start = fromInclusive ?
+			        sorted.lowerBound(from) :
+			        sorted.upperBound(from);
+		}
+
+		if (to != null) {
+			end = toInclusive ? sorted.upperBound(to) : sorted.lowerBound(to);
+		}
+
+		return start < end ?
+		       Arrays.copyOfRange(sorted.rows, start, end) :
+		       NO_ROWS;
+	}
+
+	/**
+	 * Returns the sorted values and creates them on first access.
+	 *
+	 * @param lowerCase TRUE for the lower case values
+	 * @return The sorted values
+	 */
+	private SortedValues getSortedValues(boolean lowerCase) {
+		SortedValues sorted = lowerCase ? lowerCaseValues : sortedValues;
+
+		if (sorted == null) {
+			List<Integer> positions = new ArrayList<>(rows.size());
+			String[] rowValues = new String[rows.size()];
+
+			for (int i = 0; i < rowValues.length; i++) {
+				String value = rows.get(i).getElement(fieldIndex);
+
+				if (value != null) {
+					rowValues[i] = lowerCase ? value.toLowerCase() : value;
+					positions.add(i);
+				}
+			}
+
+			// stable sort keeps equal values in their original order
+			Collections.sort(positions, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return rowValues[a].compareTo(rowValues[b]);
+				}
+			});
+
+			sorted = new SortedValues(positions.size());
+
+			for (int i = 0; i < sorted.rows.length; i++) {
+				int position = positions.get(i);
+
+				sorted.rows[i] = position;
+				sorted.values[i] = rowValues[position];
+			}
+
+			if (lowerCase) {
+				lowerCaseValues = sorted;
+			} else {
+				sortedValues = sorted;
+			}
+		}
+
+		return sorted;
+	}
+
+	/**
+	 * Sorted column values with the corresponding row positions.
+	 *
+	 * @author eso
+	 */
+	private static class SortedValues {
+
+		final int[] rows;
+
+		final String[] values;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param size The number of values
+		 */
+		SortedValues(int size) {
+			rows = new int[size];
+			values = new String[size];
+		}
+
+		/**
+		 * Returns the index of the first value that is greater than or equal
+		 * to a certain value.
+		 *
+		 * @param value The value to search
+		 * @return The lower bound index
+		 */
+		int lowerBound(String value) {
+			int low = 0;
+			int high = values.length;
+
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+
+				if (values[middle].compareTo(value) < 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+
+			return low;
+		}
+
+		/**
+		 * Returns the index of the first value that is greater than a certain
+		 * value.
+		 *
+		 * @param value The value to search
+		 * @return The upper bound index
+		 */
+		int upperBound(String value) {
+			int low = 0;
+			int high = values.length;
+
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+
+				if (values[middle].compareTo(value) <= 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+
+			return low;
+		}
+	}
+}
@@ -21,12 +21,21 @@ import de.esoco.data.element.DataElementList;
 import de.esoco.ewt.UserInterfaceContext;
 import de.esoco.lib.model.ListDataModel;
 
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Implementation of an EWT data model based on a list of data elements.
  *
+ * <p>A model can be created lazily, in which case only the data elements
+ * that are part of the model are determined on creation. The model values,
+ * including the child models of nested data element lists, are only
+ * created when they are accessed, e.g. when a tree node is expanded or a
+ * row becomes visible. Created values, including NULL values, are kept for
+ * the lifetime of the model.</p>
+ *
  * @author eso
  */
 public class DataElementListModel extends ListDataModel<Object> {
@@ -43,6 +52,8 @@ public class DataElementListModel extends ListDataModel<Object> {
 
 	private String displayString = null;
 
+	private LazyModelData lazyData = null;
+
 	/**
 	 * Recursively creates a new instance from a list of root data elements.
 	 * The
@@ -71,13 +82,56 @@ public class DataElementListModel extends ListDataModel<Object> {
 	public DataElementListModel(UserInterfaceContext context,
 		DataElementList modelElement, List<String> elementNames,
 		String resourcePrefix, boolean listsOnly) {
+		this(context, modelElement, elementNames, resourcePrefix, listsOnly,
+			false);
+	}
+
+	/**
+	 * Creates a new instance that is either created completely or lazily.
+	 * Lazy models only create their values and child models on access and
+	 * also create their child models lazily. This should be used for large
+	 * hierarchical data element lists of which typically only a small part
+	 * is displayed.
+	 *
+	 * @param context        The user interface context for resource lookups
+	 *                       (may be NULL if no resource access is needed)
+	 * @param modelElement   The list of root elements to create this model
+	 *                       from
+	 * @param elementNames   A list of the names of elements in the list to be
+	 *                       included in this model or NULL for all
+	 * @param resourcePrefix The prefix to be prepended to all model strings
+	 *                       that are used for resource lookups
+	 * @param listsOnly      TRUE if only element lists shall be added to the
+	 *                       model, but no other child elements; FALSE to
+	 *                       include the full element hierarchy
+	 * @param lazy           TRUE to create the model data on demand
+	 * @see #DataElementListModel(UserInterfaceContext, DataElementList, List,
+	 * String, boolean)
+	 */
+	public DataElementListModel(UserInterfaceContext context,
+		DataElementList modelElement, List<String> elementNames,
+		String resourcePrefix, boolean listsOnly, boolean lazy) {
 		super(modelElement.getName());
 
 		this.context = context;
 		this.modelElement = modelElement;
 		this.resourcePrefix = resourcePrefix;
 
-		setData(createModelData(modelElement, elementNames, listsOnly));
+		List<DataElement<?>> elements =
+			getModelElements(modelElement, elementNames, listsOnly);
+
+		if (lazy) {
+			lazyData = new LazyModelData(elements, listsOnly);
+			setData(lazyData);
+		} else {
+			List<Object> data = new ArrayList<Object>(elements.size());
+
+			for (DataElement<?> element : elements) {
+				data.add(createModelValue(element, listsOnly, false));
+			}
+
+			setData(data);
+		}
 	}
 
 	/**
@@ -109,6 +163,15 @@ public class DataElementListModel extends ListDataModel<Object> {
 		return parent;
 	}
 
+	/**
+	 * Checks whether this model creates its data lazily.
+	 *
+	 * @return TRUE for a lazy model
+	 */
+	public final boolean isLazy() {
+		return lazyData != null;
+	}
+
 	/**
 	 * Returns the string representation of the wrapped data element list.
 	 *
@@ -131,57 +194,70 @@ public class DataElementListModel extends ListDataModel<Object> {
 	}
 
 	/**
-	 * Creates a list containing the model data from a list of data elements
+	 * Helper method to create a model data value from a data element.
 	 *
-	 * @param elements  The list of data elements
-	 * @param listsOnly TRUE if only data element lists shall be added
-	 * @return A new list containing the model data
+	 * @param element   The data element to convert
+	 * @param listsOnly TRUE if only data element lists shall be converted
+	 * @param lazy      TRUE to create child models lazily
+	 * @return The resulting value or NULL for none
 	 */
-	private List<Object> createModelData(DataElementList elements,
-		boolean listsOnly) {
-		ArrayList<Object> data =
-			new ArrayList<Object>(elements.getElementCount());
+	private Object createModelValue(DataElement<?> element, boolean listsOnly,
+		boolean lazy) {
+		Object value = null;
 
-		for (DataElement<?> element : elements) {
-			Object value = createModelValue(element, listsOnly);
+		if (element instanceof DataElementList) {
+			DataElementListModel childModel =
+				new DataElementListModel(context, (DataElementList) element,
+					null, resourcePrefix, listsOnly, lazy);
+
+			childModel.parent = this;
+			value = childModel;
+		} else if (!listsOnly) {
+			Object elementValue = element.getValue();
 
-			if (value != null) {
-				data.add(value);
+			if (elementValue != null) {
+				value = elementValue.toString();
 			}
 		}
 
-		return data;
+		return value;
 	}
 
 	/**
-	 * Creates a list containing the model data from a list of data elements,
-	 * limited to a certain set of element names.
+	 * Returns the data elements from a list that will be part of the model
+	 * data. These are all data element lists and, if not restricted to
+	 * lists, all other data elements with a value.
 	 *
 	 * @param elements  The list of data elements
 	 * @param names     A list of the element names to be included in the model
-	 *                  data
+	 *                  data or NULL for all
 	 * @param listsOnly TRUE if only data element lists shall be added
-	 * @return A new list containing the model data
+	 * @return A new list containing the model elements
+	 * @throws IllegalArgumentException If an element name is not found
 	 */
-	private List<Object> createModelData(DataElementList elements,
+	private List<DataElement<?>> getModelElements(DataElementList elements,
 		List<String> names, boolean listsOnly) {
-		List<Object> dataList;
+		List<DataElement<?>> result;
 
 		if (names == null) {
-			dataList = createModelData(elements, listsOnly);
+			result = new ArrayList<>(elements.getElementCount());
+
+			for (DataElement<?> element : elements) {
+				if (isModelElement(element, listsOnly)) {
+					result.add(element);
+				}
+			}
 		} else {
 			int count = names.size();
 
-			dataList = new ArrayList<Object>(count);
+			result = new ArrayList<>(count);
 
 			for (int i = 0; i < count; i++) {
 				DataElement<?> element = elements.getElementAt(names.get(i));
 
 				if (element != null) {
-					Object value = createModelValue(element, listsOnly);
-
-					if (value != null) {
-						dataList.add(value);
+					if (isModelElement(element, listsOnly)) {
+						result.add(element);
 					}
 				} else {
 					throw new IllegalArgumentException(
@@ -190,35 +266,68 @@ public class DataElementListModel extends ListDataModel<Object> {
 			}
 		}
 
-		return dataList;
+		return result;
 	}
 
 	/**
-	 * Helper method to create a model data value from a data element.
+	 * Checks whether a data element creates a model value.
 	 *
-	 * @param element   The data element to convert
+	 * @param element   The data element
 	 * @param listsOnly TRUE if only data element lists shall be converted
-	 * @return The resulting value or NULL for none
+	 * @return TRUE if the element creates a value
 	 */
-	private Object createModelValue(DataElement<?> element,
+	private boolean isModelElement(DataElement<?> element,
 		boolean listsOnly) {
-		Object value = null;
+		return element instanceof DataElementList ||
+			(!listsOnly && element.getValue() != null);
+	}
 
-		if (element instanceof DataElementList) {
-			DataElementListModel childModel =
-				new DataElementListModel(context, (DataElementList) element,
-					null, resourcePrefix, listsOnly);
+	/**
+	 * A list of model data that creates its values on first access.
+	 *
+	 * @author eso
+	 */
+	private class LazyModelData extends AbstractList<Object>
+		implements Serializable {
 
-			childModel.parent = this;
-			value = childModel;
-		} else if (!listsOnly) {
-			Object elementValue = element.getValue();
+		private static final long serialVersionUID = 1L;
 
-			if (elementValue != null) {
-				value = elementValue.toString();
+		private final List<DataElement<?>> elements;
+
+		private final boolean listsOnly;
+
+		private final Object[] values;
+
+		private final boolean[] created;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param elements  The data elements to create the values from
+		 * @param listsOnly TRUE if only data element lists shall be converted
+		 */
+		LazyModelData(List<DataElement<?>> elements, boolean listsOnly) {
+			this.elements = elements;
+			this.listsOnly = listsOnly;
+
+			values = new Object[elements.size()];
+			created = new boolean[values.length];
+		}
+
+		@Override
+		public Object get(int index) {
+			if (!created[index]) {
+				values[index] =
+					createModelValue(elements.get(index), listsOnly, true);
+				created[index] = true;
 			}
+
+			return values[index];
 		}
 
-		return value;
+		@Override
+		public int size() {
+			return elements.size();
+		}
 	}
 }
@@ -16,8 +16,8 @@
 //++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 package de.esoco.gwt.client.data;
 
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
+import com.google.gwt.i18n.client.DateTimeFormat;
+import com.google.gwt.i18n.client.DateTimeFormat.PredefinedFormat;
 import de.esoco.lib.model.ColumnDefinition;
 import de.esoco.lib.model.DataModel;
 import de.esoco.lib.model.FilterableDataModel;
@@ -27,18 +27,34 @@ import de.esoco.lib.property.SortDirection;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A simple data model implementation that is based on a list. A name can be
  * assigned to instances so that they can be rendered directly in certain user
  * interface elements. This data model is sortable and searchable.
  *
+ * <p>If multiple columns are sorted the column for which the sorting has been
+ * set last has the highest priority. The rows are sorted in a single stable
+ * pass with a composite comparator that is created when the sorting changes.
+ * The sort keys of all rows are extracted before sorting, with the values of
+ * numeric and date columns parsed into numbers. Values of such columns that
+ * cannot be parsed are sorted after the parsed values, and rows with empty
+ * values are always sorted last, independent of the sort direction.</p>
+ *
+ * <p>Models with at least {@link #setIndexThreshold(int) a certain number} of
+ * rows use {@link ColumnIndex column indexes} that are built lazily for the
+ * columns that are filtered or sorted. Filters on these models only evaluate
+ * the candidate rows that are selected from the indexes and the sorting by a
+ * single text column is derived from the order of the column index.</p>
+ *
  * @author ueggers
  */
 public class FilterableListDataModel<T extends DataModel<String>>
@@ -47,6 +63,13 @@ public class FilterableListDataModel<T extends DataModel<String>>
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * The default minimum number of rows for the use of column indexes.
+	 */
+	public static final int DEFAULT_INDEX_THRESHOLD = 1000;
+
+	private static DateTimeFormat[] dateFormats = null;
+
 	private final List<T> data;
 
 	private final List<T> dataCopy;
@@ -55,17 +78,22 @@ public class FilterableListDataModel<T extends DataModel<String>>
 
 	private final List<String> fieldIds = new ArrayList<String>();
 
-	private final RegExp constraintPattern = RegExp.compile(
-		"([" + FilterableDataModel.CONSTRAINT_OR_PREFIX +
-			FilterableDataModel.CONSTRAINT_AND_PREFIX + "])([" +
-			FilterableDataModel.CONSTRAINT_COMPARISON_CHARS + "])(.*)");
-
 	HashMap<String, SortDirection> columnSorting = new LinkedHashMap<>();
 
 	HashMap<String, String> filters = new LinkedHashMap<>();
 
 	private boolean newFilters;
 
+	private int indexThreshold = DEFAULT_INDEX_THRESHOLD;
+
+	private transient List<SortKey> sortKeys = null;
+
+	private transient RowFilter rowFilter = null;
+
+	private transient int[] filteredRows = null;
+
+	private transient ColumnIndex[] columnIndexes = null;
+
 	/**
 	 * Creates a new instance.
 	 *
@@ -110,6 +138,15 @@ public class FilterableListDataModel<T extends DataModel<String>>
 		return filters;
 	}
 
+	/**
+	 * Returns the minimum number of rows for the use of column indexes.
+	 *
+	 * @return The index threshold
+	 */
+	public int getIndexThreshold() {
+		return indexThreshold;
+	}
+
 	@Override
 	public SortDirection getSortDirection(String fieldId) {
 		SortDirection sortDirection = columnSorting.get(fieldId);
@@ -126,6 +163,7 @@ public class FilterableListDataModel<T extends DataModel<String>>
 	@Override
 	public void removeSorting() {
 		columnSorting.clear();
+		sortKeys = null;
 		newFilters = true;
 	}
 
@@ -142,11 +180,26 @@ public class FilterableListDataModel<T extends DataModel<String>>
 
 	@Override
 	public void setFilters(Map<String, String> filters) {
-		filters.clear();
-		filters.putAll(filters);
+		this.filters.clear();
+		this.filters.putAll(filters);
 		newFilters = true;
 	}
 
+	/**
+	 * Sets the minimum number of rows for which column indexes are used to
+	 * filter and sort this model. Indexes need additional memory and are
+	 * built on the first filtering or sorting of a column so that they only
+	 * pay off for larger models that are filtered repeatedly, e.g. while the
+	 * user types into a search field. The default value is
+	 * {@link #DEFAULT_INDEX_THRESHOLD}.
+	 *
+	 * @param minRows The minimum number of rows or {@link Integer#MAX_VALUE}
+	 *                to disable indexing
+	 */
+	public void setIndexThreshold(int minRows) {
+		indexThreshold = minRows;
+	}
+
 	@Override
 	public void setSortDirection(String fieldId, SortDirection mode) {
 		if (mode != null) {
@@ -155,9 +208,61 @@ public class FilterableListDataModel<T extends DataModel<String>>
 			columnSorting.remove(fieldId);
 		}
 
+		sortKeys = null;
 		newFilters = true;
 	}
 
+	/**
+	 * Returns the formats for the parsing of date values. The formats are
+	 * created on first use because they require the GWT locale which is not
+	 * available outside of client code.
+	 *
+	 * @return The date formats
+	 */
+	private static DateTimeFormat[] getDateFormats() {
+		if (dateFormats == null) {
+			dateFormats = new DateTimeFormat[] {
+				DateTimeFormat.getFormat(PredefinedFormat.ISO_8601),
+				DateTimeFormat.getFormat(PredefinedFormat.DATE_TIME_MEDIUM),
+				DateTimeFormat.getFormat(PredefinedFormat.DATE_MEDIUM) };
+		}
+
+		return dateFormats;
+	}
+
+	/**
+	 * Adds the filtered rows with a NULL or empty value in a certain column to
+	 * the model data.
+	 *
+	 * @param fieldIndex The column index
+	 */
+	private void addEmptyRows(int fieldIndex) {
+		for (int row : filteredRows) {
+			String value = dataCopy.get(row).getElement(fieldIndex);
+
+			if (value == null || value.isEmpty()) {
+				data.add(dataCopy.get(row));
+			}
+		}
+	}
+
+	/**
+	 * Adds the filtered rows from a range of indexed rows to the model data.
+	 *
+	 * @param rows     The indexed row positions
+	 * @param start    The start of the range (inclusive)
+	 * @param end      The end of the range (exclusive)
+	 * @param filtered The filter state of all rows
+	 */
+	private void addFilteredRows(int[] rows, int start, int end,
+		boolean[] filtered) {
+		for (int i = start; i < end; i++) {
+			if (filtered[rows[i]]) {
+				data.add(dataCopy.get(rows[i]));
+			}
+		}
+	}
+
 	/**
 	 * Applies the defined constraints for sorting and filtering. This
 	 * effectively sets the elements and their order in the data model.
@@ -171,236 +276,378 @@ public class FilterableListDataModel<T extends DataModel<String>>
 	}
 
 	/**
-	 * Applies all the filtering constraints to the data.
+	 * Creates the sort keys from the column sorting, ordered by descending
+	 * priority.
+	 *
+	 * @return The list of sort keys
 	 */
-	private void performFiltering() {
-		data.clear();
+	private List<SortKey> createSortKeys() {
+		List<SortKey> keys = new ArrayList<>(columnSorting.size());
+
+		for (Map.Entry<String, SortDirection> sorting :
+			columnSorting.entrySet()) {
+			int fieldIndex = fieldIds.indexOf(sorting.getKey());
+
+			if (fieldIndex >= 0) {
+				// the last sorted column has the highest priority
+				keys.add(0, new SortKey(fieldIndex,
+					sorting.getValue() == SortDirection.DESCENDING,
+					columns.get(fieldIndex).getDatatype()));
+			}
+		}
+
+		return keys;
+	}
 
-		List<T> allData = new ArrayList<T>(dataCopy);
+	/**
+	 * Returns the column indexes and creates them on first access. The actual
+	 * index data of a column is only built when it is used.
+	 *
+	 * @return The column indexes in the order of the row elements
+	 */
+	private ColumnIndex[] getColumnIndexes() {
+		if (columnIndexes == null) {
+			columnIndexes = new ColumnIndex[fieldIds.size()];
 
-		for (T dataModel : allData) {
-			boolean filterMatched = filters.isEmpty();
-			Set<String> filteredIds = filters.keySet();
+			for (int i = 0; i < columnIndexes.length; i++) {
+				columnIndexes[i] = new ColumnIndex(dataCopy, i);
+			}
+		}
 
-			int index = 0;
+		return columnIndexes;
+	}
 
-			for (String filterId : filteredIds) {
-				String value =
-					dataModel.getElement(fieldIds.indexOf(filterId));
+	/**
+	 * Checks whether column indexes are used for this model.
+	 *
+	 * @return TRUE if the model is indexed
+	 */
+	private boolean isIndexed() {
+		return dataCopy.size() >= indexThreshold;
+	}
 
-				String constraints = filters.get(filterId);
+	/**
+	 * Applies all the filtering constraints to the data. The filter
+	 * constraints are compiled into a {@link RowFilter} which is then applied
+	 * in a single pass. If the new filter only narrows the previous filter
+	 * only the rows that matched the previous filter are evaluated. If the
+	 * model is indexed and the candidate rows of the filter can be selected
+	 * from the column indexes only these are evaluated if there are fewer.
+	 */
+	private void performFiltering() {
+		if (rowFilter == null || !rowFilter.hasDefinition(filters)) {
+			RowFilter filter = RowFilter.compile(filters, fieldIds);
+			int[] candidates = null;
 
-				boolean attrOr = constraints.charAt(0) ==
-					FilterableDataModel.CONSTRAINT_OR_PREFIX;
+			if (rowFilter != null && filter.isRefinementOf(rowFilter)) {
+				candidates = filteredRows;
+			}
 
-				boolean satisfiesConstraints =
-					satisfiesConstraints(constraints, value);
+			if (isIndexed()) {
+				int[] indexed = filter.selectCandidates(getColumnIndexes());
 
-				if (index == 0) {
-					filterMatched = satisfiesConstraints;
-				} else {
-					if (attrOr) {
-						filterMatched = satisfiesConstraints || filterMatched;
-					} else {
-						filterMatched = satisfiesConstraints && filterMatched;
-					}
+				if (indexed != null && (candidates == null ||
+					indexed.length < candidates.length)) {
+					candidates = indexed;
 				}
-
-				index++;
 			}
 
-			if (filterMatched) {
-				data.add(dataModel);
+			int count = candidates != null ? candidates.length :
+			            dataCopy.size();
+			int[] result = new int[count];
+			int matches = 0;
+
+			for (int i = 0; i < count; i++) {
+				int row = candidates != null ? candidates[i] : i;
+
+				if (filter.matches(dataCopy.get(row))) {
+					result[matches++] = row;
+				}
 			}
+
+			rowFilter = filter;
+			filteredRows =
+				matches < count ? Arrays.copyOf(result, matches) : result;
+		}
+
+		data.clear();
+
+		for (int row : filteredRows) {
+			data.add(dataCopy.get(row));
 		}
 	}
 
 	/**
-	 * Performs the sorting according to the sorting preferences.
+	 * Performs the sorting according to the sorting preferences. The sort
+	 * keys of all rows are extracted once and the rows are then sorted in a
+	 * single stable pass.
 	 */
-
 	private void performSorting() {
 		if (columnSorting.size() > 0) {
-			Set<String> sortIds = columnSorting.keySet();
-
-			for (final String sortId : sortIds) {
-				final SortDirection sortDirection = columnSorting.get(sortId);
+			if (sortKeys == null) {
+				sortKeys = createSortKeys();
+			}
 
-				final int fieldIndex = fieldIds.indexOf(sortId);
+			if (sortKeys.size() == 1 && sortByIndex(sortKeys.get(0))) {
+				return;
+			}
 
-				final ColumnDefinition columnDefinition =
-					columns.get(fieldIndex);
+			List<SortRow<T>> rows = new ArrayList<>(data.size());
+			int keyCount = sortKeys.size();
 
-				data.sort(new Comparator<DataModel<String>>() {
-					@Override
-					public int compare(DataModel<String> dataModel,
-						DataModel<String> dataModelCmp) {
-						String value = dataModel.getElement(fieldIndex);
+			for (T row : data) {
+				Comparable<?>[] keys = new Comparable<?>[keyCount];
 
-						String compareValue =
-							dataModelCmp.getElement(fieldIndex);
+				for (int i = 0; i < keyCount; i++) {
+					keys[i] = sortKeys.get(i).extract(row);
+				}
 
-						int result = 0;
+				rows.add(new SortRow<>(row, keys));
+			}
 
-						if (sortDirection == SortDirection.DESCENDING) {
-							result = compareFieldValues(compareValue, value);
-						} else {
-							result = compareFieldValues(value, compareValue);
-						}
+			Collections.sort(rows, new SortRowComparator(sortKeys));
 
-						return result;
-					}
+			data.clear();
 
-					private int compareFieldValues(String value,
-						String compareValue) {
-						int result = 0;
-
-						if (columnDefinition
-							.getDatatype()
-							.equals(Integer.class.getName())) {
-							result = Integer
-								.valueOf(value)
-								.compareTo(Integer.valueOf(compareValue));
-						} else {
-							result = value.compareTo(compareValue);
-						}
-
-						return result;
-					}
-				});
+			for (SortRow<T> row : rows) {
+				data.add(row.row);
 			}
 		}
 	}
 
 	/**
-	 * Checks whether a given value satisfies a given search constraints. The
-	 * search constrains are parsed and split up using
-	 * {@link FilterableDataModel#CONSTRAINT_SEPARATOR}. The resulting string
-	 * elements contain a constraint prefix, a comparison operator and a
-	 * constraint value. The regular expression {@link #constraintPattern} is
-	 * used to retrieve the three parts from the string elements.
+	 * Sorts the filtered rows by the column index of a single sort key. This
+	 * is only done for text columns and if the filtered rows are a
+	 * significant part of the model because it takes linear time for the
+	 * full index. Rows with equal values remain in their original order and
+	 * rows with NULL or empty values are placed last like by the comparison
+	 * of sort keys.
 	 *
-	 * @param constraints The search constraints in string representation
-	 * @param value       a value to be checked.
-	 * @return TRUE if a given value satisfies the given search constraints
-	 * FALSE otherwise.
+	 * @param key The sort key
+	 * @return TRUE if the rows have been sorted, FALSE if the index could not
+	 * be applied
 	 */
-	private boolean satisfiesConstraints(String constraints, String value) {
-		boolean satisfies = true;
-
-		String[] contraints =
-			constraints.split(FilterableDataModel.CONSTRAINT_SEPARATOR);
-
-		for (int i = 0; i < contraints.length; i++) {
-			String constraint = contraints[i];
-
-			MatchResult constraintMatcher = constraintPattern.exec(constraint);
+	private boolean sortByIndex(SortKey key) {
+		if (!isIndexed() || key.numeric || key.date ||
+			filteredRows.length * 4 < dataCopy.size()) {
+			return false;
+		}
 
-			if (constraintMatcher != null) {
-				String prefix = constraintMatcher.getGroup(1);
-				String comparison = constraintMatcher.getGroup(2);
-				String constraintValue = constraintMatcher.getGroup(3);
+		ColumnIndex index = getColumnIndexes()[key.fieldIndex];
+		int[] sortedRows = index.getSortedRows();
+		String[] sortedValues = index.getSortedValues();
+		boolean[] filtered = new boolean[dataCopy.size()];
 
-				boolean or = prefix.equals(
-					String.valueOf(FilterableDataModel.CONSTRAINT_OR_PREFIX));
+		for (int row : filteredRows) {
+			filtered[row] = true;
+		}
 
-				boolean satisfiesConstraint = false;
+		data.clear();
 
-				if (constraintValue != null && value != null) {
-					switch (comparison) {
-						case "=":
-							satisfiesConstraint =
-								satisfiesEquals(constraintValue, value);
+		if (key.descending) {
+			int end = sortedRows.length;
 
-							break;
+			// add groups of equal values in reverse order to keep the
+			// original order of the rows in each group
+			while (end > 0) {
+				String value = sortedValues[end - 1];
+				int start = end - 1;
 
-						case "\u2260": // !=
-							satisfiesConstraint =
-								!constraintValue.equals(value);
-							break;
+				while (start > 0 && sortedValues[start - 1].equals(value)) {
+					start--;
+				}
 
-						case "~":
+				if (!value.isEmpty()) {
+					addFilteredRows(sortedRows, start, end, filtered);
+				}
 
-							String[] constraintItems =
-								constraintValue.split(",");
+				end = start;
+			}
 
-							for (String constraintItem : constraintItems) {
-								satisfiesConstraint |=
-									satisfiesEquals(constraintItem, value);
-							}
+			addEmptyRows(key.fieldIndex);
+		} else {
+			int start = 0;
 
-							break;
+			// empty values are sorted first in the index
+			while (start < sortedValues.length &&
+				sortedValues[start].isEmpty()) {
+				start++;
+			}
 
-						case "<":
-							satisfiesConstraint =
-								constraintValue.compareTo(value) > 0;
-							break;
+			addFilteredRows(sortedRows, start, sortedRows.length, filtered);
+			addEmptyRows(key.fieldIndex);
+		}
 
-						case ">":
-							satisfiesConstraint =
-								constraintValue.compareTo(value) < 0;
-							break;
+		return true;
+	}
 
-						case "\u2264": // <=
-							satisfiesConstraint =
-								constraintValue.compareTo(value) >= 0;
-							break;
+	/**
+	 * A column sort key that extracts typed values from rows.
+	 *
+	 * @author eso
+	 */
+	private static class SortKey {
+
+		private final int fieldIndex;
+
+		private final boolean descending;
+
+		private final boolean numeric;
+
+		private final boolean date;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param fieldIndex The index of the sorted field
+		 * @param descending TRUE for descending order
+		 * @param datatype   The name of the column datatype
+		 */
+		SortKey(int fieldIndex, boolean descending, String datatype) {
+			this.fieldIndex = fieldIndex;
+			this.descending = descending;
+
+			numeric = Integer.class.getName().equals(datatype) ||
+				Long.class.getName().equals(datatype) ||
+				Short.class.getName().equals(datatype) ||
+				Double.class.getName().equals(datatype) ||
+				Float.class.getName().equals(datatype) ||
+				"java.math.BigDecimal".equals(datatype) ||
+				"java.math.BigInteger".equals(datatype);
+			date = Date.class.getName().equals(datatype);
+		}
 
-						case "\u2265": // >=
-							satisfiesConstraint =
-								constraintValue.compareTo(value) <= 0;
-							break;
-					}
+		/**
+		 * Extracts the sort value of this key from a row. Numeric and date
+		 * values are parsed into numbers. Values that cannot be parsed are
+		 * returned as strings.
+		 *
+		 * @param row The row
+		 * @return The sort value (may be NULL)
+		 */
+		Comparable<?> extract(DataModel<String> row) {
+			String value = row.getElement(fieldIndex);
+
+			if (value == null || value.isEmpty()) {
+				return null;
+			} else if (numeric) {
+				try {
+					return Double.valueOf(value);
+				} catch (NumberFormatException e) {
+					return value;
 				}
+			} else if (date) {
+				return parseDate(value);
+			} else {
+				return value;
+			}
+		}
 
-				if (i == 0) {
-					satisfies = satisfies && satisfiesConstraint;
-				} else {
-					if (or) {
-						satisfies = satisfies || satisfiesConstraint;
-					} else {
-						satisfies = satisfies && satisfiesConstraint;
+		/**
+		 * Parses a date value.
+		 *
+		 * @param value The value to parse
+		 * @return The date in milliseconds or the original value if it could
+		 * not be parsed
+		 */
+		private Comparable<?> parseDate(String value) {
+			try {
+				return Long.valueOf(value);
+			} catch (NumberFormatException e) {
+				for (DateTimeFormat format : getDateFormats()) {
+					try {
+						return format.parseStrict(value).getTime();
+					} catch (IllegalArgumentException parseError) {
+						// try next format
 					}
 				}
 			}
+
+			return value;
 		}
+	}
+
+	/**
+	 * A row with the extracted values of all sort keys.
+	 *
+	 * @author eso
+	 */
+	private static class SortRow<T> {
 
-		return satisfies;
+		final T row;
+
+		final Comparable<?>[] keys;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param row  The row
+		 * @param keys The sort key values
+		 */
+		SortRow(T row, Comparable<?>[] keys) {
+			this.row = row;
+			this.keys = keys;
+		}
 	}
 
 	/**
-	 * Checks whether the given value satisfies the given constraint value when
-	 * the equals "=" operator is applied. This check also respects wildcards
-	 * (*) in the constraint value.
+	 * A composite comparator that compares the sort key values of rows in
+	 * the order of the sort key priority. The sort direction of a key only
+	 * applies to values of the same type. Independent of the direction NULL
+	 * values are always sorted last and unparsed string values after values
+	 * of other types so that the order is consistent for mixed values.
 	 *
-	 * @param constraintValue The search constraint value
-	 * @param value           The value to check for a match.
-	 * @return Whether the given value satisfies the given constraint value
-	 * when
-	 * the equals "=" operator is applied.
+	 * @author eso
 	 */
-	private boolean satisfiesEquals(String constraintValue, String value) {
-		boolean satisfiesConstraint = false;
+	private static class SortRowComparator
+		implements Comparator<SortRow<?>> {
+
+		private final boolean[] descending;
 
-		if (constraintValue.contains("*")) {
-			String flags = "";
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param sortKeys The sort keys
+		 */
+		SortRowComparator(List<SortKey> sortKeys) {
+			descending = new boolean[sortKeys.size()];
 
-			if (RegExp
-				.compile("[A-Z]+")
-				.exec(constraintValue.replaceAll("\\*", "")) == null) {
-				flags += "i";
+			for (int i = 0; i < descending.length; i++) {
+				descending[i] = sortKeys.get(i).descending;
 			}
+		}
 
-			RegExp compile =
-				RegExp.compile("^" + constraintValue.replaceAll("\\*", ".*"),
-					flags);
-			MatchResult exec = compile.exec(value);
+		@Override
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public int compare(SortRow<?> row, SortRow<?> other) {
+			for (int i = 0; i < descending.length; i++) {
+				Comparable value = row.keys[i];
+				Comparable otherValue = other.keys[i];
+				int result;
+
+				if (value == null || otherValue == null) {
+					if (value != otherValue) {
+						return value == null ? 1 : -1;
+					}
 
-			satisfiesConstraint = exec != null;
-		} else {
-			satisfiesConstraint = constraintValue.equals(value);
-		}
+					result = 0;
+				} else if (value.getClass() == otherValue.getClass()) {
+					result = value.compareTo(otherValue);
 
-		return satisfiesConstraint;
+					if (descending[i]) {
+						result = -result;
+					}
+				} else {
+					// values that could not be parsed are strings
+					return value instanceof String ? 1 : -1;
+				}
+
+				if (result != 0) {
+					return result;
+				}
+			}
+
+			return 0;
+		}
 	}
 }
@@ -0,0 +1,124 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sparse cache of query rows that stores rows in pages of a fixed size.
+ * Pages are evicted in least-recently-used order if the number of cached
+ * pages exceeds the budget of the cache. Pages can be partially filled, a
+ * row that has not been stored is returned as NULL.
+ *
+ * @author eso
+ */
+class PageCache<T> {
+
+	private final int pageSize;
+
+	private final Map<Integer, Object[]> pages;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param pageSize The number of rows per page
+	 * @param maxRows  The maximum number of rows to cache (will be rounded
+	 *                 up to full pages)
+	 */
+	PageCache(int pageSize, int maxRows) {
+		final int maxPages = (maxRows + pageSize - 1) / pageSize;
+
+		this.pageSize = pageSize;
+
+		pages = new LinkedHashMap<Integer, Object[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+				Map.Entry<Integer, Object[]> eldest) {
+				return size() > maxPages;
+			}
+		};
+	}
+
+	/**
+	 * Removes all cached rows.
+	 */
+	void clear() {
+		pages.clear();
+	}
+
+	/**
+	 * Returns a cached row and marks its page as recently used.
+	 *
+	 * @param index The absolute row index
+	 * @return The row or NULL if not cached
+	 */
+	@SuppressWarnings("unchecked")
+	T get(int index) {
+		Object[] page = pages.get(index / pageSize);
+
+		return page != null ? (T) page[index % pageSize] : null;
+	}
+
+	/**
+	 * Returns the number of cached pages.
+	 *
+	 * @return The page count
+	 */
+	int getPageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * Returns the number of rows per page.
+	 *
+	 * @return The page size
+	 */
+	int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Stores consecutive rows in the pages they belong to.
+	 *
+	 * @param start The absolute index of the first row
+	 * @param rows  The rows to store
+	 */
+	void putAll(int start, List<T> rows) {
+		Object[] page = null;
+		int pageIndex = -1;
+
+		for (int i = 0; i < rows.size(); i++) {
+			int index = start + i;
+
+			if (index / pageSize != pageIndex) {
+				pageIndex = index / pageSize;
+				page = pages.get(pageIndex);
+
+				if (page == null) {
+					page = new Object[pageSize];
+					pages.put(pageIndex, page);
+				}
+			}
+
+			page[index % pageSize] = rows.get(i);
+		}
+	}
+}
@@ -16,9 +16,13 @@
 //++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 package de.esoco.gwt.client.data;
 
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import de.esoco.data.element.QueryResultElement;
 import de.esoco.data.element.StringDataElement;
+import de.esoco.data.element.ValueDictionary;
 import de.esoco.gwt.client.ServiceRegistry;
 import de.esoco.gwt.shared.StorageService;
 import de.esoco.lib.model.Callback;
@@ -46,6 +50,44 @@ import static de.esoco.lib.property.StorageProperties.QUERY_START;
  * A remote data model implementation that performs entity queries through the
  * {@link StorageService} interface.
  *
+ * <p>The queried rows are kept in a {@link RowWindow} ring buffer that holds
+ * the visible window and a {@link #setWindowMargin(int) margin} of rows
+ * above and below it. Scrolling only queries the rows that are missing at
+ * one end of the buffer and window changes inside the buffered range don't
+ * need a query at all. If the margin in the scroll direction has been
+ * consumed by half it is refilled in the background. Changes of the
+ * constraints discard the buffered rows.</p>
+ *
+ * <p>All queried rows are also stored in a sparse {@link PageCache} with a
+ * {@link #setPageCache(int, int) limited budget} that evicts the least
+ * recently used pages. Rows that are neither in the window buffer nor in the
+ * page cache are queried, so that returning to previously displayed
+ * positions of a long result doesn't need a query. The page caches are
+ * shared by all model instances through a {@link QueryResultCache} with an
+ * entry for each combination of query ID and constraints. A new model for
+ * the same query (e.g. in a newly created panel) therefore reuses the rows
+ * that have already been received. Cached results expire after
+ * {@link #setResultCacheMaxAge(long) a maximum age} and are discarded by
+ * {@link #clearResultCache()}, which is invoked by the framework on login,
+ * logout, and when a process has finished. The results of a single query are
+ * discarded by {@link #resetQuerySize()} when the server sends the query
+ * again.</p>
+ *
+ * <p>Optionally the rows ahead of the scroll direction can be prefetched
+ * into the page cache. If enabled with {@link #setScrollPrefetch(int)} the
+ * model tracks the scroll velocity across calls to
+ * {@link #setWindow(int, int, Callback)} and queries the rows that will be
+ * reached within the prefetch time in a single background query. If the
+ * scrolling stops the velocity is reset and no further rows are
+ * prefetched.</p>
+ *
+ * <p>After a change of the filters or sorting the next query is deferred
+ * until the end of the current event loop turn or, if set with
+ * {@link #setQueryDelay(int)}, for a short delay. All constraint and window
+ * changes until then are merged into a single query for the last requested
+ * window. Results of queries that have been started before a constraint
+ * change are discarded without invoking their callback.</p>
+ *
  * @author eso
  */
 public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
@@ -54,6 +96,28 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * The default number of rows that are buffered above and below the
+	 * visible window.
+	 */
+	public static final int DEFAULT_WINDOW_MARGIN = 20;
+
+	/**
+	 * The default number of rows in a page of the page cache.
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 50;
+
+	/**
+	 * The default maximum number of rows in the page cache.
+	 */
+	public static final int DEFAULT_MAX_CACHED_ROWS = 1000;
+
+	// window changes after a longer interval reset the scroll velocity
+	private static final int SCROLL_STOP_INTERVAL = 400;
+
+	// the number of queries for a window before incomplete rows are accepted
+	private static final int MAX_WINDOW_QUERIES = 2;
+
 	private String queryId;
 
 	private int querySize;
@@ -62,7 +126,33 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 
 	private transient int windowStart;
 
-	private transient List<DataModel<String>> currentData;
+	private transient int windowMargin = DEFAULT_WINDOW_MARGIN;
+
+	private transient RowWindow<DataModel<String>> rowWindow;
+
+	private transient int pageSize = DEFAULT_PAGE_SIZE;
+
+	private transient int maxCachedRows = DEFAULT_MAX_CACHED_ROWS;
+
+	private transient QueryResultCache.Entry cachedResult;
+
+	private transient int prefetchTime = 0;
+
+	private transient double scrollVelocity = 0;
+
+	private transient double lastWindowTime = 0;
+
+	private transient int generation = 0;
+
+	private transient boolean prefetching = false;
+
+	private transient boolean constraintsChanged = false;
+
+	private transient int queryDelay = 0;
+
+	private transient int deferredQuery = 0;
+
+	private transient Timer queryTimer;
 
 	private transient Map<String, String> filters = new HashMap<>();
 
@@ -86,12 +176,49 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	QueryDataModel() {
 	}
 
+	/**
+	 * Removes all query results from the cache that is shared by all
+	 * instances, e.g. after a logout or if the data has been modified.
+	 */
+	public static void clearResultCache() {
+		QueryResultCache.clear();
+	}
+
+	/**
+	 * Sets the maximum number of queries for which the results are kept in
+	 * the cache that is shared by all instances. The default is 20 queries.
+	 *
+	 * @param maxQueries The maximum number of cached queries
+	 */
+	public static void setMaxCachedQueries(int maxQueries) {
+		QueryResultCache.setMaxQueries(Math.max(0, maxQueries));
+	}
+
+	/**
+	 * Sets the maximum age of the results in the cache that is shared by all
+	 * instances. Older results will be queried again. The default is 5
+	 * minutes.
+	 *
+	 * @param maxAge The maximum age in milliseconds or zero for no expiration
+	 */
+	public static void setResultCacheMaxAge(long maxAge) {
+		QueryResultCache.setMaxAge(Math.max(0, maxAge));
+	}
+
 	/**
 	 * @see RemoteDataModel#getAvailableElementCount()
 	 */
 	@Override
 	public int getAvailableElementCount() {
-		return currentData.size();
+		int count = 0;
+
+		for (int i = windowStart; i < windowStart + windowSize; i++) {
+			if (getAvailableRow(i) != null) {
+				count++;
+			}
+		}
+
+		return count;
 	}
 
 	/**
@@ -99,7 +226,13 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	 */
 	@Override
 	public DataModel<String> getElement(int index) {
-		return currentData.get(index - windowStart);
+		DataModel<String> row = getAvailableRow(index);
+
+		if (row == null) {
+			throw new IndexOutOfBoundsException("Row not available: " + index);
+		}
+
+		return row;
 	}
 
 	/**
@@ -143,6 +276,16 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 		return sortFields.get(fieldId);
 	}
 
+	/**
+	 * Returns the number of rows that are buffered above and below the
+	 * visible window.
+	 *
+	 * @return The window margin
+	 */
+	public int getWindowMargin() {
+		return windowMargin;
+	}
+
 	/**
 	 * @see RemoteDataModel#getWindowSize()
 	 */
@@ -167,7 +310,17 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	 */
 	@Override
 	public Iterator<DataModel<String>> iterator() {
-		return currentData.iterator();
+		List<DataModel<String>> rows = new ArrayList<>(windowSize);
+
+		for (int i = windowStart; i < windowStart + windowSize; i++) {
+			DataModel<String> row = getAvailableRow(i);
+
+			if (row != null) {
+				rows.add(row);
+			}
+		}
+
+		return rows.iterator();
 	}
 
 	/**
@@ -179,25 +332,24 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	@Override
 	public void prepareDownload(String fileName, int maxRows,
 		final Callback<String> callback) {
-		if (currentData != null) {
+		if (rowWindow != null) {
 			StringDataElement queryData = createQueryData(0, maxRows);
 
 			queryData.setProperty(FILE_NAME, fileName);
 
-			ServiceRegistry
-				.getStorageService()
-				.executeCommand(StorageService.PREPARE_DOWNLOAD, queryData,
-					new AsyncCallback<StringDataElement>() {
-						@Override
-						public void onFailure(Throwable e) {
-							callback.onError(e);
-						}
+			ServiceRegistry.executeCommand(StorageService.PREPARE_DOWNLOAD,
+				queryData,
+				new AsyncCallback<StringDataElement>() {
+					@Override
+					public void onFailure(Throwable e) {
+						callback.onError(e);
+					}
 
-						@Override
-						public void onSuccess(StringDataElement downloadUrl) {
-							callback.onSuccess(downloadUrl.getValue());
-						}
-					});
+					@Override
+					public void onSuccess(StringDataElement downloadUrl) {
+						callback.onSuccess(downloadUrl.getValue());
+					}
+				});
 		}
 	}
 
@@ -207,6 +359,7 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	@Override
 	public void removeAllFilters() {
 		filters.clear();
+		invalidateRows();
 	}
 
 	/**
@@ -215,13 +368,18 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	@Override
 	public void removeSorting() {
 		sortFields.clear();
+		invalidateRows();
 	}
 
 	/**
-	 * Resets the query size to force a re-initialization.
+	 * Resets the query size to force a re-initialization. This is invoked if
+	 * the server has sent the query again, e.g. after the queried data has
+	 * been modified, and therefore also removes the cached results of the
+	 * query for all constraints.
 	 */
 	public void resetQuerySize() {
-		querySize = 0;
+		QueryResultCache.removeQuery(queryId);
+		invalidateRows();
 	}
 
 	/**
@@ -229,10 +387,17 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	 */
 	@Override
 	public void setFilter(String fieldId, String filter) {
+		String previous;
+
 		if (filter != null && !filter.isEmpty()) {
-			filters.put(fieldId, filter);
+			previous = filters.put(fieldId, filter);
 		} else {
-			filters.remove(fieldId);
+			previous = filters.remove(fieldId);
+			filter = null;
+		}
+
+		if (previous == null ? filter != null : !previous.equals(filter)) {
+			invalidateRows();
 		}
 	}
 
@@ -241,8 +406,54 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	 */
 	@Override
 	public void setFilters(Map<String, String> filters) {
-		filters.clear();
-		filters.putAll(filters);
+		this.filters.clear();
+		this.filters.putAll(filters);
+		invalidateRows();
+	}
+
+	/**
+	 * Sets the parameters of the page cache which stores all queried rows
+	 * for the reuse when the window returns to a previous position. The
+	 * defaults are {@link #DEFAULT_PAGE_SIZE} and
+	 * {@link #DEFAULT_MAX_CACHED_ROWS}. Because page caches are shared the
+	 * parameters only apply to the caches that are created by this model.
+	 *
+	 * @param pageSize The number of rows per page
+	 * @param maxRows  The maximum number of cached rows (zero to disable the
+	 *                 page cache)
+	 */
+	public void setPageCache(int pageSize, int maxRows) {
+		this.pageSize = Math.max(1, pageSize);
+		this.maxCachedRows = Math.max(0, maxRows);
+		cachedResult = null;
+	}
+
+	/**
+	 * Sets the delay for the query after a change of the filters or sorting.
+	 * Further changes during the delay restart it so that the query is only
+	 * executed after the changes have stopped, e.g. when the user stops
+	 * typing into a filter field. If zero (the default) the query is only
+	 * deferred until the end of the current event loop turn.
+	 *
+	 * @param milliseconds The query delay in milliseconds
+	 */
+	public void setQueryDelay(int milliseconds) {
+		queryDelay = Math.max(0, milliseconds);
+	}
+
+	/**
+	 * Enables the prefetching of rows in the scroll direction. The number of
+	 * prefetched rows is determined by the scroll velocity and the prefetch
+	 * time but is limited to half the capacity of the page cache (see
+	 * {@link #setPageCache(int, int)}) because prefetched rows outside of
+	 * the window margin are only stored there.
+	 *
+	 * @param milliseconds The time for which rows are prefetched at the
+	 *                     current scroll velocity or zero to disable
+	 *                     prefetching (the default)
+	 */
+	public void setScrollPrefetch(int milliseconds) {
+		prefetchTime = Math.max(0, milliseconds);
 	}
 
 	/**
@@ -250,40 +461,53 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	 */
 	@Override
 	public void setSortDirection(String fieldId, SortDirection direction) {
+		SortDirection previous;
+
 		if (direction != null) {
-			sortFields.put(fieldId, direction);
+			previous = sortFields.put(fieldId, direction);
 		} else {
-			sortFields.remove(fieldId);
+			previous = sortFields.remove(fieldId);
+		}
+
+		if (previous != direction) {
+			invalidateRows();
 		}
 	}
 
 	/**
+	 * Queries the rows of the window that are neither buffered nor cached.
+	 * If all rows are available the callback is invoked immediately. After a
+	 * change of the constraints the query is deferred and only the last
+	 * window and callback will be used.
+	 *
 	 * @see RemoteDataModel#setWindow(int, int, Callback)
 	 */
 	@Override
 	public void setWindow(int queryStart, int queryLimit,
 		final Callback<RemoteDataModel<DataModel<String>>> callback) {
-		if (currentData == null) {
-			currentData = new ArrayList<DataModel<String>>(queryLimit);
-		} else if (queryLimit != windowSize) {
-			currentData.clear();
+		if (constraintsChanged) {
+			deferWindow(queryStart, queryLimit, callback);
+		} else {
+			updateWindow(queryStart, queryLimit, callback);
 		}
+	}
 
-		windowSize = queryLimit;
-
-		int windowEnd = windowStart + currentData.size();
-		int end = queryStart + windowSize;
+	/**
+	 * Sets the number of rows that are buffered above and below the visible
+	 * window. Buffered rows can be displayed without a query when the window
+	 * is moved by less than the margin. The default value is
+	 * {@link #DEFAULT_WINDOW_MARGIN}.
+	 *
+	 * @param rows The number of margin rows (zero to only buffer the window)
+	 */
+	public void setWindowMargin(int rows) {
+		windowMargin = Math.max(0, rows);
 
-		if (queryStart > windowStart && queryStart < windowEnd) {
-			queryLimit -= windowEnd - queryStart;
-			queryStart = windowEnd;
-		} else if (end >= windowStart && end < windowEnd) {
-			queryLimit -= end - windowStart;
+		if (rowWindow != null) {
+			rowWindow.retain(windowStart - windowMargin,
+				windowStart + windowSize + windowMargin);
+			rowWindow.setCapacity(windowSize + 2 * windowMargin);
 		}
-
-		StringDataElement queryData = createQueryData(queryStart, queryLimit);
-
-		executeQuery(queryData, queryStart, queryLimit, callback);
 	}
 
 	@Override
@@ -300,6 +524,7 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	public void useConstraints(QueryDataModel otherModel) {
 		filters = otherModel.filters;
 		sortFields = otherModel.sortFields;
+		invalidateRows();
 	}
 
 	/**
@@ -315,6 +540,14 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 		queryData.setProperty(QUERY_START, queryStart);
 		queryData.setProperty(QUERY_LIMIT, queryLimit);
 
+		// let the server encode repeated values with the session dictionary
+		ValueDictionary dictionary = ValueDictionary.getClientDictionary();
+
+		queryData.setProperty(StorageService.QUERY_DICTIONARY_ID,
+			dictionary.getId());
+		queryData.setProperty(StorageService.QUERY_DICTIONARY_SIZE,
+			dictionary.size());
+
 		if (!sortFields.isEmpty()) {
 			queryData.setProperty(QUERY_SORT, sortFields);
 		}
@@ -327,72 +560,426 @@ public class QueryDataModel implements RemoteDataModel<DataModel<String>>,
 	}
 
 	/**
-	 * Executes a query from {@link #setWindow(int, int, Callback)}.
+	 * Defers a window change after a change of the constraints. A window
+	 * change that is already deferred will be replaced.
 	 *
-	 * @param queryData The query data
-	 * @param start     The start index for the query
-	 * @param count     The number of data model elements to query
-	 * @param callback  The callback to be invoked when the query is finished
+	 * @param queryStart The start of the window
+	 * @param queryLimit The size of the window
+	 * @param callback   The callback to be invoked when the window rows are
+	 *                   available
 	 */
-	private void executeQuery(StringDataElement queryData, final int start,
-		final int count,
+	private void deferWindow(final int queryStart, final int queryLimit,
 		final Callback<RemoteDataModel<DataModel<String>>> callback) {
-		ServiceRegistry
-			.getStorageService()
-			.executeCommand(StorageService.QUERY, queryData,
-				new AsyncCallback<QueryResultElement<DataModel<String>>>() {
-					@Override
-					public void onFailure(Throwable e) {
+		final int query = ++deferredQuery;
+
+		if (queryTimer != null) {
+			queryTimer.cancel();
+			queryTimer = null;
+		}
+
+		if (queryDelay > 0) {
+			queryTimer = new Timer() {
+				@Override
+				public void run() {
+					queryTimer = null;
+					executeDeferredWindow(query, queryStart, queryLimit,
+						callback);
+				}
+			};
+			queryTimer.schedule(queryDelay);
+		} else {
+			Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+				@Override
+				public void execute() {
+					executeDeferredWindow(query, queryStart, queryLimit,
+						callback);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Executes a deferred window change if it hasn't been superseded by a
+	 * later window change.
+	 *
+	 * @param query      The number of the deferred window change
+	 * @param queryStart The start of the window
+	 * @param queryLimit The size of the window
+	 * @param callback   The callback to be invoked when the window rows are
+	 *                   available
+	 */
+	private void executeDeferredWindow(int query, int queryStart,
+		int queryLimit,
+		Callback<RemoteDataModel<DataModel<String>>> callback) {
+		if (query == deferredQuery) {
+			constraintsChanged = false;
+			updateWindow(queryStart, queryLimit, callback);
+		}
+	}
+
+	/**
+	 * Executes a query for a range of rows and stores the result in the row
+	 * window. Results of queries that have been executed before the last
+	 * change of the constraints are discarded.
+	 *
+	 * @param start    The start index for the query
+	 * @param count    The number of data model elements to query
+	 * @param callback The callback to be invoked when the window rows are
+	 *                 available or NULL for a background query
+	 * @param queries  The number of queries that have already been executed
+	 *                 for the window of the callback
+	 */
+	private void executeQuery(final int start, final int count,
+		final Callback<RemoteDataModel<DataModel<String>>> callback,
+		final int queries) {
+		final int queryGeneration = generation;
+
+		ServiceRegistry.executeCommand(StorageService.QUERY,
+			createQueryData(start, count),
+			new AsyncCallback<QueryResultElement<DataModel<String>>>() {
+				@Override
+				public void onFailure(Throwable e) {
+					if (callback != null) {
 						callback.onError(e);
+					} else {
+						prefetching = false;
 					}
+				}
 
-					@Override
-					public void onSuccess(
-						QueryResultElement<DataModel<String>> result) {
-						setCurrentData(result, start, count);
+				@Override
+				public void onSuccess(
+					QueryResultElement<DataModel<String>> result) {
+					if (callback == null) {
+						prefetching = false;
+					}
 
-						callback.onSuccess(QueryDataModel.this);
+					if (queryGeneration == generation) {
+						storeRows(result, start, callback != null);
+
+						if (callback != null) {
+							loadWindow(callback, queries + 1);
+						}
 					}
-				});
+				}
+			});
+	}
+
+	/**
+	 * Searches the first or last row in a range that is neither buffered nor
+	 * cached.
+	 *
+	 * @param from    The start of the range (inclusive)
+	 * @param to      The end of the range (exclusive)
+	 * @param forward TRUE to search the first, FALSE for the last row
+	 * @return The index of the missing row or -1 if all rows are available
+	 */
+	private int findMissingRow(int from, int to, boolean forward) {
+		for (int i = from; i < to; i++) {
+			int index = forward ? i : to - 1 - (i - from);
+
+			if (getAvailableRow(index) == null) {
+				return index;
+			}
+		}
+
+		return -1;
 	}
 
 	/**
-	 * Sets the current data of this model by converting query data elements
-	 * into data models.
+	 * Returns a row from the window buffer or the page cache.
 	 *
-	 * @param queryResult The data elements to convert
-	 * @param start       The starting index of the new elements
+	 * @param index The row index
+	 * @return The row or NULL if not available
 	 */
-	private void setCurrentData(
-		QueryResultElement<DataModel<String>> queryResult, int start,
-		int count) {
+	private DataModel<String> getAvailableRow(int index) {
+		if (rowWindow != null && rowWindow.contains(index)) {
+			return rowWindow.get(index);
+		}
+
+		QueryResultCache.Entry cache = getCachedResult();
+
+		return cache != null ? cache.pages.get(index) : null;
+	}
+
+	/**
+	 * Returns the key of the current query in the shared result cache.
+	 *
+	 * @return The cache key
+	 */
+	private String getCacheKey() {
+		return QueryResultCache.createKey(queryId, filters, sortFields);
+	}
+
+	/**
+	 * Returns the shared cache entry for the current query and constraints.
+	 * If the entry contains the size of the query it will be used as the
+	 * current query size.
+	 *
+	 * @return The cache entry or NULL if caching is disabled
+	 */
+	private QueryResultCache.Entry getCachedResult() {
+		if ((cachedResult == null || !cachedResult.isValid()) &&
+			maxCachedRows > 0) {
+			cachedResult =
+				QueryResultCache.get(getCacheKey(), pageSize, maxCachedRows);
+
+			if (cachedResult.querySize > 0) {
+				querySize = cachedResult.querySize;
+			}
+		}
+
+		return cachedResult;
+	}
+
+	/**
+	 * Returns the number of rows to prefetch in the scroll direction.
+	 *
+	 * @return The number of prefetch rows
+	 */
+	private int getPrefetchRowCount() {
+		if (prefetchTime == 0 || maxCachedRows == 0) {
+			return 0;
+		}
+
+		return Math.min((int) (Math.abs(scrollVelocity) * prefetchTime),
+			maxCachedRows / 2);
+	}
+
+	/**
+	 * Discards the buffered rows after a change of the query constraints.
+	 */
+	private void invalidateRows() {
+		// the size of the previous constraints must not limit new queries
+		querySize = 0;
+		generation++;
+		prefetching = false;
+		constraintsChanged = true;
+
+		if (rowWindow != null) {
+			rowWindow.clear(0);
+		}
+
+		// the cached result of the new constraints is resolved on demand
+		cachedResult = null;
+	}
+
+	/**
+	 * Checks whether all rows of the current window are available and then
+	 * invokes the callback. Otherwise the missing rows are queried and this
+	 * method is invoked again when the query has finished. This is necessary
+	 * because a query result can restart the window buffer, in which case
+	 * visible rows that are not part of the result must be in the page
+	 * cache. If rows are still missing after {@link #MAX_WINDOW_QUERIES} the
+	 * callback is invoked anyway because the query result has shrunk in the
+	 * meantime.
+	 *
+	 * @param callback The callback to be invoked when the window rows are
+	 *                 available
+	 * @param queries  The number of queries that have already been executed
+	 *                 for the window
+	 */
+	private void loadWindow(
+		Callback<RemoteDataModel<DataModel<String>>> callback, int queries) {
+		int bufferStart = Math.max(0, windowStart - windowMargin);
+		int bufferEnd = windowStart + windowSize + windowMargin;
+		int visibleEnd = windowStart + windowSize;
+
+		if (querySize > 0) {
+			bufferEnd = Math.min(bufferEnd, querySize);
+			visibleEnd = Math.min(visibleEnd, querySize);
+		}
+
+		if (queries >= MAX_WINDOW_QUERIES ||
+			findMissingRow(windowStart, visibleEnd, true) < 0) {
+			callback.onSuccess(this);
+			prefetchRows();
+		} else {
+			queryMissingRows(bufferStart, bufferEnd, callback, queries);
+		}
+	}
+
+	/**
+	 * Queries missing rows in the background. This refills the window
+	 * margin if at least half of it is missing at one end and prefetches the
+	 * rows in the scroll direction if enabled. Only one background query is
+	 * executed at a time.
+	 */
+	private void prefetchRows() {
+		int threshold = Math.max(1, windowMargin / 2);
+		int prefetchRows = getPrefetchRowCount();
+		int start = Math.max(0, windowStart - windowMargin);
+		int end = windowStart + windowSize + windowMargin;
+
+		if (scrollVelocity > 0) {
+			end += prefetchRows;
+		} else if (scrollVelocity < 0) {
+			start = Math.max(0, start - prefetchRows);
+		}
+
+		if (querySize > 0) {
+			end = Math.min(end, querySize);
+		}
+
+		if (!prefetching) {
+			int after = findMissingRow(windowStart + windowSize, end, true);
+			int before = findMissingRow(start, windowStart, false);
+
+			if (after >= 0 && end - after >= threshold) {
+				int last = findMissingRow(after, end, false);
+
+				prefetching = true;
+				executeQuery(after, last + 1 - after, null, 0);
+			} else if (before >= 0 && before + 1 - start >= threshold) {
+				int first = findMissingRow(start, before + 1, true);
+
+				prefetching = true;
+				executeQuery(first, before + 1 - first, null, 0);
+			}
+		}
+	}
+
+	/**
+	 * Queries the rows of a buffer range that are neither buffered nor
+	 * cached. The query covers the range from the first to the last missing
+	 * row.
+	 *
+	 * @param bufferStart The start of the buffer range
+	 * @param bufferEnd   The end of the buffer range
+	 * @param callback    The callback to be invoked when the window rows
+	 *                    are available
+	 * @param queries     The number of queries that have already been
+	 *                    executed for the window
+	 */
+	private void queryMissingRows(int bufferStart, int bufferEnd,
+		Callback<RemoteDataModel<DataModel<String>>> callback, int queries) {
+		int start = findMissingRow(bufferStart, bufferEnd, true);
+		int end = findMissingRow(bufferStart, bufferEnd, false) + 1;
+
+		executeQuery(start, end - start, callback, queries);
+	}
+
+	/**
+	 * Stores the rows of a query result in the page cache and the row window.
+	 * The window only receives the rows inside the buffer range of the
+	 * visible window. Rows that extend the window are added at the
+	 * corresponding end, rows inside the window replace the existing rows.
+	 * If the result is not contiguous with the window the window is either
+	 * restarted with the result rows or, for background queries, the result
+	 * is only stored in the page cache.
+	 *
+	 * @param queryResult The query result
+	 * @param start       The index of the first result row
+	 * @param restart     TRUE to restart the window with non-contiguous rows
+	 */
+	private void storeRows(QueryResultElement<DataModel<String>> queryResult,
+		int start, boolean restart) {
+		List<DataModel<String>> rows = new ArrayList<>();
+
 		querySize = queryResult.getQuerySize();
 
-		if (count == windowSize || count == querySize ||
-			count != queryResult.getElementCount()) {
-			currentData.clear();
-			windowStart = start;
+		for (DataModel<String> row : queryResult) {
+			rows.add(row);
+		}
+
+		QueryResultCache.Entry cache = getCachedResult();
+
+		if (cache != null) {
+			cache.querySize = querySize;
+			cache.pages.putAll(start, rows);
+		}
+
+		int from = Math.max(start, windowStart - windowMargin);
+		int to = Math.min(start + rows.size(),
+			windowStart + windowSize + windowMargin);
 
-			for (DataModel<String> row : queryResult) {
-				currentData.add(row);
+		if (from >= to) {
+			return;
+		}
+
+		if (rowWindow.isEmpty() || from > rowWindow.getEnd() ||
+			to < rowWindow.getStart()) {
+			if (!restart) {
+				return;
+			}
+
+			rowWindow.clear(from);
+
+			for (int i = from; i < to; i++) {
+				rowWindow.append(rows.get(i - start));
+			}
+		} else {
+			for (int i = rowWindow.getStart() - 1; i >= from; i--) {
+				rowWindow.prepend(rows.get(i - start));
 			}
-		} else if (start < windowStart) {
-			int last = windowSize - 1;
-			int insert = 0;
 
-			windowStart = start;
+			int overlapEnd = Math.min(to, rowWindow.getEnd());
 
-			for (DataModel<String> row : queryResult) {
-				currentData.remove(last);
-				currentData.add(insert++, row);
+			for (int i = Math.max(from, rowWindow.getStart());
+				i < overlapEnd; i++) {
+				rowWindow.set(i, rows.get(i - start));
 			}
-		} else if (start > windowStart) {
-			windowStart += count;
 
-			for (DataModel<String> row : queryResult) {
-				currentData.remove(0);
-				currentData.add(row);
+			for (int i = rowWindow.getEnd(); i < to; i++) {
+				rowWindow.append(rows.get(i - start));
 			}
 		}
 	}
+
+	/**
+	 * Updates the scroll velocity from the change of the window start. The
+	 * velocity is smoothed over consecutive window changes and reset if the
+	 * window hasn't changed for some time.
+	 *
+	 * @param newStart The new window start
+	 */
+	private void updateScrollVelocity(int newStart) {
+		double now = System.currentTimeMillis();
+		double interval = now - lastWindowTime;
+
+		if (interval > SCROLL_STOP_INTERVAL || lastWindowTime == 0) {
+			scrollVelocity = 0;
+		} else if (interval > 0) {
+			scrollVelocity =
+				(scrollVelocity + (newStart - windowStart) / interval) / 2;
+		}
+
+		lastWindowTime = now;
+	}
+
+	/**
+	 * Updates the window and queries the rows of the window that are neither
+	 * buffered nor cached.
+	 *
+	 * @param queryStart The start of the window
+	 * @param queryLimit The size of the window
+	 * @param callback   The callback to be invoked when the window rows are
+	 *                   available
+	 */
+	private void updateWindow(int queryStart, int queryLimit,
+		Callback<RemoteDataModel<DataModel<String>>> callback) {
+		// resolves the cached query size of the current constraints
+		getCachedResult();
+
+		int bufferStart = Math.max(0, queryStart - windowMargin);
+		int bufferEnd = queryStart + queryLimit + windowMargin;
+
+		if (querySize > 0) {
+			bufferEnd = Math.min(bufferEnd, querySize);
+		}
+
+		if (rowWindow == null) {
+			rowWindow = new RowWindow<>(queryLimit + 2 * windowMargin);
+		} else if (queryLimit != windowSize) {
+			// keep the rows that overlap with the new buffer range
+			rowWindow.retain(bufferStart, bufferEnd);
+			rowWindow.setCapacity(queryLimit + 2 * windowMargin);
+		}
+
+		updateScrollVelocity(queryStart);
+
+		windowStart = queryStart;
+		windowSize = queryLimit;
+
+		loadWindow(callback, 0);
+	}
 }
@@ -0,0 +1,192 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import de.esoco.lib.model.DataModel;
+import de.esoco.lib.property.SortDirection;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A client-side cache of query results that is shared by all instances of
+ * {@link QueryDataModel}. The results are stored in a {@link PageCache} for
+ * each combination of a query ID with filter and sort constraints, together
+ * with the last known size of the query. If the number of cached queries
+ * exceeds the maximum the least recently used query is evicted. Entries
+ * expire after a {@link #setMaxAge(long) maximum age} and all entries become
+ * invalid when the cache is {@link #clear() cleared}, including the entries
+ * that are still referenced by model instances. The entries of a single query
+ * are invalidated with {@link #removeQuery(String)} if the query has been
+ * sent again by the server because its data may have changed.
+ *
+ * @author eso
+ */
+class QueryResultCache {
+
+	private static int maxQueries = 20;
+
+	private static long maxAge = 5 * 60 * 1000;
+
+	private static int generation = 0;
+
+	private static final Map<String, Entry> queries =
+		new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+				Map.Entry<String, Entry> eldest) {
+				return size() > maxQueries;
+			}
+		};
+
+	/**
+	 * Private, only static use.
+	 */
+	private QueryResultCache() {
+	}
+
+	/**
+	 * Removes all cached query results and invalidates the entries that are
+	 * still referenced.
+	 */
+	static void clear() {
+		generation++;
+		queries.clear();
+	}
+
+	/**
+	 * Creates the cache key of a query.
+	 *
+	 * @param queryId    The query ID
+	 * @param filters    The query filters
+	 * @param sortFields The query sorting
+	 * @return The cache key
+	 */
+	static String createKey(String queryId, Map<String, String> filters,
+		Map<String, SortDirection> sortFields) {
+		// sorted maps so that equal constraints create equal keys
+		return queryId + new TreeMap<>(filters) + new TreeMap<>(sortFields);
+	}
+
+	/**
+	 * Returns the cache entry for a query and creates it if no valid entry
+	 * exists.
+	 *
+	 * @param key      The query key
+	 * @param pageSize The number of rows per page of a new entry
+	 * @param maxRows  The maximum number of cached rows of a new entry
+	 * @return The cache entry
+	 */
+	static Entry get(String key, int pageSize, int maxRows) {
+		Entry entry = queries.get(key);
+
+		if (entry == null || !entry.isValid()) {
+			entry = new Entry(new PageCache<>(pageSize, maxRows));
+			queries.put(key, entry);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Removes the cache entries of a query for all constraints and
+	 * invalidates the entries that are still referenced.
+	 *
+	 * @param queryId The query ID
+	 */
+	static void removeQuery(String queryId) {
+		// cache keys continue with the string of the sorted filter map
+		String keyPrefix = queryId + "{";
+		Iterator<Map.Entry<String, Entry>> entries =
+			queries.entrySet().iterator();
+
+		while (entries.hasNext()) {
+			Map.Entry<String, Entry> entry = entries.next();
+
+			if (entry.getKey().startsWith(keyPrefix)) {
+				entry.getValue().removed = true;
+				entries.remove();
+			}
+		}
+	}
+
+	/**
+	 * Sets the maximum age of cache entries after which they will be queried
+	 * again.
+	 *
+	 * @param max The maximum age in milliseconds (zero for no expiration)
+	 */
+	static void setMaxAge(long max) {
+		maxAge = max;
+	}
+
+	/**
+	 * Sets the maximum number of cached queries.
+	 *
+	 * @param max The maximum number of queries
+	 */
+	static void setMaxQueries(int max) {
+		maxQueries = max;
+
+		while (queries.size() > maxQueries) {
+			queries.remove(queries.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * The cached result of a single query.
+	 *
+	 * @author eso
+	 */
+	static class Entry {
+
+		final PageCache<DataModel<String>> pages;
+
+		private final int entryGeneration = generation;
+
+		private final long creationTime = System.currentTimeMillis();
+
+		int querySize = 0;
+
+		private boolean removed = false;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param pages The page cache for the query rows
+		 */
+		Entry(PageCache<DataModel<String>> pages) {
+			this.pages = pages;
+		}
+
+		/**
+		 * Checks whether this entry has neither expired nor been invalidated
+		 * by clearing the cache or removing the query.
+		 *
+		 * @return TRUE if the entry is valid
+		 */
+		boolean isValid() {
+			return !removed && entryGeneration == generation &&
+				(maxAge == 0 ||
+					System.currentTimeMillis() - creationTime < maxAge);
+		}
+	}
+}
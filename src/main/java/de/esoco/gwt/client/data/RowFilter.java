@@ -0,0 +1,642 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import com.google.gwt.regexp.shared.MatchResult;
+import com.google.gwt.regexp.shared.RegExp;
+import de.esoco.lib.model.DataModel;
+import de.esoco.lib.model.FilterableDataModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A filter for the rows of a {@link FilterableListDataModel} that has been
+ * compiled from the filter constraints of the model. The constraint strings
+ * are parsed once into a tree of typed constraints with resolved column
+ * indices so that the evaluation of rows doesn't need to parse or allocate
+ * anything (except for the matching of wildcard patterns).
+ *
+ * <p>The filter semantics are that of the filter constraints of
+ * {@link FilterableDataModel}: each column filter consists of one or more
+ * constraints that are combined with AND or OR according to their prefix,
+ * and the column filters are combined the same way according to the prefix
+ * of their first constraint.</p>
+ *
+ * <p>If all column filters are combined with AND the candidate rows of a
+ * filter can be selected from {@link ColumnIndex column indexes} with
+ * {@link #selectCandidates(ColumnIndex[])} so that only these rows need to be
+ * evaluated.</p>
+ *
+ * @author eso
+ */
+class RowFilter {
+
+	private static final RegExp CONSTRAINT_PATTERN = RegExp.compile(
+		"([" + FilterableDataModel.CONSTRAINT_OR_PREFIX +
+			FilterableDataModel.CONSTRAINT_AND_PREFIX + "])([" +
+			FilterableDataModel.CONSTRAINT_COMPARISON_CHARS + "])(.*)");
+
+	private static final RegExp UPPER_CASE_PATTERN = RegExp.compile("[A-Z]+");
+
+	private static final RegExp PLAIN_TEXT_PATTERN =
+		RegExp.compile("^[\\w ]*$");
+
+	private final Map<String, String> definition;
+
+	private final ColumnFilter[] columnFilters;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param definition    The filter constraints this filter is compiled
+	 *                      from
+	 * @param columnFilters The compiled column filters
+	 */
+	private RowFilter(Map<String, String> definition,
+		ColumnFilter[] columnFilters) {
+		this.definition = definition;
+		this.columnFilters = columnFilters;
+	}
+
+	/**
+	 * Compiles the filter constraints of a data model.
+	 *
+	 * @param filters  The mapping from column IDs to filter constraints
+	 * @param fieldIds The column IDs in the order of the row elements
+	 * @return The compiled filter
+	 */
+	static RowFilter compile(Map<String, String> filters,
+		List<String> fieldIds) {
+		ColumnFilter[] columnFilters = new ColumnFilter[filters.size()];
+		int index = 0;
+
+		for (Map.Entry<String, String> filter : filters.entrySet()) {
+			String constraints = filter.getValue();
+
+			columnFilters[index] =
+				new ColumnFilter(fieldIds.indexOf(filter.getKey()),
+					index > 0 && constraints.charAt(0) ==
+						FilterableDataModel.CONSTRAINT_OR_PREFIX,
+					compileConstraints(constraints));
+			index++;
+		}
+
+		return new RowFilter(new LinkedHashMap<>(filters), columnFilters);
+	}
+
+	/**
+	 * Compiles a constraint for the comparison with a certain value.
+	 *
+	 * @param comparison The comparison operator
+	 * @param value      The comparison value
+	 * @param or         TRUE for an OR combination with the previous
+	 *                   constraint
+	 * @return The constraint or NULL if the comparison is not supported
+	 */
+	private static Constraint compileConstraint(String comparison,
+		String value, boolean or) {
+		switch (comparison) {
+			case "=":
+				return createEqualsConstraint(value, or);
+
+			case "\u2260": // !=
+				return new Constraint(or) {
+					@Override
+					boolean matches(String rowValue) {
+						return !value.equals(rowValue);
+					}
+				};
+
+			case "~":
+				String[] items = value.split(",");
+				Constraint[] alternatives = new Constraint[items.length];
+
+				for (int i = 0; i < items.length; i++) {
+					alternatives[i] = createEqualsConstraint(items[i], false);
+				}
+
+				return new Constraint(or) {
+					@Override
+					int[] lookup(ColumnIndex index) {
+						int[][] results = new int[alternatives.length][];
+						int size = 0;
+
+						for (int i = 0; i < alternatives.length; i++) {
+							results[i] = alternatives[i].lookup(index);
+
+							if (results[i] == null) {
+								return null;
+							}
+
+							size += results[i].length;
+						}
+
+						int[] rows = new int[size];
+						int position = 0;
+
+						for (int[] result : results) {
+							System.arraycopy(result, 0, rows, position,
+								result.length);
+							position += result.length;
+						}
+
+						// alternatives can overlap if they contain wildcards
+						return distinct(rows);
+					}
+
+					@Override
+					boolean matches(String rowValue) {
+						for (Constraint alternative : alternatives) {
+							if (alternative.matches(rowValue)) {
+								return true;
+							}
+						}
+
+						return false;
+					}
+				};
+
+			case "<":
+			case ">":
+			case "\u2264": // <=
+			case "\u2265": // >=
+				return new ComparisonConstraint(comparison.charAt(0), value,
+					or);
+
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Compiles the constraints string of a column filter.
+	 *
+	 * @param constraints The constraints string
+	 * @return The compiled constraints
+	 */
+	private static Constraint[] compileConstraints(String constraints) {
+		String[] parts =
+			constraints.split(FilterableDataModel.CONSTRAINT_SEPARATOR);
+
+		List<Constraint> result = new ArrayList<>(parts.length);
+
+		for (int i = 0; i < parts.length; i++) {
+			MatchResult match = CONSTRAINT_PATTERN.exec(parts[i]);
+
+			if (match != null) {
+				String value = match.getGroup(3);
+				boolean or = i > 0 && match
+					.getGroup(1)
+					.equals(String.valueOf(
+						FilterableDataModel.CONSTRAINT_OR_PREFIX));
+
+				Constraint constraint = value != null ?
+				                        compileConstraint(match.getGroup(2),
+					                        value, or) :
+				                        null;
+
+				// a constraint without value or with an unknown comparison
+				// never matches but is still combined with the others
+				result.add(constraint != null ?
+				           constraint :
+				           new Constraint(or) {
+					           @Override
+					           boolean matches(String rowValue) {
+						           return false;
+					           }
+				           });
+			}
+		}
+
+		return result.toArray(new Constraint[result.size()]);
+	}
+
+	/**
+	 * Creates a constraint for the equals comparison that also supports
+	 * wildcards ('*'). Wildcard patterns without upper case characters are
+	 * matched case-insensitive.
+	 *
+	 * @param value The comparison value
+	 * @param or    TRUE for an OR combination with the previous constraint
+	 * @return The new constraint
+	 */
+	private static Constraint createEqualsConstraint(String value,
+		boolean or) {
+		if (value.contains("*")) {
+			boolean ignoreCase =
+				UPPER_CASE_PATTERN.exec(value.replaceAll("\\*", "")) == null;
+
+			RegExp pattern = RegExp.compile(
+				"^" + value.replaceAll("\\*", ".*"), ignoreCase ? "i" : "");
+
+			String prefix = value.substring(0, value.length() - 1);
+			boolean plainPrefix = value.indexOf('*') == prefix.length() &&
+				PLAIN_TEXT_PATTERN.test(prefix);
+
+			return new Constraint(or) {
+				@Override
+				int[] lookup(ColumnIndex index) {
+					return plainPrefix ?
+					       sorted(index.lookupPrefix(prefix, ignoreCase)) :
+					       null;
+				}
+
+				@Override
+				boolean matches(String rowValue) {
+					return pattern.test(rowValue);
+				}
+			};
+		} else {
+			return new Constraint(or) {
+				@Override
+				int[] lookup(ColumnIndex index) {
+					return index.lookupEqual(value);
+				}
+
+				@Override
+				boolean matches(String rowValue) {
+					return value.equals(rowValue);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Removes duplicate row positions and sorts the result.
+	 *
+	 * @param rows The row positions
+	 * @return The sorted distinct positions
+	 */
+	private static int[] distinct(int[] rows) {
+		Arrays.sort(rows);
+
+		int count = 0;
+
+		for (int i = 0; i < rows.length; i++) {
+			if (count == 0 || rows[i] != rows[count - 1]) {
+				rows[count++] = rows[i];
+			}
+		}
+
+		return count < rows.length ? Arrays.copyOf(rows, count) : rows;
+	}
+
+	/**
+	 * Sorts row positions into their original order.
+	 *
+	 * @param rows The row positions
+	 * @return The sorted array
+	 */
+	private static int[] sorted(int[] rows) {
+		Arrays.sort(rows);
+
+		return rows;
+	}
+
+	/**
+	 * Checks whether the filter definition of this instance is equal to
+	 * certain filter constraints.
+	 *
+	 * @param filters The filter constraints to compare with
+	 * @return TRUE if this filter has been compiled from equal constraints
+	 */
+	boolean hasDefinition(Map<String, String> filters) {
+		return definition.equals(filters);
+	}
+
+	/**
+	 * Checks whether this filter only narrows another filter so that the rows
+	 * that match this filter are a subset of the rows that match the other
+	 * filter. This is the case if all column filters are combined with AND
+	 * and this filter either has an additional column filter or extends the
+	 * literal prefix of a single prefix pattern (e.g. if a user types more
+	 * characters into a search field). This is a conservative check that may
+	 * return FALSE for some narrower filters.
+	 *
+	 * @param other The other filter
+	 * @return TRUE if this filter is a refinement of the other filter
+	 */
+	boolean isRefinementOf(RowFilter other) {
+		for (ColumnFilter filter : columnFilters) {
+			if (filter.or) {
+				return false;
+			}
+		}
+
+		Iterator<Map.Entry<String, String>> otherFilters =
+			other.definition.entrySet().iterator();
+
+		int changes = 0;
+
+		for (Map.Entry<String, String> filter : definition.entrySet()) {
+			if (!otherFilters.hasNext()) {
+				// additional AND filters at the end narrow the result
+				continue;
+			}
+
+			Map.Entry<String, String> otherFilter = otherFilters.next();
+
+			if (!filter.getKey().equals(otherFilter.getKey())) {
+				return false;
+			}
+
+			String constraints = filter.getValue();
+
+			if (!constraints.equals(otherFilter.getValue())) {
+				if (++changes > 1 ||
+					!isPrefixExtension(otherFilter.getValue(),
+						constraints)) {
+					return false;
+				}
+			}
+		}
+
+		// all filters of the other instance must still exist
+		return !otherFilters.hasNext();
+	}
+
+	/**
+	 * Checks whether a row matches this filter.
+	 *
+	 * @param row The row to check
+	 * @return TRUE if the row matches
+	 */
+	boolean matches(DataModel<String> row) {
+		boolean matched = true;
+
+		for (int i = 0; i < columnFilters.length; i++) {
+			ColumnFilter filter = columnFilters[i];
+			boolean columnMatch = filter.matches(
+				filter.fieldIndex >= 0 ? row.getElement(filter.fieldIndex) :
+				null);
+
+			if (i == 0) {
+				matched = columnMatch;
+			} else if (filter.or) {
+				matched = columnMatch || matched;
+			} else {
+				matched = columnMatch && matched;
+			}
+		}
+
+		return matched;
+	}
+
+	/**
+	 * Selects the candidate rows of this filter from column indexes. This is
+	 * only possible if all column filters are combined with AND and at least
+	 * one of them has an indexable constraint. The candidates are then the
+	 * smallest result of all indexable column filters. The candidate rows
+	 * still need to be evaluated with {@link #matches(DataModel)} because
+	 * they are only determined by a single constraint.
+	 *
+	 * @param indexes The column indexes in the order of the row elements
+	 * @return The ascending positions of the candidate rows or NULL if the
+	 * candidates cannot be determined from the indexes
+	 */
+	int[] selectCandidates(ColumnIndex[] indexes) {
+		int[] candidates = null;
+
+		for (ColumnFilter filter : columnFilters) {
+			if (filter.or) {
+				return null;
+			}
+
+			if (filter.fieldIndex >= 0) {
+				int[] rows = filter.lookup(indexes[filter.fieldIndex]);
+
+				if (rows != null &&
+					(candidates == null || rows.length < candidates.length)) {
+					candidates = rows;
+				}
+			}
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * Checks whether a constraints string is a single prefix pattern (like
+	 * "&=abc*") and a second constraints string extends its literal prefix.
+	 *
+	 * @param constraints         The original constraints
+	 * @param extendedConstraints The possibly extended constraints
+	 * @return TRUE if the second constraints are narrower
+	 */
+	private boolean isPrefixExtension(String constraints,
+		String extendedConstraints) {
+		String prefix = constraints.substring(0, constraints.length() - 1);
+
+		return constraints.length() > 2 && constraints.charAt(1) == '=' &&
+			constraints.indexOf('*') == constraints.length() - 1 &&
+			PLAIN_TEXT_PATTERN.test(prefix.substring(2)) &&
+			extendedConstraints.startsWith(prefix) &&
+			extendedConstraints.split(
+				FilterableDataModel.CONSTRAINT_SEPARATOR).length == 1;
+	}
+
+	/**
+	 * The compiled filter for a single column.
+	 *
+	 * @author eso
+	 */
+	static class ColumnFilter {
+
+		final int fieldIndex;
+
+		final boolean or;
+
+		final Constraint[] constraints;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param fieldIndex  The index of the filtered field or -1 if unknown
+		 * @param or          TRUE for an OR combination with the previous
+		 *                    column filter
+		 * @param constraints The constraints of the column
+		 */
+		ColumnFilter(int fieldIndex, boolean or, Constraint[] constraints) {
+			this.fieldIndex = fieldIndex;
+			this.or = or;
+			this.constraints = constraints;
+		}
+
+		/**
+		 * Looks up the rows that can match this filter in a column index.
+		 * This is only possible if all constraints are combined with AND.
+		 *
+		 * @param index The index of the filtered column
+		 * @return The smallest result of all indexable constraints or NULL
+		 * if no constraint is indexable
+		 */
+		int[] lookup(ColumnIndex index) {
+			int[] result = null;
+
+			for (Constraint constraint : constraints) {
+				if (constraint.or) {
+					return null;
+				}
+			}
+
+			for (Constraint constraint : constraints) {
+				int[] rows = constraint.lookup(index);
+
+				if (rows != null &&
+					(result == null || rows.length < result.length)) {
+					result = rows;
+				}
+			}
+
+			return result;
+		}
+
+		/**
+		 * Checks whether a column value matches the constraints of this
+		 * filter.
+		 *
+		 * @param value The column value (may be NULL)
+		 * @return TRUE if the value matches
+		 */
+		boolean matches(String value) {
+			boolean satisfied = true;
+
+			for (Constraint constraint : constraints) {
+				boolean match = value != null && constraint.matches(value);
+
+				satisfied = constraint.or ? satisfied || match :
+				            satisfied && match;
+			}
+
+			return satisfied;
+		}
+	}
+
+	/**
+	 * A constraint that compares values lexically with a comparison value.
+	 *
+	 * @author eso
+	 */
+	static class ComparisonConstraint extends Constraint {
+
+		final char comparison;
+
+		final String value;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param comparison The comparison operator character
+		 * @param value      The comparison value
+		 * @param or         TRUE for an OR combination
+		 */
+		ComparisonConstraint(char comparison, String value, boolean or) {
+			super(or);
+
+			this.comparison = comparison;
+			this.value = value;
+		}
+
+		@Override
+		int[] lookup(ColumnIndex index) {
+			int[] rows;
+
+			switch (comparison) {
+				case '<':
+					rows = index.lookupRange(null, false, value, false);
+					break;
+
+				case '>':
+					rows = index.lookupRange(value, false, null, false);
+					break;
+
+				case '\u2264': // <=
+					rows = index.lookupRange(null, false, value, true);
+					break;
+
+				default: // >=
+					rows = index.lookupRange(value, true, null, false);
+			}
+
+			return sorted(rows);
+		}
+
+		@Override
+		boolean matches(String rowValue) {
+			int result = value.compareTo(rowValue);
+
+			switch (comparison) {
+				case '<':
+					return result > 0;
+
+				case '>':
+					return result < 0;
+
+				case '\u2264': // <=
+					return result >= 0;
+
+				default: // >=
+					return result <= 0;
+			}
+		}
+	}
+
+	/**
+	 * The base class for compiled constraints.
+	 *
+	 * @author eso
+	 */
+	abstract static class Constraint {
+
+		final boolean or;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param or TRUE for an OR combination with the previous constraint
+		 */
+		Constraint(boolean or) {
+			this.or = or;
+		}
+
+		/**
+		 * Looks up the rows that match this constraint in a column index. The
+		 * default implementation returns NULL to indicate that the constraint
+		 * cannot be resolved with an index.
+		 *
+		 * @param index The column index
+		 * @return The ascending positions of the matching rows or NULL if not
+		 * supported
+		 */
+		int[] lookup(ColumnIndex index) {
+			return null;
+		}
+
+		/**
+		 * Checks whether a non-NULL value matches this constraint.
+		 *
+		 * @param rowValue The value to check
+		 * @return TRUE if the value matches
+		 */
+		abstract boolean matches(String rowValue);
+	}
+}
@@ -0,0 +1,227 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+/**
+ * A window of consecutive rows of a remote query that is stored in a ring
+ * buffer. The window is addressed with absolute row indices and can be
+ * extended at both ends in constant time. If the capacity of the buffer is
+ * reached rows are evicted from the opposite end.
+ *
+ * @author eso
+ */
+class RowWindow<T> {
+
+	private Object[] rows;
+
+	private int head = 0;
+
+	private int size = 0;
+
+	private int start = 0;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param capacity The maximum number of rows in the window
+	 */
+	RowWindow(int capacity) {
+		rows = new Object[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Adds a row at the end of the window. If the window is full the first
+	 * row will be evicted.
+	 *
+	 * @param row The row to add
+	 */
+	void append(T row) {
+		if (size == rows.length) {
+			rows[head] = row;
+			head = (head + 1) % rows.length;
+			start++;
+		} else {
+			rows[(head + size) % rows.length] = row;
+			size++;
+		}
+	}
+
+	/**
+	 * Removes all rows and sets a new start index.
+	 *
+	 * @param newStart The index of the next row to be appended
+	 */
+	void clear(int newStart) {
+		for (int i = 0; i < size; i++) {
+			rows[(head + i) % rows.length] = null;
+		}
+
+		head = 0;
+		size = 0;
+		start = newStart;
+	}
+
+	/**
+	 * Checks whether this window contains a certain row.
+	 *
+	 * @param index The absolute row index
+	 * @return TRUE if the row is available
+	 */
+	boolean contains(int index) {
+		return index >= start && index < start + size;
+	}
+
+	/**
+	 * Returns a row from this window.
+	 *
+	 * @param index The absolute row index
+	 * @return The row
+	 * @throws IndexOutOfBoundsException If the row is not in this window
+	 */
+	@SuppressWarnings("unchecked")
+	T get(int index) {
+		if (!contains(index)) {
+			throw new IndexOutOfBoundsException(
+				"Row " + index + " not in [" + start + "," + getEnd() + "[");
+		}
+
+		return (T) rows[(head + index - start) % rows.length];
+	}
+
+	/**
+	 * Returns the maximum number of rows in this window.
+	 *
+	 * @return The capacity
+	 */
+	int getCapacity() {
+		return rows.length;
+	}
+
+	/**
+	 * Returns the absolute index after the last row in this window.
+	 *
+	 * @return The end index (exclusive)
+	 */
+	int getEnd() {
+		return start + size;
+	}
+
+	/**
+	 * Returns the absolute index of the first row in this window.
+	 *
+	 * @return The start index
+	 */
+	int getStart() {
+		return start;
+	}
+
+	/**
+	 * Checks whether this window is empty.
+	 *
+	 * @return TRUE if the window contains no rows
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds a row before the start of the window. If the window is full the
+	 * last row will be evicted.
+	 *
+	 * @param row The row to add
+	 */
+	void prepend(T row) {
+		head = (head + rows.length - 1) % rows.length;
+		rows[head] = row;
+		start--;
+
+		if (size < rows.length) {
+			size++;
+		}
+	}
+
+	/**
+	 * Removes all rows outside of a certain range.
+	 *
+	 * @param from The absolute index of the first row to keep
+	 * @param to   The absolute index after the last row to keep
+	 */
+	void retain(int from, int to) {
+		if (from >= getEnd() || to <= start) {
+			clear(from);
+		} else {
+			while (start < from) {
+				rows[head] = null;
+				head = (head + 1) % rows.length;
+				start++;
+				size--;
+			}
+
+			while (getEnd() > to) {
+				rows[(head + size - 1) % rows.length] = null;
+				size--;
+			}
+		}
+	}
+
+	/**
+	 * Replaces a row in this window.
+	 *
+	 * @param index The absolute row index
+	 * @param row   The new row
+	 */
+	void set(int index, T row) {
+		if (!contains(index)) {
+			throw new IndexOutOfBoundsException(
+				"Row " + index + " not in [" + start + "," + getEnd() + "[");
+		}
+
+		rows[(head + index - start) % rows.length] = row;
+	}
+
+	/**
+	 * Changes the capacity of this window. The existing rows are kept, if
+	 * necessary up to the new capacity from the start of the window.
+	 *
+	 * @param capacity The new capacity
+	 */
+	void setCapacity(int capacity) {
+		capacity = Math.max(capacity, 1);
+
+		if (capacity != rows.length) {
+			int newSize = Math.min(size, capacity);
+			Object[] newRows = new Object[capacity];
+
+			for (int i = 0; i < newSize; i++) {
+				newRows[i] = rows[(head + i) % rows.length];
+			}
+
+			rows = newRows;
+			head = 0;
+			size = newSize;
+		}
+	}
+
+	/**
+	 * Returns the number of rows in this window.
+	 *
+	 * @return The window size
+	 */
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,175 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import de.esoco.lib.model.Callback;
+import de.esoco.lib.model.DataModel;
+import de.esoco.lib.model.FilterableDataModel;
+import de.esoco.lib.model.RemoteDataModel;
+import de.esoco.lib.model.SortableDataModel;
+import de.esoco.lib.property.SortDirection;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A wrapper that exposes a local {@link FilterableListDataModel} as a
+ * {@link RemoteDataModel}. Tables render remote data models virtually: they
+ * only create the rows of the visible window and bind the model rows to them
+ * through {@link #setWindow(int, int, Callback)} when the table is
+ * scrolled. Wrapping large local models therefore keeps the size of the
+ * rendered table constant. Because the data is available locally window
+ * changes are answered synchronously.
+ *
+ * @author eso
+ */
+public class WindowedListDataModel<T extends DataModel<String>>
+	implements RemoteDataModel<T>, SortableDataModel<T>,
+	FilterableDataModel<T>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final FilterableListDataModel<T> model;
+
+	private int windowStart = 0;
+
+	private int windowSize = 0;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param model The local data model to wrap
+	 */
+	public WindowedListDataModel(FilterableListDataModel<T> model) {
+		this.model = model;
+	}
+
+	@Override
+	public int getAvailableElementCount() {
+		return Math.max(0,
+			Math.min(windowSize, model.getElementCount() - windowStart));
+	}
+
+	@Override
+	public T getElement(int index) {
+		return model.getElement(index);
+	}
+
+	@Override
+	public int getElementCount() {
+		return model.getElementCount();
+	}
+
+	@Override
+	public String getFilter(String fieldId) {
+		return model.getFilter(fieldId);
+	}
+
+	@Override
+	public Map<String, String> getFilters() {
+		return model.getFilters();
+	}
+
+	/**
+	 * Returns the wrapped local data model.
+	 *
+	 * @return The wrapped model
+	 */
+	public final FilterableListDataModel<T> getModel() {
+		return model;
+	}
+
+	@Override
+	public SortDirection getSortDirection(String fieldId) {
+		return model.getSortDirection(fieldId);
+	}
+
+	@Override
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	@Override
+	public int getWindowStart() {
+		return windowStart;
+	}
+
+	/**
+	 * Returns an iterator over the rows of the current window.
+	 *
+	 * @see DataModel#iterator()
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		int count = getAvailableElementCount();
+		List<T> rows = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			rows.add(model.getElement(windowStart + i));
+		}
+
+		return rows.iterator();
+	}
+
+	@Override
+	public void removeAllFilters() {
+		model.removeAllFilters();
+	}
+
+	@Override
+	public void removeSorting() {
+		model.removeSorting();
+	}
+
+	@Override
+	public void setFilter(String fieldId, String filter) {
+		model.setFilter(fieldId, filter);
+	}
+
+	@Override
+	public void setFilters(Map<String, String> filters) {
+		model.setFilters(filters);
+	}
+
+	@Override
+	public void setSortDirection(String fieldId, SortDirection direction) {
+		model.setSortDirection(fieldId, direction);
+	}
+
+	/**
+	 * Sets the window and invokes the callback immediately because the rows
+	 * are available locally.
+	 *
+	 * @see RemoteDataModel#setWindow(int, int, Callback)
+	 */
+	@Override
+	public void setWindow(int start, int size,
+		Callback<RemoteDataModel<T>> callback) {
+		windowStart = Math.max(0, start);
+		windowSize = size;
+
+		callback.onSuccess(this);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + model + "]";
+	}
+}
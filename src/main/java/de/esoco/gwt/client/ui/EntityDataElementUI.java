@@ -66,7 +66,7 @@ public class EntityDataElementUI extends DataElementListUI {
 
 		DataElementListModel entityModel =
 			new DataElementListModel(panelBuilder.getContext(), element, null,
-				"", true);
+				"", true, true);
 
 		tree.setData(new ListDataModel<>("<ROOT>", entityModel));
 
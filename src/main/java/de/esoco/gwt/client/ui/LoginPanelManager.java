@@ -33,6 +33,7 @@ import de.esoco.ewt.style.StyleData;
 import de.esoco.ewt.style.StyleFlag;
 
 import de.esoco.gwt.client.ServiceRegistry;
+import de.esoco.gwt.client.data.QueryDataModel;
 import de.esoco.gwt.client.res.EsocoGwtResources;
 import de.esoco.gwt.shared.AuthenticatedService;
 
@@ -333,6 +334,7 @@ public class LoginPanelManager extends PanelManager<Panel, PanelManager<?, ?>>
 		}
 
 		Cookies.setCookie(sessionCookie, sessionID);
+		QueryDataModel.clearResultCache();
 		loginHandler.loginSuccessful(userData);
 	}
 
@@ -350,21 +352,19 @@ public class LoginPanelManager extends PanelManager<Panel, PanelManager<?, ?>>
 
 		setUserNameCookie(userName);
 
-		ServiceRegistry
-			.getCommandService()
-			.executeCommand(AuthenticatedService.LOGIN,
-				createLoginData(userName, password),
-				new AsyncCallback<DataElementList>() {
-					@Override
-					public void onFailure(Throwable caught) {
-						handleLoginFailure(caught);
-					}
-
-					@Override
-					public void onSuccess(DataElementList result) {
-						handleLoginSuccess(result);
-					}
-				});
+		ServiceRegistry.executeCommand(AuthenticatedService.LOGIN,
+			createLoginData(userName, password),
+			new AsyncCallback<DataElementList>() {
+				@Override
+				public void onFailure(Throwable caught) {
+					handleLoginFailure(caught);
+				}
+
+				@Override
+				public void onSuccess(DataElementList result) {
+					handleLoginSuccess(result);
+				}
+			});
 	}
 
 	/**
@@ -350,7 +350,10 @@ public abstract class PanelManager<C extends Container,
 
 	/**
 	 * Executes a command on a {@link CommandService}. The service is queried
-	 * through the {@link ServiceRegistry}.
+	 * through the {@link ServiceRegistry} and commands that are rejected
+	 * because of an overload of the service will be retried (see
+	 * {@link ServiceRegistry#executeCommand(Command, DataElement,
+	 * AsyncCallback)}).
 	 *
 	 * @param command       The command to execute
 	 * @param data          The data to be processed by the command
@@ -361,21 +364,19 @@ public abstract class PanelManager<C extends Container,
 		final Command<T, R> command, T data,
 		final CommandResultHandler<R> resultHandler) {
 		commandExecuting = true;
-		ServiceRegistry
-			.getCommandService()
-			.executeCommand(command, data, new AsyncCallback<R>() {
-				@Override
-				public void onFailure(Throwable caught) {
-					commandExecuting = false;
-					resultHandler.handleCommandFailure(command, caught);
-				}
+		ServiceRegistry.executeCommand(command, data, new AsyncCallback<R>() {
+			@Override
+			public void onFailure(Throwable caught) {
+				commandExecuting = false;
+				resultHandler.handleCommandFailure(command, caught);
+			}
 
-				@Override
-				public void onSuccess(R result) {
-					commandExecuting = false;
-					resultHandler.handleCommandResult(result);
-				}
-			});
+			@Override
+			public void onSuccess(R result) {
+				commandExecuting = false;
+				resultHandler.handleCommandResult(result);
+			}
+		});
 	}
 
 	/**
@@ -30,6 +30,7 @@ import de.esoco.ewt.style.StyleData;
 
 import de.esoco.gwt.client.data.QueryDataModel;
 import de.esoco.gwt.client.data.FilterableListDataModel;
+import de.esoco.gwt.client.data.WindowedListDataModel;
 
 import de.esoco.lib.model.ColumnDefinition;
 import de.esoco.lib.model.DataModel;
@@ -49,11 +50,24 @@ import static de.esoco.lib.property.StyleProperties.TABLE_ROWS;
  * The user interface implementation for {@link SelectionDataElement}
  * instances.
  *
+ * <p>Local data of flat tables with more than {@link #VIRTUAL_TABLE_THRESHOLD}
+ * rows is wrapped into a {@link WindowedListDataModel} so that the table
+ * renders it virtually like remote query data, i.e. only the rows of the
+ * visible window are rendered and bound to the model rows when the table is
+ * scrolled. Hierarchical tables always render their local data directly
+ * because a row window only covers top-level rows and not the expanded child
+ * rows of a tree table.</p>
+ *
  * @author eso
  */
 public class SelectionDataElementUI
 	extends DataElementUI<SelectionDataElement> {
 
+	/**
+	 * The minimum number of rows of local table data for virtual rendering.
+	 */
+	public static final int VIRTUAL_TABLE_THRESHOLD = 100;
+
 	private TableControl table = null;
 
 	private DataModel<? extends DataModel<?>> dataModel;
@@ -148,11 +162,12 @@ public class SelectionDataElementUI
 	/**
 	 * Crates the data model for a table.
 	 *
-	 * @param validator The validator to create the model from
+	 * @param dataElement The selection data element
+	 * @param validator   The validator to create the model from
 	 * @return The data model
 	 */
 	private DataModel<? extends DataModel<?>> checkTableDataModel(
-		TabularDataValidator validator) {
+		SelectionDataElement dataElement, TabularDataValidator validator) {
 		DataModel<? extends DataModel<?>> model;
 
 		if (validator instanceof QueryValidator) {
@@ -176,8 +191,16 @@ public class SelectionDataElementUI
 			SelectionValidator selectionValidator =
 				(SelectionValidator) validator;
 
-			model = new FilterableListDataModel<HierarchicalDataObject>("DATA",
-				selectionValidator.getValues(), validator.getColumns());
+			FilterableListDataModel<HierarchicalDataObject> listModel =
+				new FilterableListDataModel<HierarchicalDataObject>("DATA",
+					selectionValidator.getValues(), validator.getColumns());
+
+			if (listModel.getElementCount() > VIRTUAL_TABLE_THRESHOLD &&
+				!dataElement.hasFlag(UserInterfaceProperties.HIERARCHICAL)) {
+				model = new WindowedListDataModel<>(listModel);
+			} else {
+				model = listModel;
+			}
 		} else {
 			throw new IllegalArgumentException(
 				"Invalid table validator: " + validator);
@@ -233,7 +256,7 @@ public class SelectionDataElementUI
 		TabularDataValidator validator =
 			(TabularDataValidator) dataElement.getValidator();
 
-		dataModel = checkTableDataModel(validator);
+		dataModel = checkTableDataModel(dataElement, validator);
 
 		Map<String, String> constraints =
 			dataElement.getProperty(FILTER_CRITERIA, Collections.emptyMap());
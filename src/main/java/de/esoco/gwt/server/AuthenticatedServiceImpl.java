@@ -412,6 +412,8 @@ public abstract class AuthenticatedServiceImpl<E extends Entity>
 	 */
 	@Override
 	public void init() throws ServletException {
+		super.init();
+
 		EntityManager.setSessionManager(this);
 
 		ServiceContext context = ServiceContext.getInstance();
@@ -0,0 +1,186 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A binary client notification that is sent over the binary channel of the
+ * {@link ClientNotificationService} WebSocket. It consists of a message type,
+ * the path of the target element on the client (e.g. the ID of a process or
+ * entity), and an arbitrary binary payload. A binary notification supersedes
+ * a still queued notification with the same type and target path.
+ *
+ * <p>One or more notifications are encoded into a single binary frame with
+ * the following big-endian layout:</p>
+ *
+ * <pre>
+ * uint16 messageCount
+ * messageCount times:
+ *   uint8  type
+ *   uint16 pathLength
+ *   uint16 pathChars[pathLength]
+ *   int32  payloadLength
+ *   byte   payload[payloadLength]
+ * </pre>
+ *
+ * <p>The path is written as UTF-16 code units so that it can be decoded
+ * without character set conversion on the client.</p>
+ *
+ * @author eso
+ */
+public class BinaryNotification {
+
+	static final int MAX_MESSAGES_PER_FRAME = 0xFFFF;
+
+	private final int type;
+
+	private final String targetPath;
+
+	private final byte[] payload;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param type       The message type (0-255)
+	 * @param targetPath The path of the target element
+	 * @param payload    The message payload
+	 * @throws IllegalArgumentException If the type or the path length is
+	 *                                  invalid
+	 */
+	public BinaryNotification(int type, String targetPath, byte[] payload) {
+		if (type < 0 || type > 0xFF) {
+			throw new IllegalArgumentException("Invalid type: " + type);
+		}
+
+		if (targetPath.length() > 0xFFFF) {
+			throw new IllegalArgumentException("Target path too long");
+		}
+
+		this.type = type;
+		this.targetPath = targetPath;
+		this.payload = payload;
+	}
+
+	/**
+	 * Encodes a list of notifications into a single frame. The returned buffer
+	 * has been acquired from the given pool and must be released to it after
+	 * sending.
+	 *
+	 * @param notifications The notifications to encode
+	 * @param pool          The pool to acquire the buffer from
+	 * @return The frame buffer, ready for reading
+	 * @throws IllegalArgumentException If the list contains too many
+	 *                                  notifications for a single frame
+	 */
+	static ByteBuffer encode(List<BinaryNotification> notifications,
+		NotificationBufferPool pool) {
+		int count = notifications.size();
+		int size = 2;
+
+		if (count > MAX_MESSAGES_PER_FRAME) {
+			throw new IllegalArgumentException("Too many notifications");
+		}
+
+		for (BinaryNotification notification : notifications) {
+			size += notification.getEncodedSize();
+		}
+
+		ByteBuffer buffer = pool.acquire(size);
+
+		buffer.putShort((short) count);
+
+		for (BinaryNotification notification : notifications) {
+			notification.encode(buffer);
+		}
+
+		buffer.flip();
+
+		return buffer;
+	}
+
+	/**
+	 * Returns the payload.
+	 *
+	 * @return The payload bytes
+	 */
+	public final byte[] getPayload() {
+		return payload;
+	}
+
+	/**
+	 * Returns the target path.
+	 *
+	 * @return The target path
+	 */
+	public final String getTargetPath() {
+		return targetPath;
+	}
+
+	/**
+	 * Returns the message type.
+	 *
+	 * @return The type
+	 */
+	public final int getType() {
+		return type;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[%d, %s, %d bytes]",
+			getClass().getSimpleName(), type, targetPath, payload.length);
+	}
+
+	/**
+	 * Returns the key for the coalescing of superseding notifications.
+	 *
+	 * @return The coalescing key
+	 */
+	String getKey() {
+		return "\u0000" + type + ':' + targetPath;
+	}
+
+	/**
+	 * Writes this notification into a buffer.
+	 *
+	 * @param buffer The target buffer
+	 */
+	private void encode(ByteBuffer buffer) {
+		int pathLength = targetPath.length();
+
+		buffer.put((byte) type);
+		buffer.putShort((short) pathLength);
+
+		for (int i = 0; i < pathLength; i++) {
+			buffer.putChar(targetPath.charAt(i));
+		}
+
+		buffer.putInt(payload.length);
+		buffer.put(payload);
+	}
+
+	/**
+	 * Returns the number of bytes of the encoded notification.
+	 *
+	 * @return The encoded size
+	 */
+	private int getEncodedSize() {
+		return 1 + 2 + targetPath.length() * 2 + 4 + payload.length;
+	}
+}
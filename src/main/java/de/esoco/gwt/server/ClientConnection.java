@@ -0,0 +1,470 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import de.esoco.gwt.server.ClientNotificationService.OverflowPolicy;
+import de.esoco.gwt.shared.NotificationBatch;
+import de.esoco.lib.logging.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+/**
+ * A WebSocket connection of a client of the {@link ClientNotificationService}.
+ * Messages are not sent on the thread of the caller but are added to a
+ * bounded outbound queue from which they are sent asynchronously. A message
+ * with the same key as a message that is still queued supersedes that message
+ * at its queue position. If the queue is full a message will be dropped
+ * according to the {@link OverflowPolicy} of the service.
+ *
+ * <p>The queue is flushed after the flush delay of the service (or
+ * immediately if the delay is zero) and while a frame is being sent. If the
+ * service {@link ClientNotificationService#isBatching() batches} messages all
+ * text messages that are queued at that time are then sent as a single
+ * {@link NotificationBatch} frame, otherwise each in a separate frame. All
+ * {@link BinaryNotification binary notifications} are sent as a single binary
+ * frame (split into multiple frames if the maximum number of notifications per
+ * frame is exceeded). Messages that cannot be encoded are dropped.</p>
+ *
+ * <p>If a send fails the connection is considered dead and will be pruned by
+ * the service.</p>
+ *
+ * @author eso
+ */
+class ClientConnection implements SendHandler {
+
+	private static final byte[] PING_DATA = new byte[] { 'P', 'i', 'n', 'g' };
+
+	private final ClientNotificationService service;
+
+	private final Session session;
+
+	private final String httpSessionId;
+
+	private volatile String userName;
+
+	private final Set<String> topics = ConcurrentHashMap.newKeySet();
+
+	private final Map<String, Object> queue = new LinkedHashMap<>();
+
+	private final Deque<Frame> pendingFrames = new ArrayDeque<>();
+
+	// TRUE while a flush is scheduled or a frame is being sent
+	private boolean busy = false;
+
+	private volatile long sendStartTime;
+
+	private volatile Frame currentFrame;
+
+	private volatile long lastActivity = System.currentTimeMillis();
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param service       The service the connection belongs to
+	 * @param session       The WebSocket session
+	 * @param httpSessionId The ID of the HTTP session the connection has been
+	 *                      opened from or NULL if not available
+	 * @param userName      The login name of the user or NULL if not known
+	 */
+	ClientConnection(ClientNotificationService service, Session session,
+		String httpSessionId, String userName) {
+		this.service = service;
+		this.session = session;
+		this.httpSessionId = httpSessionId;
+		this.userName = userName;
+	}
+
+	/**
+	 * Invoked by the WebSocket container when an asynchronous send has been
+	 * completed. Records the send metrics and flushes the messages that have
+	 * been queued in the meantime.
+	 *
+	 * @param result The send result
+	 */
+	@Override
+	public void onResult(SendResult result) {
+		Frame frame = currentFrame;
+
+		service.recordSend(System.nanoTime() - sendStartTime,
+			frame.messageCount, result.isOK());
+		frame.release(service);
+
+		if (result.isOK()) {
+			flush();
+		} else {
+			Log.errorf(result.getException(),
+				"Notification of client %s failed", session.getId());
+
+			synchronized (queue) {
+				busy = false;
+			}
+
+			service.pruneConnection(this);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[%s, %s, %s]", getClass().getSimpleName(),
+			session.getId(), httpSessionId, userName);
+	}
+
+	/**
+	 * Removes all queued messages.
+	 */
+	void close() {
+		synchronized (queue) {
+			queue.clear();
+
+			for (Frame frame : pendingFrames) {
+				frame.release(service);
+			}
+
+			pendingFrames.clear();
+		}
+	}
+
+	/**
+	 * Returns the ID of the HTTP session this connection has been opened
+	 * from.
+	 *
+	 * @return The HTTP session ID or NULL if not available
+	 */
+	final String getHttpSessionId() {
+		return httpSessionId;
+	}
+
+	/**
+	 * Returns the time of the last message that has been received from the
+	 * client.
+	 *
+	 * @return The last activity time in milliseconds
+	 */
+	final long getLastActivity() {
+		return lastActivity;
+	}
+
+	/**
+	 * Returns the number of messages that are currently queued for sending.
+	 *
+	 * @return The queue depth
+	 */
+	int getQueueDepth() {
+		synchronized (queue) {
+			return queue.size();
+		}
+	}
+
+	/**
+	 * Returns the WebSocket session of this connection.
+	 *
+	 * @return The session
+	 */
+	final Session getSession() {
+		return session;
+	}
+
+	/**
+	 * Returns the topics this connection is subscribed to.
+	 *
+	 * @return The set of topics (thread-safe)
+	 */
+	final Set<String> getTopics() {
+		return topics;
+	}
+
+	/**
+	 * Returns the login name of the user of this connection.
+	 *
+	 * @return The user name or NULL if not known
+	 */
+	final String getUserName() {
+		return userName;
+	}
+
+	/**
+	 * Sends a ping message to the client unless the connection is busy
+	 * sending. Sending a ping can block until a frame that is currently sent
+	 * has been completed, and some containers reject a ping while a frame is
+	 * sent. Busy connections are therefore skipped. If such a connection is
+	 * half-open the send will fail or the idle timeout will be exceeded.
+	 *
+	 * @return TRUE if the ping has been sent or skipped, FALSE if the
+	 * connection is no longer usable
+	 */
+	boolean ping() {
+		synchronized (queue) {
+			if (busy) {
+				return true;
+			}
+		}
+
+		try {
+			session.getAsyncRemote().sendPing(ByteBuffer.wrap(PING_DATA));
+
+			return true;
+		} catch (IllegalStateException e) {
+			// a send has been started concurrently
+			return true;
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Records that a message has been received from the client.
+	 */
+	void recordActivity() {
+		lastActivity = System.currentTimeMillis();
+	}
+
+	/**
+	 * Sends all queued messages. Text messages and binary notifications are
+	 * sent in separate frames. If no frame could be created from the queued
+	 * messages the connection will be available for the next send.
+	 */
+	void flush() {
+		Frame frame;
+
+		synchronized (queue) {
+			if (pendingFrames.isEmpty()) {
+				if (queue.isEmpty()) {
+					busy = false;
+
+					return;
+				}
+
+				createFrames();
+
+				if (pendingFrames.isEmpty()) {
+					busy = false;
+
+					return;
+				}
+			}
+
+			frame = pendingFrames.pollFirst();
+		}
+
+		sendAsync(frame);
+	}
+
+	/**
+	 * Queues a message for asynchronous sending. This method never blocks the
+	 * invoking thread.
+	 *
+	 * @param key        The message key for the coalescing of superseding
+	 *                   messages
+	 * @param message    The message to send (a string or an instance of
+	 *                   {@link BinaryNotification})
+	 * @param maxQueue   The maximum number of queued messages
+	 * @param policy     The policy to apply if the queue is full
+	 * @param flushDelay The delay in milliseconds before the queue is flushed
+	 */
+	void send(String key, Object message, int maxQueue, OverflowPolicy policy,
+		int flushDelay) {
+		synchronized (queue) {
+			if (queue.containsKey(key)) {
+				// put() retains the position of the superseded message
+				queue.put(key, message);
+				service.recordCoalesced();
+
+				return;
+			}
+
+			if (queue.size() >= maxQueue) {
+				service.recordDropped(1);
+
+				if (policy == OverflowPolicy.DROP_NEWEST) {
+					return;
+				}
+
+				Iterator<String> oldest = queue.keySet().iterator();
+
+				oldest.next();
+				oldest.remove();
+			}
+
+			queue.put(key, message);
+
+			if (busy) {
+				return;
+			}
+
+			busy = true;
+		}
+
+		if (flushDelay > 0) {
+			service.scheduleFlush(this, flushDelay);
+		} else {
+			flush();
+		}
+	}
+
+	/**
+	 * Sets the login name of the user of this connection.
+	 *
+	 * @param name The user name or NULL if not known
+	 */
+	final void setUserName(String name) {
+		userName = name;
+	}
+
+	/**
+	 * Encodes the data of a frame and adds the frame to the pending frames.
+	 * If the encoding fails the messages of the frame will be dropped. Must be
+	 * invoked while synchronized on the queue.
+	 *
+	 * @param encoder      The encoder of the frame data
+	 * @param messageCount The number of messages in the frame
+	 */
+	private void addFrame(Supplier<Object> encoder, int messageCount) {
+		try {
+			pendingFrames.add(new Frame(encoder.get(), messageCount));
+		} catch (RuntimeException e) {
+			Log.errorf(e, "Encoding of %d notifications for client %s failed",
+				messageCount, session.getId());
+
+			service.recordDropped(messageCount);
+		}
+	}
+
+	/**
+	 * Creates the frames for all queued messages and clears the queue. Must
+	 * be invoked while synchronized on the queue.
+	 */
+	private void createFrames() {
+		List<String> messages = new ArrayList<>();
+		List<BinaryNotification> notifications = new ArrayList<>();
+
+		for (Object message : queue.values()) {
+			if (message instanceof BinaryNotification) {
+				notifications.add((BinaryNotification) message);
+			} else {
+				messages.add((String) message);
+			}
+		}
+
+		queue.clear();
+
+		if (service.isBatching()) {
+			if (!messages.isEmpty()) {
+				addFrame(() -> NotificationBatch.encode(messages),
+					messages.size());
+			}
+		} else {
+			for (String message : messages) {
+				// encoding escapes messages that look like a batch
+				addFrame(() -> NotificationBatch.encode(
+					Collections.singletonList(message)), 1);
+			}
+		}
+
+		int count = notifications.size();
+		int maxCount = BinaryNotification.MAX_MESSAGES_PER_FRAME;
+
+		for (int i = 0; i < count; i += maxCount) {
+			List<BinaryNotification> frameNotifications =
+				notifications.subList(i, Math.min(count, i + maxCount));
+
+			addFrame(() -> BinaryNotification.encode(frameNotifications,
+				service.getBufferPool()), frameNotifications.size());
+		}
+	}
+
+	/**
+	 * Starts the asynchronous sending of a frame.
+	 *
+	 * @param frame The frame to send
+	 */
+	private void sendAsync(Frame frame) {
+		try {
+			sendStartTime = System.nanoTime();
+			currentFrame = frame;
+
+			if (frame.data instanceof ByteBuffer) {
+				session
+					.getAsyncRemote()
+					.sendBinary((ByteBuffer) frame.data, this);
+			} else {
+				session.getAsyncRemote().sendText((String) frame.data, this);
+			}
+		} catch (RuntimeException e) {
+			// thrown if the session has been closed in the meantime
+			Log.errorf(e, "Notification of client %s failed", session.getId());
+
+			frame.release(service);
+
+			synchronized (queue) {
+				busy = false;
+			}
+
+			service.pruneConnection(this);
+		}
+	}
+
+	/**
+	 * A frame that is to be sent to the client.
+	 *
+	 * @author eso
+	 */
+	private static class Frame {
+
+		final Object data;
+
+		final int messageCount;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param data         The frame data (a string or a byte buffer)
+		 * @param messageCount The number of messages in the frame
+		 */
+		Frame(Object data, int messageCount) {
+			this.data = data;
+			this.messageCount = messageCount;
+		}
+
+		/**
+		 * Releases the frame data if it has been acquired from the buffer
+		 * pool of the service.
+		 *
+		 * @param service The notification service
+		 */
+		void release(ClientNotificationService service) {
+			if (data instanceof ByteBuffer) {
+				service.getBufferPool().release((ByteBuffer) data);
+			}
+		}
+	}
+}
@@ -16,11 +16,27 @@
 //++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 package de.esoco.gwt.server;
 
+import de.esoco.gwt.server.NotificationBusMessage.Target;
+import de.esoco.gwt.shared.NotificationBatch;
 import de.esoco.lib.expression.monad.Try;
 import de.esoco.lib.logging.Log;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -36,18 +52,154 @@ import javax.websocket.server.ServerEndpointConfig;
 import static java.util.stream.Collectors.toList;
 
 /**
- * A server-side WebSocket to send client notifications over.
+ * A server-side WebSocket to send client notifications over. Notifications can
+ * be sent to all connected clients, to the clients of a certain HTTP session
+ * or user, or to the clients that have subscribed to a certain topic. The HTTP
+ * session and the user of a WebSocket connection are determined when the
+ * connection is established. If the user of an HTTP session changes after
+ * that (e.g. on login or logout) the application must invoke
+ * {@link #setSessionUser(String, String)} to update the connections of the
+ * session.
+ *
+ * <p>Clients can only subscribe to topics for which the subscription is
+ * authorized by the predicate set with
+ * {@link #setTopicAuthorization(BiPredicate)}. By default only connections
+ * of authenticated users can subscribe to topics. Topic subscriptions are
+ * cancelled if the user of a connection changes.</p>
+ *
+ * <p>Notifications never block the invoking thread. Each connection has a
+ * bounded outbound queue from which messages are sent asynchronously so that
+ * a slow client cannot delay the notification of other clients. Messages that
+ * are equal to a message that is still queued for a connection are coalesced.
+ * If a queue is full messages are dropped according to the
+ * {@link OverflowPolicy} of this service.</p>
+ *
+ * <p>To reduce the number of frames for bursts of notifications a flush delay
+ * can be set with {@link #setFlushDelay(int)}. All messages that are queued
+ * for a connection within that delay are then sent as a single batch frame
+ * (see {@link NotificationBatch}). Batching is disabled by default so that
+ * each text message is sent in a separate frame and must only be enabled if
+ * all clients can decode batch frames. A message that supersedes a queued
+ * message with the same key (as determined by the function set with
+ * {@link #setMessageKeyFunction(Function)}) replaces that message.</p>
+ *
+ * <p>Besides text messages structured updates can be sent as
+ * {@link BinaryNotification binary notifications} which are encoded into
+ * binary frames from pooled byte buffers.</p>
+ *
+ * <p>To detect half-open connections the service periodically sends ping
+ * messages to all clients. Connections from which no pong or other message
+ * has been received within the idle timeout, or on which a send has failed,
+ * are closed and removed so that broadcasts only target live clients. The
+ * pings are sent from a separate thread because they can block while a frame
+ * is sent, so that slow clients cannot delay the flushing of the message
+ * queues. Connections that are busy sending are not pinged. The heartbeat can
+ * be configured with {@link #setHeartbeat(int, int)}.</p>
+ *
+ * <p>If an application runs on multiple cluster nodes a {@link NotificationBus}
+ * can be set with {@link #setNotificationBus(NotificationBus)}. All
+ * notifications will then also be published on the bus and the notifications
+ * of other nodes will be delivered to the local clients. Messages that have
+ * already been received from the bus will be ignored.</p>
  *
  * @author eso
  */
 public class ClientNotificationService {
 
+	/**
+	 * The policies for handling a full outbound queue of a connection.
+	 */
+	public enum OverflowPolicy {DROP_OLDEST, DROP_NEWEST}
+
 	private static final CloseReason CLOSE_REASON_SHUTDOWN =
 		new CloseReason(CloseCodes.GOING_AWAY, "Shutting down");
 
+	private static final CloseReason CLOSE_REASON_DEAD =
+		new CloseReason(CloseCodes.GOING_AWAY, "Connection timed out");
+
+	private static final int MAX_RECEIVED_BUS_MESSAGES = 10000;
+
+	private static final int DEFAULT_HEARTBEAT_INTERVAL = 30000;
+
+	private static final int DEFAULT_IDLE_TIMEOUT = 90000;
+
 	private final String webSocketPath;
 
-	private final List<Session> sessions = new ArrayList<>();
+	private final Map<String, ClientConnection> connections =
+		new ConcurrentHashMap<>();
+
+	private final Map<String, Set<ClientConnection>> httpSessionConnections =
+		new ConcurrentHashMap<>();
+
+	private final Map<String, Set<ClientConnection>> userConnections =
+		new ConcurrentHashMap<>();
+
+	private final Map<String, Set<ClientConnection>> topicConnections =
+		new ConcurrentHashMap<>();
+
+	private final NotificationBufferPool bufferPool =
+		new NotificationBufferPool(8192, 256);
+
+	private final AtomicLong sentMessages = new AtomicLong();
+
+	private final AtomicLong sentFrames = new AtomicLong();
+
+	private final AtomicLong failedMessages = new AtomicLong();
+
+	private final AtomicLong droppedMessages = new AtomicLong();
+
+	private final AtomicLong coalescedMessages = new AtomicLong();
+
+	private final AtomicLong totalSendTime = new AtomicLong();
+
+	private final AtomicLong maxSendTime = new AtomicLong();
+
+	private final AtomicLong prunedConnections = new AtomicLong();
+
+	private final String nodeId = UUID.randomUUID().toString();
+
+	private final AtomicLong busSequence = new AtomicLong();
+
+	private final AtomicLong receivedBusMessages = new AtomicLong();
+
+	private final AtomicLong duplicateBusMessages = new AtomicLong();
+
+	private final Map<String, Boolean> receivedBusMessageIds =
+		new LinkedHashMap<String, Boolean>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+				Map.Entry<String, Boolean> eldest) {
+				return size() > MAX_RECEIVED_BUS_MESSAGES;
+			}
+		};
+
+	private volatile NotificationBus notificationBus = null;
+
+	private volatile int maxQueueSize = 100;
+
+	private volatile OverflowPolicy overflowPolicy =
+		OverflowPolicy.DROP_OLDEST;
+
+	private volatile int flushDelay = 0;
+
+	private volatile Function<String, String> messageKeyFunction = null;
+
+	private volatile BiPredicate<String, String> topicAuthorization =
+		(userName, topic) -> userName != null;
+
+	private int heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
+
+	private volatile int idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+	private ScheduledExecutorService scheduler = null;
+
+	private ScheduledExecutorService heartbeatScheduler = null;
+
+	private ScheduledFuture<?> heartbeatTask = null;
+
+	private boolean started = false;
 
 	/**
 	 * Creates a new instance.
@@ -58,22 +210,360 @@ public class ClientNotificationService {
 		this.webSocketPath = path.startsWith("/") ? path : "/" + path;
 	}
 
+	/**
+	 * Returns the average time of the sending of a frame to a client.
+	 *
+	 * @return The average send latency in microseconds
+	 */
+	public long getAverageSendLatency() {
+		long count = sentFrames.get();
+
+		return count > 0 ? totalSendTime.get() / count / 1000 : 0;
+	}
+
+	/**
+	 * Returns the number of messages that have been coalesced with an equal
+	 * message that was still queued.
+	 *
+	 * @return The coalesced message count
+	 */
+	public long getCoalescedMessageCount() {
+		return coalescedMessages.get();
+	}
+
+	/**
+	 * Returns the number of messages that have been received from the
+	 * notification bus.
+	 *
+	 * @return The received bus message count
+	 */
+	public long getBusMessageCount() {
+		return receivedBusMessages.get();
+	}
+
+	/**
+	 * Returns the number of currently open client connections.
+	 *
+	 * @return The connection count
+	 */
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
+	/**
+	 * Returns the number of messages that have been dropped because of full
+	 * outbound queues or because they could not be encoded.
+	 *
+	 * @return The dropped message count
+	 */
+	public long getDroppedMessageCount() {
+		return droppedMessages.get();
+	}
+
+	/**
+	 * Returns the number of messages from the notification bus that have been
+	 * ignored because they had already been received.
+	 *
+	 * @return The duplicate bus message count
+	 */
+	public long getDuplicateBusMessageCount() {
+		return duplicateBusMessages.get();
+	}
+
+	/**
+	 * Returns the number of messages that could not be sent because of
+	 * errors.
+	 *
+	 * @return The failed message count
+	 */
+	public long getFailedMessageCount() {
+		return failedMessages.get();
+	}
+
+	/**
+	 * Returns the largest outbound queue depth of all connections.
+	 *
+	 * @return The maximum queue depth
+	 */
+	public int getMaxQueueDepth() {
+		int maxDepth = 0;
+
+		for (ClientConnection connection : connections.values()) {
+			maxDepth = Math.max(maxDepth, connection.getQueueDepth());
+		}
+
+		return maxDepth;
+	}
+
+	/**
+	 * Returns the maximum time of the sending of a frame to a client.
+	 *
+	 * @return The maximum send latency in microseconds
+	 */
+	public long getMaxSendLatency() {
+		return maxSendTime.get() / 1000;
+	}
+
+	/**
+	 * Returns the total number of messages in the outbound queues of all
+	 * connections.
+	 *
+	 * @return The total queue depth
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+
+		for (ClientConnection connection : connections.values()) {
+			depth += connection.getQueueDepth();
+		}
+
+		return depth;
+	}
+
+	/**
+	 * Returns the number of frames that have been sent to clients. Each frame
+	 * contains one or more messages.
+	 *
+	 * @return The sent frame count
+	 */
+	public long getSentFrameCount() {
+		return sentFrames.get();
+	}
+
+	/**
+	 * Returns the number of connections that have been closed and removed
+	 * because they timed out or a send on them failed.
+	 *
+	 * @return The pruned connection count
+	 */
+	public long getPrunedConnectionCount() {
+		return prunedConnections.get();
+	}
+
+	/**
+	 * Returns the number of messages that have been sent successfully.
+	 *
+	 * @return The sent message count
+	 */
+	public long getSentMessageCount() {
+		return sentMessages.get();
+	}
+
+	/**
+	 * Checks whether a WebSocket connection exists for a certain HTTP
+	 * session.
+	 *
+	 * @param httpSessionId The ID of the HTTP session
+	 * @return TRUE if at least one connection for the session is open
+	 */
+	public boolean hasClient(String httpSessionId) {
+		Set<ClientConnection> clients =
+			httpSessionConnections.get(httpSessionId);
+
+		return clients != null && !clients.isEmpty();
+	}
+
+	/**
+	 * Notifies the clients of a certain HTTP session of a message.
+	 *
+	 * @param httpSessionId The ID of the HTTP session
+	 * @param message       The message string
+	 */
+	public void notifyClient(String httpSessionId, String message) {
+		dispatch(Target.HTTP_SESSION, httpSessionId, message);
+	}
+
+	/**
+	 * Sends a binary notification to the clients of a certain HTTP session.
+	 *
+	 * @param httpSessionId The ID of the HTTP session
+	 * @param notification  The binary notification
+	 */
+	public void notifyClient(String httpSessionId,
+		BinaryNotification notification) {
+		dispatch(Target.HTTP_SESSION, httpSessionId, notification);
+	}
+
 	/**
 	 * Notifies all registered clients of a message.
 	 *
 	 * @param message The message string
 	 */
 	public void notifyClients(String message) {
-		sessions.forEach(session -> Try
-			.run(() -> session.getBasicRemote().sendText(message))
-			.orElse(e -> Log.errorf(e, "Notification of client %s failed",
-				session.getId())));
+		dispatch(Target.ALL, null, message);
+	}
+
+	/**
+	 * Sends a binary notification to all registered clients.
+	 *
+	 * @param notification The binary notification
+	 */
+	public void notifyClients(BinaryNotification notification) {
+		dispatch(Target.ALL, null, notification);
+	}
+
+	/**
+	 * Notifies all clients that are subscribed to a certain topic.
+	 *
+	 * @param topic   The topic
+	 * @param message The message string
+	 */
+	public void notifyTopic(String topic, String message) {
+		dispatch(Target.TOPIC, topic, message);
+	}
+
+	/**
+	 * Sends a binary notification to all clients that are subscribed to a
+	 * certain topic.
+	 *
+	 * @param topic        The topic
+	 * @param notification The binary notification
+	 */
+	public void notifyTopic(String topic, BinaryNotification notification) {
+		dispatch(Target.TOPIC, topic, notification);
+	}
+
+	/**
+	 * Notifies all clients of a certain user.
+	 *
+	 * @param userName The login name of the user
+	 * @param message  The message string
+	 */
+	public void notifyUser(String userName, String message) {
+		dispatch(Target.USER, userName, message);
+	}
+
+	/**
+	 * Sends a binary notification to all clients of a certain user.
+	 *
+	 * @param userName     The login name of the user
+	 * @param notification The binary notification
+	 */
+	public void notifyUser(String userName, BinaryNotification notification) {
+		dispatch(Target.USER, userName, notification);
+	}
+
+	/**
+	 * Sets the delay after which queued messages are sent to a client. All
+	 * text messages that are queued within the delay will be sent in a single
+	 * {@link NotificationBatch batch} frame which requires that the clients
+	 * can decode batches. The default is zero which disables batching and
+	 * sends each message immediately in a separate frame.
+	 *
+	 * @param milliseconds The flush delay in milliseconds
+	 */
+	public void setFlushDelay(int milliseconds) {
+		flushDelay = Math.max(0, milliseconds);
+	}
+
+	/**
+	 * Sets the parameters of the connection heartbeat. Each connection will be
+	 * pinged in the given interval and connections from which nothing has been
+	 * received (including pong responses) for longer than the idle timeout
+	 * will be closed. The defaults are 30 seconds for the interval and 90
+	 * seconds for the timeout.
+	 *
+	 * @param interval The heartbeat interval in milliseconds or zero to
+	 *                 disable the heartbeat
+	 * @param timeout  The idle timeout in milliseconds or zero to disable the
+	 *                 idle detection
+	 */
+	public synchronized void setHeartbeat(int interval, int timeout) {
+		heartbeatInterval = Math.max(0, interval);
+		idleTimeout = Math.max(0, timeout);
+
+		if (started) {
+			scheduleHeartbeat();
+		}
 	}
 
 	/**
-	 * Registers a {@link Endpoint WebSocket Endpoint} class for deployment
-	 * at a
-	 * certain path relative to the servlet context.
+	 * Sets a function that determines the key of a message. A queued message
+	 * will be replaced by a new message with the same key. If no function is
+	 * set (the default) only equal messages are coalesced.
+	 *
+	 * @param keyFunction The key function or NULL to use the messages as keys
+	 */
+	public void setMessageKeyFunction(Function<String, String> keyFunction) {
+		messageKeyFunction = keyFunction;
+	}
+
+	/**
+	 * Sets the bus that relays notifications between the nodes of a cluster.
+	 * Any previously set bus will be closed.
+	 *
+	 * @param bus The notification bus or NULL for none
+	 * @throws IOException If starting the bus fails
+	 */
+	public void setNotificationBus(NotificationBus bus) throws IOException {
+		NotificationBus previousBus = notificationBus;
+
+		if (previousBus != null) {
+			previousBus.close();
+		}
+
+		notificationBus = bus;
+
+		if (bus != null) {
+			bus.start(this::receiveBusMessage);
+		}
+	}
+
+	/**
+	 * Sets the policy for the outbound message queues of client connections.
+	 *
+	 * @param maxSize The maximum number of queued messages per connection
+	 * @param policy  The policy to apply if a queue is full
+	 */
+	public void setQueuePolicy(int maxSize, OverflowPolicy policy) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Queue size must be > 0");
+		}
+
+		maxQueueSize = maxSize;
+		overflowPolicy = policy;
+	}
+
+	/**
+	 * Sets the user of all connections that have been opened from a certain
+	 * HTTP session. This must be invoked by applications when the user of a
+	 * session changes, i.e. after a login or logout, so that connections
+	 * which have been opened before can be targeted with
+	 * {@link #notifyUser(String, String)}. If the user changes all topic
+	 * subscriptions of the affected connections will be cancelled.
+	 *
+	 * @param httpSessionId The ID of the HTTP session
+	 * @param userName      The login name of the new user or NULL if the
+	 *                      session is no longer authenticated
+	 */
+	public void setSessionUser(String httpSessionId, String userName) {
+		Set<ClientConnection> sessionConnections =
+			httpSessionConnections.get(httpSessionId);
+
+		if (sessionConnections != null) {
+			for (ClientConnection connection : sessionConnections) {
+				changeUser(connection, userName);
+			}
+		}
+	}
+
+	/**
+	 * Sets the predicate that authorizes the subscription of a client to a
+	 * topic. The predicate receives the login name of the connection's user
+	 * (NULL if not authenticated) and the topic and must return TRUE if the
+	 * subscription is allowed. The default only allows subscriptions of
+	 * authenticated users.
+	 *
+	 * @param authorization The topic authorization predicate
+	 */
+	public void setTopicAuthorization(
+		BiPredicate<String, String> authorization) {
+		topicAuthorization = Objects.requireNonNull(authorization);
+	}
+
+	/**
+	 * Registers a {@link Endpoint WebSocket Endpoint} class for deployment at
+	 * a certain path relative to the servlet context.
 	 *
 	 * @param context webSocketClass The class of the endpoint
 	 * @throws ServletException If the endpoint registration failed
@@ -93,6 +583,7 @@ public class ClientNotificationService {
 		ServerEndpointConfig config = ServerEndpointConfig.Builder
 			.create(ClientNotificationWebSocket.class,
 				context.getContextPath() + webSocketPath)
+			.configurator(new ClientNotificationWebSocket.SessionConfigurator())
 			.build();
 
 		try {
@@ -101,6 +592,11 @@ public class ClientNotificationService {
 			throw new ServletException(e);
 		}
 
+		synchronized (this) {
+			started = true;
+			scheduleHeartbeat();
+		}
+
 		Log.infof("Client notification WebSocket deployed at %s\n",
 			config.getPath());
 	}
@@ -110,21 +606,508 @@ public class ClientNotificationService {
 	 */
 	public void stop() {
 		Try
-			.ofAll(sessions
+			.ofAll(connections
+				.values()
 				.stream()
-				.map(s -> Try.run(() -> s.close(CLOSE_REASON_SHUTDOWN)))
+				.map(c -> Try.run(
+					() -> c.getSession().close(CLOSE_REASON_SHUTDOWN)))
 				.collect(toList()))
 			.orElse(e -> Log.error("Error when closing sessions", e));
 
-		sessions.clear();
+		if (notificationBus != null) {
+			notificationBus.close();
+			notificationBus = null;
+		}
+
+		synchronized (this) {
+			started = false;
+
+			if (scheduler != null) {
+				scheduler.shutdownNow();
+				scheduler = null;
+			}
+
+			if (heartbeatScheduler != null) {
+				heartbeatScheduler.shutdownNow();
+				heartbeatScheduler = null;
+				heartbeatTask = null;
+			}
+		}
+
+		connections.values().forEach(ClientConnection::close);
+		connections.clear();
+		httpSessionConnections.clear();
+		userConnections.clear();
+		topicConnections.clear();
+	}
+
+	/**
+	 * Subscribes the connection of a WebSocket session to a topic if the
+	 * subscription is authorized for the user of the connection.
+	 *
+	 * @param session The WebSocket session
+	 * @param topic   The topic
+	 */
+	public void subscribe(Session session, String topic) {
+		ClientConnection connection = connections.get(session.getId());
+
+		if (connection != null) {
+			synchronized (connection) {
+				if (!topicAuthorization.test(connection.getUserName(), topic)) {
+					Log.warnf("Subscription of %s to topic %s denied",
+						connection, topic);
+				} else if (connection.getTopics().add(topic)) {
+					addToIndex(topicConnections, topic, connection);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the subscription of the connection of a WebSocket session for a
+	 * topic.
+	 *
+	 * @param session The WebSocket session
+	 * @param topic   The topic
+	 */
+	public void unsubscribe(Session session, String topic) {
+		ClientConnection connection = connections.get(session.getId());
+
+		if (connection != null) {
+			synchronized (connection) {
+				if (connection.getTopics().remove(topic)) {
+					removeFromIndex(topicConnections, topic, connection);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a new client connection for a WebSocket session.
+	 *
+	 * @param session       The WebSocket session
+	 * @param httpSessionId The ID of the HTTP session or NULL if not available
+	 * @param userName      The login name of the user or NULL if not known
+	 */
+	void addConnection(Session session, String httpSessionId,
+		String userName) {
+		ClientConnection connection =
+			new ClientConnection(this, session, httpSessionId, userName);
+
+		synchronized (connection) {
+			connections.put(session.getId(), connection);
+
+			if (httpSessionId != null) {
+				addToIndex(httpSessionConnections, httpSessionId, connection);
+			}
+
+			if (userName != null) {
+				addToIndex(userConnections, userName, connection);
+			}
+		}
+	}
+
+	/**
+	 * Returns the pool for the buffers of binary frames.
+	 *
+	 * @return The buffer pool
+	 */
+	final NotificationBufferPool getBufferPool() {
+		return bufferPool;
+	}
+
+	/**
+	 * Checks whether the text messages that are queued for a connection are
+	 * sent as batch frames. This is only the case if a flush delay has been
+	 * set.
+	 *
+	 * @return TRUE if messages are batched
+	 */
+	final boolean isBatching() {
+		return flushDelay > 0;
+	}
+
+	/**
+	 * Closes and removes a connection that is no longer alive.
+	 *
+	 * @param connection The connection to prune
+	 */
+	void pruneConnection(ClientConnection connection) {
+		Session session = connection.getSession();
+
+		if (removeConnection(session)) {
+			prunedConnections.incrementAndGet();
+			Try.run(() -> session.close(CLOSE_REASON_DEAD));
+
+			Log.infof("Pruned dead client connection %s", connection);
+		}
+	}
+
+	/**
+	 * Records the receiving of a message (including pong responses) from the
+	 * client of a WebSocket session.
+	 *
+	 * @param session The WebSocket session
+	 */
+	void recordActivity(Session session) {
+		ClientConnection connection = connections.get(session.getId());
+
+		if (connection != null) {
+			connection.recordActivity();
+		}
+	}
+
+	/**
+	 * Records a message that has been coalesced with a queued message.
+	 */
+	void recordCoalesced() {
+		coalescedMessages.incrementAndGet();
+	}
+
+	/**
+	 * Records messages that have been dropped from a full queue or because
+	 * they could not be encoded.
+	 *
+	 * @param count The number of dropped messages
+	 */
+	void recordDropped(int count) {
+		droppedMessages.addAndGet(count);
+	}
+
+	/**
+	 * Records the completion of an asynchronous frame send.
+	 *
+	 * @param duration     The send duration in nanoseconds
+	 * @param messageCount The number of messages in the frame
+	 * @param success      TRUE if the frame has been sent successfully
+	 */
+	void recordSend(long duration, int messageCount, boolean success) {
+		(success ? sentMessages : failedMessages).addAndGet(messageCount);
+		sentFrames.incrementAndGet();
+		totalSendTime.addAndGet(duration);
+		maxSendTime.accumulateAndGet(duration, Math::max);
+	}
+
+	/**
+	 * Removes the client connection of a WebSocket session.
+	 *
+	 * @param session The WebSocket session
+	 * @return TRUE if the connection has been removed, FALSE if it had
+	 * already been removed before
+	 */
+	boolean removeConnection(Session session) {
+		ClientConnection connection = connections.remove(session.getId());
+
+		if (connection != null) {
+			connection.close();
+
+			if (connection.getHttpSessionId() != null) {
+				removeFromIndex(httpSessionConnections,
+					connection.getHttpSessionId(), connection);
+			}
+
+			synchronized (connection) {
+				if (connection.getUserName() != null) {
+					removeFromIndex(userConnections, connection.getUserName(),
+						connection);
+				}
+
+				for (String topic : connection.getTopics()) {
+					removeFromIndex(topicConnections, topic, connection);
+				}
+			}
+		}
+
+		return connection != null;
+	}
+
+	/**
+	 * Schedules the flushing of the message queue of a connection. Has no
+	 * effect if the service has been stopped.
+	 *
+	 * @param connection The connection
+	 * @param delay      The flush delay in milliseconds
+	 */
+	void scheduleFlush(ClientConnection connection, int delay) {
+		ScheduledExecutorService executor;
+
+		synchronized (this) {
+			if (!started) {
+				return;
+			}
+
+			executor = getScheduler();
+		}
+
+		try {
+			executor.schedule(connection::flush, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// service has been stopped concurrently
+		}
+	}
+
+	/**
+	 * Adds a connection to an index map.
+	 *
+	 * @param index      The index map
+	 * @param key        The index key
+	 * @param connection The connection to add
+	 */
+	private void addToIndex(Map<String, Set<ClientConnection>> index,
+		String key, ClientConnection connection) {
+		index.compute(key, (k, set) -> {
+			if (set == null) {
+				set = ConcurrentHashMap.newKeySet();
+			}
+
+			set.add(connection);
+
+			return set;
+		});
+	}
+
+	/**
+	 * Changes the user of a connection and cancels its topic subscriptions if
+	 * the user is different from the current user.
+	 *
+	 * @param connection The connection
+	 * @param userName   The login name of the new user or NULL for none
+	 */
+	private void changeUser(ClientConnection connection, String userName) {
+		synchronized (connection) {
+			String previousUser = connection.getUserName();
+
+			// ignore connections that have been removed concurrently
+			if (!Objects.equals(previousUser, userName) &&
+				connections.get(connection.getSession().getId()) ==
+					connection) {
+				if (previousUser != null) {
+					removeFromIndex(userConnections, previousUser, connection);
+				}
+
+				for (String topic : connection.getTopics()) {
+					removeFromIndex(topicConnections, topic, connection);
+				}
+
+				connection.getTopics().clear();
+				connection.setUserName(userName);
+
+				if (userName != null) {
+					addToIndex(userConnections, userName, connection);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pings all connections and prunes the connections that have been idle
+	 * for longer than the idle timeout or that cannot be pinged. Invoked on
+	 * the heartbeat thread.
+	 */
+	private void checkConnections() {
+		long now = System.currentTimeMillis();
+		int timeout = idleTimeout;
+
+		for (ClientConnection connection : connections.values()) {
+			if ((timeout > 0 &&
+				now - connection.getLastActivity() > timeout) ||
+				!connection.ping()) {
+				pruneConnection(connection);
+			}
+		}
+	}
+
+	/**
+	 * Delivers a message to the local clients of a certain target.
+	 *
+	 * @param target    The target type
+	 * @param targetKey The target key
+	 * @param message   The message (a string or a binary notification)
+	 */
+	private void deliver(Target target, String targetKey, Object message) {
+		Collection<ClientConnection> targets;
+
+		switch (target) {
+			case HTTP_SESSION:
+				targets = httpSessionConnections.get(targetKey);
+				break;
+
+			case USER:
+				targets = userConnections.get(targetKey);
+				break;
+
+			case TOPIC:
+				targets = topicConnections.get(targetKey);
+				break;
+
+			default:
+				targets = connections.values();
+		}
+
+		String key = message instanceof BinaryNotification ?
+		             ((BinaryNotification) message).getKey() :
+		             getKey((String) message);
+
+		send(targets, key, message);
+	}
+
+	/**
+	 * Delivers a message to the local clients of a certain target and
+	 * publishes it on the notification bus if available.
+	 *
+	 * @param target    The target type
+	 * @param targetKey The target key
+	 * @param message   The message (a string or a binary notification)
+	 */
+	private void dispatch(Target target, String targetKey, Object message) {
+		NotificationBus bus = notificationBus;
+
+		deliver(target, targetKey, message);
+
+		if (bus != null) {
+			bus.publish(new NotificationBusMessage(nodeId,
+				busSequence.incrementAndGet(), target, targetKey, message));
+		}
+	}
+
+	/**
+	 * Returns the executor for the heartbeat task and creates it on demand.
+	 * The heartbeat is separated from the {@link #getScheduler() scheduler}
+	 * of the flushes because sending a ping can block until a frame that is
+	 * currently sent to the client has been completed. Must be invoked while
+	 * synchronized on this instance.
+	 *
+	 * @return The heartbeat executor
+	 */
+	private ScheduledExecutorService getHeartbeatScheduler() {
+		if (heartbeatScheduler == null) {
+			heartbeatScheduler =
+				Executors.newSingleThreadScheduledExecutor(task -> {
+					Thread thread =
+						new Thread(task, "ClientNotificationHeartbeat");
+
+					thread.setDaemon(true);
+
+					return thread;
+				});
+		}
+
+		return heartbeatScheduler;
+	}
+
+	/**
+	 * Returns the coalescing key of a text message.
+	 *
+	 * @param message The message
+	 * @return The message key
+	 */
+	private String getKey(String message) {
+		Function<String, String> keyFunction = messageKeyFunction;
+		String key = keyFunction != null ? keyFunction.apply(message) : null;
+
+		return key != null ? key : message;
+	}
+
+	/**
+	 * Returns the executor for scheduled tasks and creates it on demand. The
+	 * executor uses a daemon thread so that it cannot prevent the shutdown of
+	 * the JVM. Must be invoked while synchronized on this instance.
+	 *
+	 * @return The scheduled executor
+	 */
+	private ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+				Thread thread =
+					new Thread(task, "ClientNotificationScheduler");
+
+				thread.setDaemon(true);
+
+				return thread;
+			});
+		}
+
+		return scheduler;
+	}
+
+	/**
+	 * Receives a message from the notification bus and delivers it to the
+	 * local clients unless it originates from this node or has already been
+	 * received. Received messages are not published again.
+	 *
+	 * @param message The bus message
+	 */
+	private void receiveBusMessage(NotificationBusMessage message) {
+		if (!nodeId.equals(message.getOriginNode())) {
+			boolean duplicate;
+
+			synchronized (receivedBusMessageIds) {
+				duplicate =
+					receivedBusMessageIds.put(message.getId(), Boolean.TRUE) !=
+						null;
+			}
+
+			if (duplicate) {
+				duplicateBusMessages.incrementAndGet();
+			} else {
+				receivedBusMessages.incrementAndGet();
+				deliver(message.getTarget(), message.getTargetKey(),
+					message.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Removes a connection from an index map. Empty index entries will be
+	 * removed from the map.
+	 *
+	 * @param index      The index map
+	 * @param key        The index key
+	 * @param connection The connection to remove
+	 */
+	private void removeFromIndex(Map<String, Set<ClientConnection>> index,
+		String key, ClientConnection connection) {
+		index.computeIfPresent(key, (k, set) -> {
+			set.remove(connection);
+
+			return set.isEmpty() ? null : set;
+		});
+	}
+
+	/**
+	 * (Re-)schedules the heartbeat task according to the current interval.
+	 * Must be invoked while synchronized on this instance.
+	 */
+	private void scheduleHeartbeat() {
+		if (heartbeatTask != null) {
+			heartbeatTask.cancel(false);
+			heartbeatTask = null;
+		}
+
+		if (heartbeatInterval > 0) {
+			heartbeatTask = getHeartbeatScheduler().scheduleWithFixedDelay(
+				this::checkConnections, heartbeatInterval, heartbeatInterval,
+				TimeUnit.MILLISECONDS);
+		}
 	}
 
 	/**
-	 * Returns the current sessions.
+	 * Queues a message for sending to multiple connections.
 	 *
-	 * @return The sessions
+	 * @param targets The target connections (may be NULL)
+	 * @param key     The coalescing key of the message
+	 * @param message The message (a string or a binary notification)
 	 */
-	List<Session> getSessions() {
-		return sessions;
+	private void send(Collection<ClientConnection> targets, String key,
+		Object message) {
+		if (targets != null) {
+			int maxQueue = maxQueueSize;
+			int delay = flushDelay;
+			OverflowPolicy policy = overflowPolicy;
+
+			for (ClientConnection connection : targets) {
+				connection.send(key, message, maxQueue, policy, delay);
+			}
+		}
 	}
 }
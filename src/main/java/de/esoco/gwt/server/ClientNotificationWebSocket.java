@@ -16,21 +16,57 @@
 //++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 package de.esoco.gwt.server;
 
+import de.esoco.gwt.shared.AuthenticatedService;
 import de.esoco.lib.logging.Log;
 
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
+
 import javax.websocket.CloseReason;
 import javax.websocket.Endpoint;
 import javax.websocket.EndpointConfig;
+import javax.websocket.HandshakeResponse;
 import javax.websocket.MessageHandler;
+import javax.websocket.PongMessage;
 import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpointConfig;
 
 /**
- * The WebSocket endpoint for the {@link ClientNotificationService}.
+ * The WebSocket endpoint for the {@link ClientNotificationService}. Clients
+ * can subscribe to notification topics by sending messages with the prefix
+ * {@link #SUBSCRIBE_PREFIX} or {@link #UNSUBSCRIBE_PREFIX}, followed by the
+ * topic name. Subscriptions are only accepted if the service authorizes them
+ * for the user of the connection. Pong responses to the heartbeat pings of the service and all
+ * other client messages are recorded as connection activity.
  *
  * @author eso
  */
 public class ClientNotificationWebSocket extends Endpoint {
 
+	/**
+	 * The key of the user property that contains the ID of the HTTP session a
+	 * WebSocket session has been opened from.
+	 */
+	static final String HTTP_SESSION_ID = "HttpSessionId";
+
+	/**
+	 * The key of the user property that contains the login name of the user
+	 * that has opened a WebSocket session.
+	 */
+	static final String USER_NAME = "UserName";
+
+	/**
+	 * The prefix of client messages that subscribe to a topic.
+	 */
+	public static final String SUBSCRIBE_PREFIX = "Subscribe:";
+
+	/**
+	 * The prefix of client messages that cancel a topic subscription.
+	 */
+	public static final String UNSUBSCRIBE_PREFIX = "Unsubscribe:";
+
 	private static ClientNotificationService notificationService;
 
 	/**
@@ -50,7 +86,7 @@ public class ClientNotificationWebSocket extends Endpoint {
 	 */
 	@Override
 	public void onClose(Session session, CloseReason reason) {
-		notificationService.getSessions().remove(session);
+		notificationService.removeConnection(session);
 
 		Log.infof("%s[%s] closed", getClass().getSimpleName(),
 			session.getId());
@@ -64,7 +100,7 @@ public class ClientNotificationWebSocket extends Endpoint {
 	 */
 	@Override
 	public void onError(Session session, Throwable error) {
-		notificationService.getSessions().remove(session);
+		notificationService.removeConnection(session);
 
 		Log.errorf(error, "%s[%s] error", getClass().getSimpleName(),
 			session.getId());
@@ -78,13 +114,23 @@ public class ClientNotificationWebSocket extends Endpoint {
 	 */
 	@Override
 	public void onOpen(Session session, EndpointConfig config) {
-		notificationService.getSessions().add(session);
+		String httpSessionId =
+			(String) config.getUserProperties().get(HTTP_SESSION_ID);
+		String userName = (String) config.getUserProperties().get(USER_NAME);
+
+		notificationService.addConnection(session, httpSessionId, userName);
 		session.addMessageHandler(new MessageHandler.Whole<String>() {
 			@Override
 			public void onMessage(String message) {
 				ClientNotificationWebSocket.this.onMessage(session, message);
 			}
 		});
+		session.addMessageHandler(new MessageHandler.Whole<PongMessage>() {
+			@Override
+			public void onMessage(PongMessage message) {
+				notificationService.recordActivity(session);
+			}
+		});
 
 		Log.infof("%s[%s] opened", getClass().getSimpleName(),
 			session.getId());
@@ -97,6 +143,48 @@ public class ClientNotificationWebSocket extends Endpoint {
 	 * @param message The message
 	 */
 	void onMessage(Session session, String message) {
-		Log.warn("Client message ignored");
+		notificationService.recordActivity(session);
+
+		if (message.startsWith(SUBSCRIBE_PREFIX)) {
+			notificationService.subscribe(session,
+				message.substring(SUBSCRIBE_PREFIX.length()));
+		} else if (message.startsWith(UNSUBSCRIBE_PREFIX)) {
+			notificationService.unsubscribe(session,
+				message.substring(UNSUBSCRIBE_PREFIX.length()));
+		} else {
+			Log.warn("Client message ignored");
+		}
+	}
+
+	/**
+	 * An endpoint configurator that records the ID of the HTTP session from
+	 * which a WebSocket connection is opened and the login name of the
+	 * session's user (if already authenticated) so that notifications can be
+	 * targeted at the clients of a certain session or user.
+	 *
+	 * @author eso
+	 */
+	static class SessionConfigurator extends ServerEndpointConfig.Configurator {
+
+		@Override
+		public void modifyHandshake(ServerEndpointConfig config,
+			HandshakeRequest request, HandshakeResponse response) {
+			HttpSession httpSession = (HttpSession) request.getHttpSession();
+			Map<String, Object> properties = config.getUserProperties();
+
+			properties.remove(HTTP_SESSION_ID);
+			properties.remove(USER_NAME);
+
+			if (httpSession != null) {
+				Object loginName =
+					httpSession.getAttribute(AuthenticatedService.LOGIN_NAME);
+
+				properties.put(HTTP_SESSION_ID, httpSession.getId());
+
+				if (loginName != null) {
+					properties.put(USER_NAME, loginName);
+				}
+			}
+		}
 	}
 }
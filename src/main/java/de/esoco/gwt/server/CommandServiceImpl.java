@@ -39,6 +39,18 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 
@@ -50,19 +62,74 @@ import com.google.gwt.user.server.rpc.RemoteServiceServlet;
  * only needs to implement a corresponding handler method for each command it
  * defines in it's public service interface.
  *
+ * <p>By default RPC requests are executed on the request threads of the
+ * servlet container which are blocked while a command waits for I/O (e.g.
+ * database queries). By setting the servlet init parameter
+ * {@link #PARAM_ASYNC_EXECUTION} the requests can instead be handed off to
+ * virtual threads (on JDKs that support them) or to a thread pool through
+ * the servlet async support so that the container threads are freed
+ * immediately. This requires that the servlet is deployed with async support
+ * enabled. Thread pools have a bounded queue of waiting requests (see
+ * {@link #PARAM_ASYNC_QUEUE_SIZE}). If the queue is full further requests
+ * are rejected with the HTTP status 503 (service unavailable).</p>
+ *
+ * <p>To prevent single clients from starving others the admission of command
+ * requests can be controlled by setting a {@link RequestAdmission} instance
+ * with {@link #setRequestAdmission(RequestAdmission)}.</p>
+ *
  * @author eso
  */
 public abstract class CommandServiceImpl extends RemoteServiceServlet
 	implements CommandService {
 
+	/**
+	 * The servlet init parameter that enables the asynchronous execution of
+	 * RPC requests. The value can either be {@link #ASYNC_EXECUTION_VIRTUAL}
+	 * to execute each request on a new virtual thread or a positive integer
+	 * for the size of a thread pool to execute requests on.
+	 */
+	public static final String PARAM_ASYNC_EXECUTION = "asyncExecution";
+
+	/**
+	 * The servlet init parameter for the maximum number of requests that wait
+	 * for a thread of the asynchronous execution pool. The default value is
+	 * {@link #DEFAULT_ASYNC_QUEUE_SIZE}.
+	 */
+	public static final String PARAM_ASYNC_QUEUE_SIZE = "asyncQueueSize";
+
+	/**
+	 * The value of {@link #PARAM_ASYNC_EXECUTION} for the execution on virtual
+	 * threads. If virtual threads are not supported by the JDK a thread pool
+	 * with {@link #FALLBACK_POOL_SIZE} threads will be used instead.
+	 */
+	public static final String ASYNC_EXECUTION_VIRTUAL = "virtual";
+
+	/**
+	 * The default size of the request queue of asynchronous thread pools.
+	 */
+	public static final int DEFAULT_ASYNC_QUEUE_SIZE = 100;
+
+	/**
+	 * The size of the thread pool that is used for the virtual thread mode if
+	 * virtual threads are not supported (the default maximum thread count of
+	 * common servlet containers).
+	 */
+	public static final int FALLBACK_POOL_SIZE = 200;
+
 	private static final long serialVersionUID = 1L;
 
 	private static final String DEFAULT_RESOURCE_KEY = "DEFAULT";
 
+	private static final long THREAD_KEEP_ALIVE = 60;
+
 	private String applicationName = null;
 
 	private Map<String, ResourceBundle> localeResources = new HashMap<>();
 
+	private transient ExecutorService commandExecutor = null;
+
+	private transient RequestAdmission requestAdmission = null;
+
 	/**
 	 * @see CommandService#executeCommand(Command, DataElement)
 	 */
@@ -75,6 +142,13 @@ public abstract class CommandServiceImpl extends RemoteServiceServlet
 		String method =
 			"handle" + TextConvert.capitalizedIdentifier(command.getName());
 
+		RequestAdmission admission = requestAdmission;
+		RequestAdmission.Ticket ticket = null;
+
+		if (admission != null) {
+			ticket = admission.admit(getClientId(), command.getName());
+		}
+
 		try {
 			Method handler =
 				ReflectUtil.findAnyPublicMethod(getClass(), method);
@@ -87,7 +161,24 @@ public abstract class CommandServiceImpl extends RemoteServiceServlet
 			return (R) handler.invoke(this, data);
 		} catch (Throwable e) {
 			throw handleException(e);
+		} finally {
+			if (ticket != null) {
+				ticket.release();
+			}
+		}
+	}
+
+	/**
+	 * Overridden to shut down the executor for asynchronous requests.
+	 */
+	@Override
+	public void destroy() {
+		if (commandExecutor != null) {
+			commandExecutor.shutdown();
+			commandExecutor = null;
 		}
+
+		super.destroy();
 	}
 
 	/**
@@ -97,6 +188,38 @@ public abstract class CommandServiceImpl extends RemoteServiceServlet
 		return getServletContext().getRealPath(fileName);
 	}
 
+	/**
+	 * Returns the admission control of this service.
+	 *
+	 * @return The request admission or NULL if not set
+	 */
+	public final RequestAdmission getRequestAdmission() {
+		return requestAdmission;
+	}
+
+	/**
+	 * Overridden to create the executor for asynchronous requests if enabled
+	 * by the init parameter {@link #PARAM_ASYNC_EXECUTION}.
+	 *
+	 * @throws ServletException On errors
+	 */
+	@Override
+	public void init() throws ServletException {
+		super.init();
+
+		commandExecutor =
+			createCommandExecutor(getInitParameter(PARAM_ASYNC_EXECUTION));
+	}
+
+	/**
+	 * Sets the admission control for the command requests of this service.
+	 *
+	 * @param admission The request admission or NULL to admit all requests
+	 */
+	public void setRequestAdmission(RequestAdmission admission) {
+		requestAdmission = admission;
+	}
+
 	/**
 	 * @see RemoteServiceServlet#toString()
 	 */
@@ -120,6 +243,48 @@ public abstract class CommandServiceImpl extends RemoteServiceServlet
 		Command<T, ?> command, T data) throws ServiceException {
 	}
 
+	/**
+	 * Creates the executor for the asynchronous execution of RPC requests.
+	 * Subclasses can override this method to provide a different executor.
+	 *
+	 * @param mode The value of the init parameter
+	 *             {@link #PARAM_ASYNC_EXECUTION} (NULL if not set)
+	 * @return The executor or NULL for synchronous request execution
+	 * @throws ServletException If the mode is invalid
+	 */
+	protected ExecutorService createCommandExecutor(String mode)
+		throws ServletException {
+		ExecutorService executor = null;
+
+		if (ASYNC_EXECUTION_VIRTUAL.equalsIgnoreCase(mode)) {
+			try {
+				// accessed by reflection to support JDKs without virtual
+				// threads
+				executor = (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor")
+					.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				Log.warn("Virtual threads not available, using thread pool");
+
+				executor = createThreadPool(FALLBACK_POOL_SIZE);
+			}
+		} else if (mode != null && !mode.isEmpty()) {
+			try {
+				executor = createThreadPool(Integer.parseInt(mode));
+			} catch (IllegalArgumentException e) {
+				throw new ServletException(
+					"Invalid " + PARAM_ASYNC_EXECUTION + ": " + mode, e);
+			}
+		}
+
+		if (executor != null) {
+			Log.infof("%s: asynchronous request execution (%s)",
+				getClass().getSimpleName(), mode);
+		}
+
+		return executor;
+	}
+
 	/**
 	 * Returns the name of the application this service belongs to. The default
 	 * implementation returns the service name (without a trailing
@@ -143,6 +308,20 @@ public abstract class CommandServiceImpl extends RemoteServiceServlet
 		return applicationName;
 	}
 
+	/**
+	 * Returns the ID of the client of the current request for the admission
+	 * control. This is the ID of the HTTP session if available or else the
+	 * remote address of the client.
+	 *
+	 * @return The client ID
+	 */
+	protected String getClientId() {
+		HttpServletRequest request = getThreadLocalRequest();
+		HttpSession session = request.getSession(false);
+
+		return session != null ? session.getId() : request.getRemoteAddr();
+	}
+
 	/**
 	 * Returns the app resource for a certain locale.
 	 *
@@ -286,4 +465,85 @@ public abstract class CommandServiceImpl extends RemoteServiceServlet
 
 		return resource;
 	}
+
+	/**
+	 * Overridden to hand off RPC requests to the executor for asynchronous
+	 * requests if enabled.
+	 *
+	 * @see RemoteServiceServlet#service(HttpServletRequest,
+	 * HttpServletResponse)
+	 */
+	@Override
+	protected void service(HttpServletRequest request,
+		HttpServletResponse response) throws ServletException, IOException {
+		ExecutorService executor = commandExecutor;
+
+		if (executor != null && "POST".equals(request.getMethod()) &&
+			request.isAsyncSupported()) {
+			AsyncContext asyncContext = request.startAsync();
+
+			// commands have no time limit in synchronous execution either
+			asyncContext.setTimeout(0);
+
+			try {
+				executor.execute(() -> executeAsync(asyncContext));
+			} catch (RejectedExecutionException e) {
+				((HttpServletResponse) asyncContext.getResponse()).setStatus(
+					HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				asyncContext.complete();
+			}
+		} else {
+			super.service(request, response);
+		}
+	}
+
+	/**
+	 * Creates a thread pool for the asynchronous execution of requests. The
+	 * pool has a bounded queue so that requests are rejected if all threads
+	 * are busy and the queue is full. Idle threads are terminated after a
+	 * timeout.
+	 *
+	 * @param size The number of threads
+	 * @return The new thread pool
+	 * @throws ServletException If the queue size parameter is invalid
+	 */
+	private ExecutorService createThreadPool(int size)
+		throws ServletException {
+		String queueParam = getInitParameter(PARAM_ASYNC_QUEUE_SIZE);
+		int queueSize = DEFAULT_ASYNC_QUEUE_SIZE;
+
+		if (queueParam != null && !queueParam.isEmpty()) {
+			try {
+				queueSize = Integer.parseInt(queueParam);
+			} catch (NumberFormatException e) {
+				throw new ServletException(
+					"Invalid " + PARAM_ASYNC_QUEUE_SIZE + ": " + queueParam, e);
+			}
+		}
+
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size,
+			THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(Math.max(1, queueSize)));
+
+		pool.allowCoreThreadTimeOut(true);
+
+		return pool;
+	}
+
+	/**
+	 * Executes an asynchronous request on the current thread and completes
+	 * it afterwards.
+	 *
+	 * @param asyncContext The context of the asynchronous request
+	 */
+	private void executeAsync(AsyncContext asyncContext) {
+		try {
+			super.service((HttpServletRequest) asyncContext.getRequest(),
+				(HttpServletResponse) asyncContext.getResponse());
+		} catch (Exception e) {
+			Log.error("Asynchronous request execution failed", e);
+		} finally {
+			asyncContext.complete();
+		}
+	}
 }
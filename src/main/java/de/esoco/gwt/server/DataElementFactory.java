@@ -52,11 +52,11 @@ import de.esoco.lib.collection.CollectionUtil;
 import de.esoco.lib.datatype.Period;
 import de.esoco.lib.datatype.Period.Unit;
 import de.esoco.lib.expression.BinaryFunction;
-import de.esoco.lib.expression.CollectionFunctions;
 import de.esoco.lib.expression.ElementAccess;
 import de.esoco.lib.expression.Function;
 import de.esoco.lib.expression.Functions;
 import de.esoco.lib.expression.Predicate;
+import de.esoco.lib.expression.Predicates;
 import de.esoco.lib.expression.function.FunctionChain;
 import de.esoco.lib.expression.predicate.FunctionPredicate;
 import de.esoco.lib.json.JsonObject;
@@ -115,6 +115,7 @@ import static de.esoco.entity.EntityRelationTypes.ENTITY_QUERY_PREDICATE;
 import static de.esoco.entity.EntityRelationTypes.ENTITY_SORT_PREDICATE;
 import static de.esoco.entity.EntityRelationTypes.HIERARCHICAL_QUERY_MODE;
 import static de.esoco.entity.EntityRelationTypes.HIERARCHY_CHILD_PREDICATE;
+import static de.esoco.lib.expression.CollectionPredicates.elementOf;
 import static de.esoco.lib.expression.Functions.asString;
 import static de.esoco.lib.expression.Predicates.equalTo;
 import static de.esoco.lib.expression.StringFunctions.capitalizedIdentifier;
@@ -130,6 +131,7 @@ import static de.esoco.process.ProcessRelationTypes.ALLOWED_VALUES;
 import static de.esoco.process.ProcessRelationTypes.DATA_ELEMENT;
 import static de.esoco.process.ProcessRelationTypes.INPUT_PARAMS;
 import static de.esoco.process.ProcessRelationTypes.PROCESS;
+import static de.esoco.storage.StoragePredicates.sortBy;
 import static org.obrel.type.MetaTypes.AUTOGENERATED;
 import static org.obrel.type.MetaTypes.ELEMENT_DATATYPE;
 import static org.obrel.type.MetaTypes.OPTIONAL;
@@ -153,10 +155,16 @@ public class DataElementFactory {
 	private static final Function<Date, Long> GET_DATE_LONG_VALUE =
 		d -> d != null ? Long.valueOf(d.getTime()) : null;
 
+	// the maximum number of values in a single SQL IN clause of some
+	// databases (e.g. Oracle)
+	private static final int MAX_ID_LIST_SIZE = 1000;
+
 	// --------------------------------------------------------
 
 	private final StorageAdapterRegistry storageAdapterRegistry;
 
+	private int maxSelectionListSize = 1000;
+
 	// -----------------------------------------------------------
 
 	/**
@@ -453,6 +461,44 @@ public class DataElementFactory {
 		return attribute;
 	}
 
+	/**
+	 * Returns the prefix of the item resource IDs that are displayed for the
+	 * values of a boolean attribute.
+	 *
+	 * @param attribute The boolean attribute
+	 * @return The item resource prefix
+	 */
+	static String getBooleanItemPrefix(RelationType<?> attribute) {
+		return DataElement.ITEM_RESOURCE_PREFIX +
+			TextConvert.capitalizedIdentifier(attribute.getSimpleName());
+	}
+
+	/**
+	 * Returns the prefix of the item resource IDs that are displayed for the
+	 * values of an enum attribute. The enum-specific part of the prefix can be
+	 * overridden with the display property {@link
+	 * de.esoco.lib.property.ContentProperties#RESOURCE_ID RESOURCE_ID} of the
+	 * attribute.
+	 *
+	 * @param entityDefinition The entity definition of the attribute
+	 * @param attribute        The enum attribute
+	 * @param enumType         The enum datatype of the attribute
+	 * @return The item resource prefix
+	 */
+	static String getEnumItemPrefix(EntityDefinition<?> entityDefinition,
+		RelationType<?> attribute, Class<?> enumType) {
+		String enumPrefix = enumType.getSimpleName();
+
+		HasProperties displayProperties =
+			entityDefinition.getDisplayProperties(attribute);
+
+		if (displayProperties != null) {
+			enumPrefix = displayProperties.getProperty(RESOURCE_ID, enumPrefix);
+		}
+
+		return DataElement.ITEM_RESOURCE_PREFIX + enumPrefix;
+	}
+
 	/**
 	 * Returns a validator for a certain enum class. To reduce serialization
 	 * sizes validator instances are cached internally so that the same
@@ -544,34 +590,20 @@ public class DataElementFactory {
 		}
 
 		if (datatype.isEnum()) {
-			String enumPrefix = datatype.getSimpleName();
-			StringBuilder enumItem =
-				new StringBuilder(DataElement.ITEM_RESOURCE_PREFIX);
-
-			HasProperties displayProperties =
-				entityDefinition.getDisplayProperties(attribute);
-
-			if (displayProperties != null) {
-				enumPrefix =
-					displayProperties.getProperty(RESOURCE_ID, enumPrefix);
-			}
-
-			enumItem.append(enumPrefix);
-			enumItem.append("%s");
+			String enumItem =
+				getEnumItemPrefix(entityDefinition, attribute, datatype) +
+					"%s";
 
 			// add formatting function for enum values that creates a
 			// resource identifier
-			getAttr = format(enumItem.toString()).from(
+			getAttr = format(enumItem).from(
 				capitalizedIdentifier().from(asString().from(getAttr)));
 		} else if (Date.class.isAssignableFrom(datatype)) {
 			// convert dates into their long values
 			getAttr = GET_DATE_LONG_VALUE.from(
 				(Function<? super Entity, ? extends Date>) getAttr);
 		} else if (datatype == Boolean.class) {
-			String attr =
-				TextConvert.capitalizedIdentifier(attribute.getSimpleName());
-
-			attr = DataElement.ITEM_RESOURCE_PREFIX + attr + "%s";
+			String attr = getBooleanItemPrefix(attribute) + "%s";
 
 			getAttr = format(attr).from(
 				capitalizedIdentifier().from(asString().from(getAttr)));
@@ -809,7 +841,11 @@ public class DataElementFactory {
 
 	/**
 	 * Creates a new {@link SelectionDataElement} for the selection of a entity
-	 * data element from a list of entities.
+	 * data element from a list of entities. If the list is not hierarchical
+	 * and contains more than {@link #setMaxSelectionListSize(int) the maximum
+	 * selection list size} elements it will be converted into a query that
+	 * the client can access page by page. The entities of such a query are
+	 * ordered by their IDs and not in the order of the list.
 	 *
 	 * @param name            The name of the element
 	 * @param metaData        A relatable object containing the meta data for
@@ -826,10 +862,21 @@ public class DataElementFactory {
 		List<Function<? super Entity, ?>> attributes) throws StorageException {
 		EntityDefinition<?> def = entities.get(0).getDefinition();
 		String prefix = def.getEntityName();
+		boolean hierarchical = metaData.hasFlag(MetaTypes.HIERARCHICAL);
+
+		if (!hierarchical && maxSelectionListSize > 0 &&
+			entities.size() > maxSelectionListSize) {
+			// large lists are queried in pages by the client instead of
+			// transferring all entities at once; the list order cannot be
+			// expressed as a query criterion so the IDs define the order
+			return createEntitySelectionElement(name, metaData,
+				currentEntityId, -1, createEntityIdQuery(def, entities), null,
+				sortBy(def.getIdAttribute(), SortDirection.ASCENDING),
+				attributes);
+		}
 
 		List<HierarchicalDataObject> entityObjects =
-			createEntityDataObjects(entities, attributes,
-				metaData.hasFlag(MetaTypes.HIERARCHICAL));
+			createEntityDataObjects(entities, attributes, hierarchical);
 
 		String currentValue =
 			currentEntityId != null ? currentEntityId.toString() : "-1";
@@ -878,6 +925,9 @@ public class DataElementFactory {
 
 		String prefix = def.getEntityName();
 
+		Function<Entity, List<String>> getAttributes =
+			new EntityRowExtractor(def, attributes, displayEntityIds);
+
 		attributes =
 			processAttributeFunctions(def, attributes, displayEntityIds);
 
@@ -898,9 +948,6 @@ public class DataElementFactory {
 			createColumnDefinitions(def, attributes, prefix, sortAttribute,
 				sortDirection);
 
-		Function<Entity, List<String>> getAttributes =
-			CollectionFunctions.createStringList(false, attributes);
-
 		StorageAdapterId storageAdapterId =
 			getDatabaseStorageAdapter(metaData, STORAGE_ADAPTER_ID, query,
 				getAttributes, defaultCriteria, defaultSortCriteria, columns);
@@ -1031,6 +1078,25 @@ public class DataElementFactory {
 		return result;
 	}
 
+	/**
+	 * Sets the maximum number of entities that will be transferred to the
+	 * client directly in the {@link SelectionValidator} of an entity selection
+	 * element. Larger (non-hierarchical) entity lists will be converted into a
+	 * query of their entity IDs which is then served page by page through a
+	 * {@link DatabaseStorageAdapter}. Such a query returns the entities in the
+	 * order of their IDs (or of the column that the user sorts by) and
+	 * therefore does NOT preserve the order of the original list. If the list
+	 * order is relevant the application should either provide a query with
+	 * the corresponding sort criteria or disable the conversion. The default
+	 * value is 1000. A value of zero or less disables the query conversion.
+	 *
+	 * @param maxSize The maximum size of entity lists that will be sent to
+	 *                the client as a whole
+	 */
+	public void setMaxSelectionListSize(int maxSize) {
+		maxSelectionListSize = maxSize;
+	}
+
 	/**
 	 * Applies a list of string values by converting the values according to
 	 * the
@@ -1580,7 +1646,7 @@ public class DataElementFactory {
 		List<HierarchicalDataObject> entityObjects =
 			new ArrayList<HierarchicalDataObject>(entities.size());
 		Function<Entity, List<String>> collectValues =
-			CollectionFunctions.createStringList(false, attributes);
+			new EntityRowExtractor(attributes);
 
 		int index = 0;
 
@@ -1593,6 +1659,44 @@ public class DataElementFactory {
 		return entityObjects;
 	}
 
+	/**
+	 * Creates a query predicate that selects the entities of a list by their
+	 * IDs. This is used to replace large lists of selectable entities with a
+	 * query so that the client can retrieve them through a storage adapter.
+	 * To stay below the limit of values in an SQL IN clause of some databases
+	 * the IDs are split into multiple IN criteria that are combined with OR.
+	 *
+	 * @param definition The entity definition of the list elements
+	 * @param entities   The entities to create the query for
+	 * @return The new query predicate
+	 */
+	@SuppressWarnings("unchecked")
+	private QueryPredicate<? extends Entity> createEntityIdQuery(
+		EntityDefinition<?> definition, List<Entity> entities) {
+		int count = entities.size();
+		Predicate<Entity> isListEntity = null;
+
+		for (int i = 0; i < count; i += MAX_ID_LIST_SIZE) {
+			int end = Math.min(count, i + MAX_ID_LIST_SIZE);
+			List<Object> ids = new ArrayList<Object>(end - i);
+
+			for (Entity entity : entities.subList(i, end)) {
+				ids.add(Long.valueOf(entity.getId()));
+			}
+
+			isListEntity = Predicates.or(isListEntity,
+				(Predicate<Entity>) definition.getIdAttribute().is(
+					elementOf(ids)));
+		}
+
+		QueryPredicate<? extends Entity> query =
+			forEntity(definition.getMappedType(), isListEntity);
+
+		query.set(HIERARCHICAL_QUERY_MODE, HierarchicalQueryMode.NEVER);
+
+		return query;
+	}
+
 	/**
 	 * Creates a new data element for the selection of an entity from a list of
 	 * entities that is defined by either a storage query or a list of allowed
@@ -18,8 +18,10 @@ package de.esoco.gwt.server;
 
 import de.esoco.data.element.HierarchicalDataObject;
 import de.esoco.data.element.QueryResultElement;
+import de.esoco.data.element.QueryResultRows;
 import de.esoco.data.element.StringDataElement;
 import de.esoco.data.element.StringMapDataElement;
+import de.esoco.data.element.ValueDictionary;
 import de.esoco.data.storage.AbstractStorageAdapter;
 import de.esoco.data.storage.StorageAdapterId;
 import de.esoco.entity.Entity;
@@ -27,6 +29,7 @@ import de.esoco.entity.EntityDefinition;
 import de.esoco.entity.EntityManager;
 import de.esoco.entity.EntityRelationTypes.HierarchicalQueryMode;
 import de.esoco.gwt.shared.ServiceException;
+import de.esoco.gwt.shared.StorageService;
 import de.esoco.lib.expression.Function;
 import de.esoco.lib.expression.Predicate;
 import de.esoco.lib.expression.Predicates;
@@ -114,6 +117,8 @@ public class DatabaseStorageAdapter extends AbstractStorageAdapter {
 
 	private List<Entity> lastQueryResult;
 
+	private transient ValueDictionary valueDictionary;
+
 	/**
 	 * Creates a new instance that is associated with a certain data element
 	 * factory.
@@ -175,8 +180,19 @@ public class DatabaseStorageAdapter extends AbstractStorageAdapter {
 			int limit = queryParams.getIntProperty(QUERY_LIMIT, 0);
 			int querySize;
 
-			List<DataModel<String>> queryRows =
-				new ArrayList<DataModel<String>>();
+			// the result row list has a compact serialization format
+			QueryResultRows queryRows =
+				new QueryResultRows(Math.min(limit, 1000));
+
+			String dictionaryId =
+				queryParams.getProperty(StorageService.QUERY_DICTIONARY_ID,
+					null);
+
+			if (valueDictionary != null && dictionaryId != null) {
+				queryRows.setValueDictionary(valueDictionary, dictionaryId,
+					queryParams.getIntProperty(
+						StorageService.QUERY_DICTIONARY_SIZE, 0));
+			}
 
 			Map<String, String> constraints =
 				queryParams.getProperty(QUERY_SEARCH, null);
@@ -266,6 +282,16 @@ public class DatabaseStorageAdapter extends AbstractStorageAdapter {
 		}
 	}
 
+	/**
+	 * Sets the session dictionary that will be used to encode repeated values
+	 * of query results if requested by the client.
+	 *
+	 * @param dictionary The value dictionary or NULL for none
+	 */
+	public void setValueDictionary(ValueDictionary dictionary) {
+		valueDictionary = dictionary;
+	}
+
 	/**
 	 * Returns the query predicate.
 	 *
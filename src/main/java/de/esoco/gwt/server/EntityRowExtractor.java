@@ -0,0 +1,286 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import de.esoco.entity.Entity;
+import de.esoco.entity.EntityDefinition;
+import de.esoco.lib.expression.Function;
+import de.esoco.lib.text.TextConvert;
+import org.obrel.core.RelationType;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A function that extracts the column values of a table row from an entity.
+ * The attribute access functions of the columns are analyzed once when an
+ * instance is created. Simple entity attributes (including enums, dates, and
+ * booleans) are then read directly from the entity and converted with
+ * pre-computed values instead of evaluating the generic function chains that
+ * are created by
+ * {@link DataElementFactory#processAttributeFunction(EntityDefinition,
+ * Function, boolean)}. Only complex attribute functions like entity references
+ * or function chains will still be evaluated through the generic functions.
+ *
+ * @author eso
+ */
+public class EntityRowExtractor implements Function<Entity, List<String>> {
+
+	private final ColumnReader[] columnReaders;
+
+	/**
+	 * Creates a new instance that converts the results of arbitrary attribute
+	 * functions into strings without any further processing.
+	 *
+	 * @param attributes The attribute access functions of the columns
+	 */
+	public EntityRowExtractor(
+		List<? extends Function<? super Entity, ?>> attributes) {
+		int count = attributes.size();
+
+		columnReaders = new ColumnReader[count];
+
+		for (int i = 0; i < count; i++) {
+			Function<? super Entity, ?> getAttr = attributes.get(i);
+
+			if (getAttr instanceof RelationType) {
+				columnReaders[i] = createValueReader((RelationType<?>) getAttr);
+			} else {
+				columnReaders[i] = createFunctionReader(getAttr);
+			}
+		}
+	}
+
+	/**
+	 * Creates a new instance that converts attribute values into the display
+	 * values of table columns. The results are the same as those of the
+	 * functions returned by
+	 * {@link DataElementFactory#processAttributeFunction(EntityDefinition,
+	 * Function, boolean)}.
+	 *
+	 * @param entityDefinition The entity definition of the attributes
+	 * @param attributes       The attribute access functions of the columns
+	 * @param displayEntityIds TRUE to display entity IDs instead of string
+	 *                         descriptions for entity attributes
+	 */
+	public EntityRowExtractor(EntityDefinition<?> entityDefinition,
+		List<? extends Function<? super Entity, ?>> attributes,
+		boolean displayEntityIds) {
+		int count = attributes.size();
+
+		columnReaders = new ColumnReader[count];
+
+		for (int i = 0; i < count; i++) {
+			columnReaders[i] =
+				createColumnReader(entityDefinition, attributes.get(i),
+					displayEntityIds);
+		}
+	}
+
+	/**
+	 * Returns the number of columns that are extracted by this instance.
+	 *
+	 * @return The column count
+	 */
+	public final int getColumnCount() {
+		return columnReaders.length;
+	}
+
+	/**
+	 * Extracts the column values from an entity.
+	 *
+	 * @param entity The entity to read the values from
+	 * @return A fixed-size list containing the column values
+	 */
+	@Override
+	public List<String> evaluate(Entity entity) {
+		int count = columnReaders.length;
+		String[] row = new String[count];
+
+		for (int i = 0; i < count; i++) {
+			row[i] = columnReaders[i].read(entity);
+		}
+
+		return Arrays.asList(row);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + columnReaders.length + "]";
+	}
+
+	/**
+	 * Creates the reader for a boolean attribute that returns the item
+	 * resource IDs for the boolean values.
+	 *
+	 * @param attribute The boolean attribute
+	 * @param fallback  The fallback reader for NULL values
+	 * @return The column reader
+	 */
+	private ColumnReader createBooleanReader(RelationType<?> attribute,
+		ColumnReader fallback) {
+		String prefix = DataElementFactory.getBooleanItemPrefix(attribute);
+		String trueItem =
+			prefix + TextConvert.capitalizedIdentifier(Boolean.TRUE.toString());
+		String falseItem = prefix +
+			TextConvert.capitalizedIdentifier(Boolean.FALSE.toString());
+
+		return entity -> {
+			Object value = entity.get(attribute);
+
+			if (value == null) {
+				return fallback.read(entity);
+			} else {
+				return ((Boolean) value).booleanValue() ? trueItem : falseItem;
+			}
+		};
+	}
+
+	/**
+	 * Analyzes an attribute access function and creates the corresponding
+	 * column reader.
+	 *
+	 * @param entityDefinition The entity definition of the attribute
+	 * @param getAttr          The attribute access function
+	 * @param displayEntityIds TRUE to display entity IDs instead of entity
+	 *                         descriptions
+	 * @return The column reader
+	 */
+	private ColumnReader createColumnReader(
+		EntityDefinition<?> entityDefinition,
+		Function<? super Entity, ?> getAttr, boolean displayEntityIds) {
+		ColumnReader reader;
+
+		if (getAttr instanceof RelationType &&
+			!Entity.class.isAssignableFrom(
+				((RelationType<?>) getAttr).getTargetType())) {
+			RelationType<?> attribute = (RelationType<?>) getAttr;
+			Class<?> datatype = attribute.getTargetType();
+
+			// NULL values of enums and booleans are rare and therefore
+			// converted by the generic function
+			ColumnReader fallback = null;
+
+			if (datatype.isEnum() || datatype == Boolean.class) {
+				fallback = createFunctionReader(
+					DataElementFactory.processAttributeFunction(
+						entityDefinition, getAttr, displayEntityIds));
+			}
+
+			if (datatype.isEnum()) {
+				reader =
+					createEnumReader(entityDefinition, attribute, datatype,
+						fallback);
+			} else if (Date.class.isAssignableFrom(datatype)) {
+				reader = entity -> {
+					Date date = (Date) entity.get(attribute);
+
+					return date != null ? Long.toString(date.getTime()) : null;
+				};
+			} else if (datatype == Boolean.class) {
+				reader = createBooleanReader(attribute, fallback);
+			} else {
+				reader = createValueReader(attribute);
+			}
+		} else {
+			reader = createFunctionReader(
+				DataElementFactory.processAttributeFunction(entityDefinition,
+					getAttr, displayEntityIds));
+		}
+
+		return reader;
+	}
+
+	/**
+	 * Creates the reader for an enum attribute that returns pre-computed item
+	 * resource IDs for the enum constants.
+	 *
+	 * @param entityDefinition The entity definition of the attribute
+	 * @param attribute        The enum attribute
+	 * @param enumType         The enum datatype
+	 * @param fallback         The fallback reader for NULL values
+	 * @return The column reader
+	 */
+	private ColumnReader createEnumReader(EntityDefinition<?> entityDefinition,
+		RelationType<?> attribute, Class<?> enumType, ColumnReader fallback) {
+		String prefix = DataElementFactory.getEnumItemPrefix(entityDefinition,
+			attribute, enumType);
+		Object[] enumValues = enumType.getEnumConstants();
+		String[] enumItems = new String[enumValues.length];
+
+		for (int i = 0; i < enumValues.length; i++) {
+			enumItems[i] = prefix +
+				TextConvert.capitalizedIdentifier(enumValues[i].toString());
+		}
+
+		return entity -> {
+			Object value = entity.get(attribute);
+
+			if (value == null) {
+				return fallback.read(entity);
+			} else {
+				return enumItems[((Enum<?>) value).ordinal()];
+			}
+		};
+	}
+
+	/**
+	 * Creates a reader that evaluates an arbitrary attribute function.
+	 *
+	 * @param getAttr The attribute function
+	 * @return The column reader
+	 */
+	private ColumnReader createFunctionReader(
+		Function<? super Entity, ?> getAttr) {
+		return entity -> {
+			Object value = getAttr.evaluate(entity);
+
+			return value != null ? value.toString() : null;
+		};
+	}
+
+	/**
+	 * Creates a reader that returns the string value of a simple attribute.
+	 *
+	 * @param attribute The attribute
+	 * @return The column reader
+	 */
+	private ColumnReader createValueReader(RelationType<?> attribute) {
+		return entity -> {
+			Object value = entity.get(attribute);
+
+			return value != null ? value.toString() : null;
+		};
+	}
+
+	/**
+	 * The interface of the readers for single column values.
+	 *
+	 * @author eso
+	 */
+	private interface ColumnReader {
+
+		/**
+		 * Reads the column value from an entity.
+		 *
+		 * @param entity The entity
+		 * @return The column value string (may be NULL)
+		 */
+		String read(Entity entity);
+	}
+}
@@ -0,0 +1,97 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A {@link NotificationBus} that relays messages between the buses of the same
+ * group in the current JVM. This is intended for the testing of clustered
+ * notifications and for applications that run multiple notification services
+ * in a single process. Messages are delivered synchronously on the publishing
+ * thread which is uncritical because the notification service never blocks
+ * when queuing messages.
+ *
+ * @author eso
+ */
+public class InMemoryNotificationBus implements NotificationBus {
+
+	private static final Map<String, Set<InMemoryNotificationBus>> groups =
+		new ConcurrentHashMap<>();
+
+	private final String group;
+
+	private volatile Consumer<NotificationBusMessage> receiver;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param group The name of the group to relay messages in
+	 */
+	public InMemoryNotificationBus(String group) {
+		this.group = group;
+	}
+
+	@Override
+	public void close() {
+		groups.computeIfPresent(group, (g, buses) -> {
+			buses.remove(this);
+
+			return buses.isEmpty() ? null : buses;
+		});
+
+		receiver = null;
+	}
+
+	@Override
+	public void publish(NotificationBusMessage message) {
+		Set<InMemoryNotificationBus> buses = groups.get(group);
+
+		if (buses != null) {
+			for (InMemoryNotificationBus bus : buses) {
+				Consumer<NotificationBusMessage> busReceiver = bus.receiver;
+
+				if (bus != this && busReceiver != null) {
+					busReceiver.accept(message);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void start(Consumer<NotificationBusMessage> messageReceiver) {
+		receiver = messageReceiver;
+
+		groups.compute(group, (g, buses) -> {
+			if (buses == null) {
+				buses = ConcurrentHashMap.newKeySet();
+			}
+
+			buses.add(this);
+
+			return buses;
+		});
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[%s]", getClass().getSimpleName(), group);
+	}
+}
@@ -0,0 +1,89 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of byte buffers for the encoding of binary client notifications.
+ * Buffers up to the standard buffer size are taken from the pool and must be
+ * returned with {@link #release(ByteBuffer)} after they have been sent.
+ * Larger buffers are allocated on demand and not pooled.
+ *
+ * @author eso
+ */
+class NotificationBufferPool {
+
+	private final int bufferSize;
+
+	private final int maxPooled;
+
+	private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger pooledCount = new AtomicInteger();
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param bufferSize The size of the pooled buffers
+	 * @param maxPooled  The maximum number of buffers to keep in the pool
+	 */
+	NotificationBufferPool(int bufferSize, int maxPooled) {
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * Returns a cleared buffer with at least the given capacity.
+	 *
+	 * @param capacity The minimum buffer capacity
+	 * @return The buffer
+	 */
+	ByteBuffer acquire(int capacity) {
+		if (capacity > bufferSize) {
+			return ByteBuffer.allocate(capacity);
+		}
+
+		ByteBuffer buffer = buffers.poll();
+
+		if (buffer != null) {
+			pooledCount.decrementAndGet();
+			buffer.clear();
+		} else {
+			buffer = ByteBuffer.allocate(bufferSize);
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to this pool. Buffers that have not been acquired from
+	 * this pool or that exceed the pool size will be discarded.
+	 *
+	 * @param buffer The buffer to release
+	 */
+	void release(ByteBuffer buffer) {
+		// the pool size may be exceeded slightly by concurrent releases
+		if (buffer.capacity() == bufferSize && pooledCount.get() < maxPooled) {
+			pooledCount.incrementAndGet();
+			buffers.offer(buffer);
+		}
+	}
+}
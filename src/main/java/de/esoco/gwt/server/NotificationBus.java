@@ -0,0 +1,58 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * The service provider interface for buses that relay client notifications
+ * between the nodes of a cluster. Each {@link ClientNotificationService}
+ * publishes the notifications it sends to its local clients on the bus and
+ * delivers the notifications that it receives from the bus to its own
+ * clients. Implementations must not block the publishing thread and should
+ * apply a backpressure policy if other nodes cannot keep up.
+ *
+ * <p>Implementations don't need to filter the messages of the receiving node
+ * or duplicates because the service ignores its own and already received
+ * messages.</p>
+ *
+ * @author eso
+ */
+public interface NotificationBus {
+
+	/**
+	 * Closes this bus and releases all resources.
+	 */
+	void close();
+
+	/**
+	 * Publishes a message to the other nodes of the cluster.
+	 *
+	 * @param message The message to publish
+	 */
+	void publish(NotificationBusMessage message);
+
+	/**
+	 * Starts this bus and registers the receiver of the messages from other
+	 * nodes. The receiver may be invoked on arbitrary threads.
+	 *
+	 * @param receiver The message receiver
+	 * @throws IOException If starting the bus fails
+	 */
+	void start(Consumer<NotificationBusMessage> receiver) throws IOException;
+}
@@ -0,0 +1,245 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A client notification that is relayed between cluster nodes by a
+ * {@link NotificationBus}. Each message is identified by the ID of the node it
+ * originates from and a sequence number that is unique for that node.
+ *
+ * @author eso
+ */
+public class NotificationBusMessage {
+
+	/**
+	 * The types of notification targets.
+	 */
+	public enum Target {ALL, HTTP_SESSION, USER, TOPIC}
+
+	/**
+	 * The maximum size of the message data in bytes. Larger messages are
+	 * rejected when reading to prevent the allocation of arbitrary amounts of
+	 * memory from a corrupt or malicious input and must therefore not be
+	 * published (see {@link #getDataSize()}).
+	 */
+	public static final int MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+
+	private static final Target[] TARGETS = Target.values();
+
+	private static final int TEXT_MESSAGE = 0;
+
+	private static final int BINARY_MESSAGE = 1;
+
+	private final String originNode;
+
+	private final long sequence;
+
+	private final Target target;
+
+	private final String targetKey;
+
+	private final Object message;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param originNode The ID of the node the message originates from
+	 * @param sequence   The message sequence number of the origin node
+	 * @param target     The target type
+	 * @param targetKey  The key of the target (NULL for {@link Target#ALL})
+	 * @param message    The message (a string or a {@link BinaryNotification})
+	 */
+	public NotificationBusMessage(String originNode, long sequence,
+		Target target, String targetKey, Object message) {
+		this.originNode = originNode;
+		this.sequence = sequence;
+		this.target = target;
+		this.targetKey = targetKey;
+		this.message = message;
+	}
+
+	/**
+	 * Reads a message that has been written with {@link #write(DataOutput)}.
+	 *
+	 * @param input The input to read from
+	 * @return The message
+	 * @throws IOException If reading fails or the input contains invalid data
+	 */
+	public static NotificationBusMessage read(DataInput input)
+		throws IOException {
+		String originNode = input.readUTF();
+		long sequence = input.readLong();
+		int targetOrdinal = input.readUnsignedByte();
+
+		if (targetOrdinal >= TARGETS.length) {
+			throw new IOException("Invalid message target: " + targetOrdinal);
+		}
+
+		Target target = TARGETS[targetOrdinal];
+		String targetKey = input.readBoolean() ? input.readUTF() : null;
+		int messageType = input.readUnsignedByte();
+		Object message;
+
+		if (messageType == BINARY_MESSAGE) {
+			int type = input.readUnsignedByte();
+			String path = input.readUTF();
+
+			message = new BinaryNotification(type, path, readBytes(input));
+		} else if (messageType == TEXT_MESSAGE) {
+			message = new String(readBytes(input), StandardCharsets.UTF_8);
+		} else {
+			throw new IOException("Invalid message type: " + messageType);
+		}
+
+		return new NotificationBusMessage(originNode, sequence, target,
+			targetKey, message);
+	}
+
+	/**
+	 * Reads a length-prefixed byte array.
+	 *
+	 * @param input The input to read from
+	 * @return The bytes
+	 * @throws IOException If reading fails or the length is invalid
+	 */
+	private static byte[] readBytes(DataInput input) throws IOException {
+		int length = input.readInt();
+
+		if (length < 0 || length > MAX_MESSAGE_SIZE) {
+			throw new IOException("Invalid message size: " + length);
+		}
+
+		byte[] bytes = new byte[length];
+
+		input.readFully(bytes);
+
+		return bytes;
+	}
+
+	/**
+	 * Returns the size of the message data (the text or binary payload) in
+	 * bytes.
+	 *
+	 * @return The data size
+	 */
+	public int getDataSize() {
+		if (message instanceof BinaryNotification) {
+			return ((BinaryNotification) message).getPayload().length;
+		} else {
+			return ((String) message).getBytes(StandardCharsets.UTF_8).length;
+		}
+	}
+
+	/**
+	 * Returns the unique ID of this message.
+	 *
+	 * @return The message ID
+	 */
+	public String getId() {
+		return originNode + ':' + sequence;
+	}
+
+	/**
+	 * Returns the message.
+	 *
+	 * @return The message (a string or a {@link BinaryNotification})
+	 */
+	public final Object getMessage() {
+		return message;
+	}
+
+	/**
+	 * Returns the ID of the node this message originates from.
+	 *
+	 * @return The origin node ID
+	 */
+	public final String getOriginNode() {
+		return originNode;
+	}
+
+	/**
+	 * Returns the message sequence number of the origin node.
+	 *
+	 * @return The sequence number
+	 */
+	public final long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns the target type.
+	 *
+	 * @return The target type
+	 */
+	public final Target getTarget() {
+		return target;
+	}
+
+	/**
+	 * Returns the key of the target.
+	 *
+	 * @return The target key (NULL for {@link Target#ALL})
+	 */
+	public final String getTargetKey() {
+		return targetKey;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[%s, %s, %s]", getClass().getSimpleName(),
+			getId(), target, targetKey);
+	}
+
+	/**
+	 * Writes this message to a data output.
+	 *
+	 * @param output The output to write to
+	 * @throws IOException If writing fails
+	 */
+	public void write(DataOutput output) throws IOException {
+		output.writeUTF(originNode);
+		output.writeLong(sequence);
+		output.writeByte(target.ordinal());
+		output.writeBoolean(targetKey != null);
+
+		if (targetKey != null) {
+			output.writeUTF(targetKey);
+		}
+
+		if (message instanceof BinaryNotification) {
+			BinaryNotification notification = (BinaryNotification) message;
+			byte[] payload = notification.getPayload();
+
+			output.writeByte(BINARY_MESSAGE);
+			output.writeByte(notification.getType());
+			output.writeUTF(notification.getTargetPath());
+			output.writeInt(payload.length);
+			output.write(payload);
+		} else {
+			byte[] text = ((String) message).getBytes(StandardCharsets.UTF_8);
+
+			output.writeByte(TEXT_MESSAGE);
+			output.writeInt(text.length);
+			output.write(text);
+		}
+	}
+}
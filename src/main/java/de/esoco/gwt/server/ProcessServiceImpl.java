@@ -55,11 +55,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.servlet.http.HttpSession;
 
 import org.obrel.core.ObjectRelations;
 import org.obrel.core.Relatable;
@@ -101,7 +106,9 @@ import static de.esoco.process.ProcessRelationTypes.REQUIRED_PROCESS_INPUT_PARAM
 import static de.esoco.process.ProcessRelationTypes.SPAWN_PROCESSES;
 import static de.esoco.process.ProcessRelationTypes.VIEW_PARAMS;
 
+import static org.obrel.core.RelationTypes.newFlagType;
 import static org.obrel.core.RelationTypes.newMapType;
+import static org.obrel.core.RelationTypes.newType;
 import static org.obrel.type.StandardTypes.DESCRIPTION;
 import static org.obrel.type.StandardTypes.NAME;
 
@@ -114,8 +121,29 @@ import static org.obrel.type.StandardTypes.NAME;
 public abstract class ProcessServiceImpl<E extends Entity>
 	extends StorageServiceImpl<E> implements ProcessService, ProcessExecutor {
 
+	/**
+	 * A flag for interaction steps with {@link ProcessRelationTypes#AUTO_UPDATE}
+	 * or {@link ProcessRelationTypes#AUTO_CONTINUE} that indicates that the
+	 * step publishes changes of its state by invoking
+	 * {@link #notifyProcessUpdate(Process)} (e.g. from a background thread).
+	 * If a client notification service has been registered and the client is
+	 * connected to it the client will then only re-execute the process after
+	 * receiving an update notification instead of polling continuously.
+	 */
+	public static final RelationType<Boolean> PUSH_PROCESS_UPDATES =
+		newFlagType();
+
 	private static final long serialVersionUID = 1L;
 
+	// the ID of the HTTP session a process has been created in
+	private static final RelationType<String> PROCESS_HTTP_SESSION_ID =
+		newType();
+
+	// the global IDs of the entities for which lock notifications have been
+	// sent by a process
+	private static final RelationType<Set<String>> PROCESS_NOTIFIED_LOCKS =
+		newType();
+
 	/**
 	 * The process map will be stored in the {@link SessionData} object for a
 	 * user's session.
@@ -125,8 +153,17 @@ public abstract class ProcessServiceImpl<E extends Entity>
 
 	private static Locale defaultLocale = Locale.ENGLISH;
 
-	private static List<ProcessDefinition> processDefinitions =
-		new ArrayList<ProcessDefinition>();
+	private static ClientNotificationService processNotificationService =
+		null;
+
+	private static final List<PreparedDefinition> preparedDefinitions =
+		new CopyOnWriteArrayList<PreparedDefinition>();
+
+	private static final Map<Class<? extends ProcessDefinition>,
+		PreparedDefinition>
+		preparedDefinitionMap =
+		new ConcurrentHashMap<Class<? extends ProcessDefinition>,
+			PreparedDefinition>();
 
 	static {
 		RelationTypes.init(ProcessServiceImpl.class);
@@ -169,34 +206,22 @@ public abstract class ProcessServiceImpl<E extends Entity>
 	protected static ProcessDescription createProcessDescriptions(
 		Class<? extends ProcessDefinition> defClass,
 		List<ProcessDescription> descriptionList) {
-		ProcessDefinition definition =
-			ProcessManager.getProcessDefinition(defClass);
-
-		int index = processDefinitions.indexOf(definition);
-
-		if (index < 0) {
-			index = processDefinitions.size();
-			processDefinitions.add(definition);
-		}
+		PreparedDefinition prepared = prepareDefinition(defClass);
 
-		boolean inputRequired =
-			definition.hasRelation(REQUIRED_PROCESS_INPUT_PARAMS);
-
-		if (!inputRequired &&
-			definition.get(OPTIONAL_PROCESS_INPUT_PARAMS).size() > 0 &&
+		if (!prepared.inputRequired && prepared.hasOptionalInput &&
 			descriptionList != null) {
 			// create a special edit process description with the same ID (!)
 			// that will be invoked if a selection is available
 			ProcessDescription description =
-				new ProcessDescription(definition.get(NAME) + "Edit",
-					definition.get(DESCRIPTION), index, true);
+				new ProcessDescription(prepared.name + "Edit",
+					prepared.description, prepared.index, true);
 
 			descriptionList.add(description);
 		}
 
 		ProcessDescription description =
-			new ProcessDescription(definition.get(NAME),
-				definition.get(DESCRIPTION), index, inputRequired);
+			new ProcessDescription(prepared.name, prepared.description,
+				prepared.index, prepared.inputRequired);
 
 		if (descriptionList != null) {
 			descriptionList.add(description);
@@ -205,6 +230,51 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		return description;
 	}
 
+	/**
+	 * Notifies the client of a process that the process state has changed. The
+	 * notification is only sent if a notification service has been set with
+	 * {@link #setProcessNotificationService(ClientNotificationService)}. This
+	 * method is intended to be invoked by process steps that are flagged with
+	 * {@link #PUSH_PROCESS_UPDATES}.
+	 *
+	 * @param process The process that has changed
+	 */
+	public static void notifyProcessUpdate(Process process) {
+		ClientNotificationService service = processNotificationService;
+		String httpSessionId = process.get(PROCESS_HTTP_SESSION_ID);
+
+		if (service != null && httpSessionId != null) {
+			service.notifyClient(httpSessionId,
+				PROCESS_UPDATE_NOTIFICATION + process.getParameter(PROCESS_ID));
+		}
+	}
+
+	/**
+	 * Notifies the clients that are subscribed to the lock topics of certain
+	 * entities of lock state changes. The notification is only sent if a
+	 * notification service has been set with
+	 * {@link #setProcessNotificationService(ClientNotificationService)}.
+	 *
+	 * @param globalIds The global IDs of the entities
+	 * @param locked    TRUE if the entities have been locked, FALSE if they
+	 *                  have been unlocked
+	 */
+	public static void notifyEntityLocks(Collection<String> globalIds,
+		boolean locked) {
+		ClientNotificationService service = processNotificationService;
+
+		if (service != null) {
+			String notification = locked ?
+			                      ENTITY_LOCKED_NOTIFICATION :
+			                      ENTITY_UNLOCKED_NOTIFICATION;
+
+			for (String globalId : globalIds) {
+				service.notifyTopic(ENTITY_LOCK_TOPIC + globalId,
+					notification + globalId);
+			}
+		}
+	}
+
 	/**
 	 * Sets the default locale to be used if the client locale cannot be
 	 * determined.
@@ -215,6 +285,69 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		defaultLocale = locale;
 	}
 
+	/**
+	 * Sets the client notification service that will be used to push process
+	 * updates to clients. If not set clients will poll automatically
+	 * continuing processes.
+	 *
+	 * @param service The notification service or NULL to disable process
+	 *                update notifications
+	 */
+	public static void setProcessNotificationService(
+		ClientNotificationService service) {
+		processNotificationService = service;
+	}
+
+	/**
+	 * Returns the prepared process definition for a certain description ID.
+	 *
+	 * @param id The description ID
+	 * @return The prepared definition
+	 * @throws IllegalArgumentException If the ID is invalid
+	 */
+	private static PreparedDefinition getPreparedDefinition(int id) {
+		if (id < 0 || id >= preparedDefinitions.size()) {
+			throw new IllegalArgumentException(
+				"Invalid process description ID: " + id);
+		}
+
+		return preparedDefinitions.get(id);
+	}
+
+	/**
+	 * Returns the prepared definition for a certain process definition class.
+	 * The definition will be looked up and analyzed on the first invocation
+	 * for a class and cached for all subsequent invocations. Only the
+	 * registration of a new definition is synchronized, lookups of registered
+	 * definitions don't acquire a lock.
+	 *
+	 * @param defClass The process definition class
+	 * @return The prepared definition
+	 */
+	private static PreparedDefinition prepareDefinition(
+		Class<? extends ProcessDefinition> defClass) {
+		PreparedDefinition prepared = preparedDefinitionMap.get(defClass);
+
+		if (prepared == null) {
+			synchronized (preparedDefinitions) {
+				prepared = preparedDefinitionMap.get(defClass);
+
+				if (prepared == null) {
+					prepared = new PreparedDefinition(
+						ProcessManager.getProcessDefinition(defClass),
+						preparedDefinitions.size());
+
+					// add to the list first so that the index is valid when
+					// the definition becomes visible through the map
+					preparedDefinitions.add(prepared);
+					preparedDefinitionMap.put(defClass, prepared);
+				}
+			}
+		}
+
+		return prepared;
+	}
+
 	@Override
 	public ProcessState executeProcess(ProcessDescription description,
 		Relatable initParams) throws AuthenticationException,
@@ -284,6 +417,7 @@ public abstract class ProcessServiceImpl<E extends Entity>
 			processState = createProcessState(description, process, refresh);
 
 			if (process.isFinished()) {
+				releaseEntityLocks(process);
 				processList.remove(process);
 				processMap.remove(id);
 			}
@@ -305,6 +439,7 @@ public abstract class ProcessServiceImpl<E extends Entity>
 			// keep the process on recoverable error for re-execution when the
 			// client has tried to resolve the error condition
 			if (!service.isRecoverable() && process != null) {
+				releaseEntityLocks(process);
 				processList.remove(process);
 				processMap.remove(id);
 			}
@@ -328,6 +463,23 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		return executeProcess(description, null);
 	}
 
+	/**
+	 * Overridden to remove the user from the client notification connections
+	 * of the session.
+	 *
+	 * @see AuthenticatedServiceImpl#removeSession(HttpSession)
+	 */
+	@Override
+	public void removeSession(HttpSession session) {
+		ClientNotificationService service = processNotificationService;
+
+		if (service != null) {
+			service.setSessionUser(session.getId(), null);
+		}
+
+		super.removeSession(session);
+	}
+
 	/**
 	 * Cancels all processes that are active in the given session.
 	 *
@@ -340,6 +492,7 @@ public abstract class ProcessServiceImpl<E extends Entity>
 
 		for (Process process : processMap.values()) {
 			process.execute(ProcessExecutionMode.CANCEL);
+			releaseEntityLocks(process);
 			processList.remove(process);
 		}
 
@@ -385,6 +538,17 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		process.execute(mode);
 	}
 
+	/**
+	 * Returns the data element factory of this service. Subclasses can use it
+	 * to configure the creation of data elements, e.g. with
+	 * {@link DataElementFactory#setMaxSelectionListSize(int)}.
+	 *
+	 * @return The data element factory
+	 */
+	protected final DataElementFactory getDataElementFactory() {
+		return dataElementFactory;
+	}
+
 	/**
 	 * Indicates whether the application authentication is done by the (main)
 	 * application process or by the client side UI. The standard value if
@@ -421,6 +585,26 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		}
 	}
 
+	/**
+	 * Overridden to set the user of the client notification connections that
+	 * have been opened from the session before the login.
+	 *
+	 * @see AuthenticatedServiceImpl#initUserData(DataElementList, Entity,
+	 * String)
+	 */
+	@Override
+	protected void initUserData(DataElementList userData, E user,
+		String loginName) throws ServiceException {
+		ClientNotificationService service = processNotificationService;
+
+		super.initUserData(userData, user, loginName);
+
+		if (service != null) {
+			service.setSessionUser(
+				getThreadLocalRequest().getSession().getId(), loginName);
+		}
+	}
+
 	/**
 	 * Overridden to cancel any processes that remained active in the given
 	 * session when the user closed the browser window.
@@ -502,6 +686,37 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		return result;
 	}
 
+	/**
+	 * Applies the global IDs of the entities that are displayed by the
+	 * parameters of an interaction step to the given process state. Entities
+	 * that are modified by the process itself are omitted because their locks
+	 * are held by the process.
+	 *
+	 * @param process         The process
+	 * @param interactionStep The current interaction step
+	 * @param processState    The process state to apply the entities to
+	 */
+	private void applyDisplayedEntities(Process process,
+		ProcessFragment interactionStep, ProcessState processState) {
+		Set<String> entityIds = new LinkedHashSet<>();
+		Set<RelationType<?>> visited = new HashSet<>();
+
+		collectDisplayedEntities(interactionStep,
+			interactionStep.get(INTERACTION_PARAMS), entityIds, visited);
+		collectDisplayedEntities(interactionStep,
+			interactionStep.get(VIEW_PARAMS), entityIds, visited);
+
+		for (Entity modifiedEntity :
+			process.get(CONTEXT_MODIFIED_ENTITIES).values()) {
+			entityIds.remove(modifiedEntity.getGlobalId());
+		}
+
+		if (!entityIds.isEmpty()) {
+			processState.setProperty(PROCESS_DISPLAYED_ENTITIES,
+				String.join(",", entityIds));
+		}
+	}
+
 	/**
 	 * Applies the list of modified entities in a process to the given process
 	 * state.
@@ -566,6 +781,43 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		return process;
 	}
 
+	/**
+	 * Collects the global IDs of the entities that are stored in certain
+	 * parameters of a process fragment. Parameters that contain a list of
+	 * other parameters (like sub-panels) are processed recursively. Lists of
+	 * entities are ignored because they are typically displayed for
+	 * selection and not for editing.
+	 *
+	 * @param fragment  The process fragment to read the parameters from
+	 * @param params    The parameters to collect the entities of
+	 * @param entityIds The set to add the entity IDs to
+	 * @param visited   The parameters that have already been visited
+	 */
+	private void collectDisplayedEntities(ProcessFragment fragment,
+		Collection<? extends RelationType<?>> params, Set<String> entityIds,
+		Set<RelationType<?>> visited) {
+		for (RelationType<?> param : params) {
+			if (visited.add(param)) {
+				Object value = fragment.getParameter(param);
+
+				if (value instanceof Entity) {
+					entityIds.add(((Entity) value).getGlobalId());
+				} else if (value instanceof Collection) {
+					List<RelationType<?>> subParams = new ArrayList<>();
+
+					for (Object element : (Collection<?>) value) {
+						if (element instanceof RelationType) {
+							subParams.add((RelationType<?>) element);
+						}
+					}
+
+					collectDisplayedEntities(fragment, subParams, entityIds,
+						visited);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Collects all modified data element from a hierarchy of data elements. If
 	 * a data element list is modified it will be added to the target
@@ -653,6 +905,11 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		SessionData sessionData) throws ProcessException {
 		Process process = ProcessManager.getProcess(definition);
 		Entity user = sessionData.get(SessionData.SESSION_USER);
+		HttpSession httpSession = getThreadLocalRequest().getSession(false);
+
+		if (httpSession != null) {
+			process.set(PROCESS_HTTP_SESSION_ID, httpSession.getId());
+		}
 
 		process.setParameter(SESSION_MANAGER, this);
 		process.setParameter(EXTERNAL_SERVICE_ACCESS, this);
@@ -710,13 +967,23 @@ public abstract class ProcessServiceImpl<E extends Entity>
 				processState.setFlag(PROCESS_AUTHENTICATED);
 			}
 
+			if (processState.isAutoContinue() &&
+				isProcessUpdatePushAvailable(process, interactionStep)) {
+				processState.setFlag(PROCESS_UPDATE_PUSH);
+			}
+
 			String style = interactionStep.getParameter(PROCESS_STEP_STYLE);
 
 			if (style != null) {
 				processState.setProperty(UserInterfaceProperties.STYLE, style);
 			}
 
-			applyModifiedEntities(process, processState);
+			if (processNotificationService != null) {
+				updateEntityLocks(process);
+				applyDisplayedEntities(process, interactionStep, processState);
+			} else {
+				applyModifiedEntities(process, processState);
+			}
 
 			// reset modifications after applying to also reset changes from
 			// parameter relation listeners that are invoked during application
@@ -761,15 +1028,6 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		return viewElements;
 	}
 
-	/**
-	 * Returns the data element factory of this service.
-	 *
-	 * @return The data element factory
-	 */
-	private final DataElementFactory getDataElementFactory() {
-		return dataElementFactory;
-	}
-
 	/**
 	 * Returns the process that is associated with a certain process
 	 * description
@@ -809,7 +1067,8 @@ public abstract class ProcessServiceImpl<E extends Entity>
 				process.set(INTERACTION_EVENT_PARAM, RELOAD_CURRENT_STEP);
 			} else {
 				ProcessDefinition definition =
-					processDefinitions.get(description.getDescriptionId());
+					getPreparedDefinition(description.getDescriptionId())
+						.definition;
 
 				process = createProcess(definition, sessionData);
 
@@ -897,6 +1156,24 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		return spawnProcesses;
 	}
 
+	/**
+	 * Checks whether process updates of a process can be pushed to the client
+	 * instead of being polled by the client.
+	 *
+	 * @param process         The process
+	 * @param interactionStep The current interaction step
+	 * @return TRUE if process updates will be pushed to the client
+	 */
+	private boolean isProcessUpdatePushAvailable(Process process,
+		ProcessStep interactionStep) {
+		ClientNotificationService service = processNotificationService;
+		String httpSessionId = process.get(PROCESS_HTTP_SESSION_ID);
+
+		return service != null && httpSessionId != null &&
+			interactionStep.hasFlag(PUSH_PROCESS_UPDATES) &&
+			service.hasClient(httpSessionId);
+	}
+
 	/**
 	 * Searches all modified elements in a hierarchy of data elements. If a
 	 * data
@@ -916,6 +1193,21 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		return modifiedElements;
 	}
 
+	/**
+	 * Sends unlock notifications for all entities for which lock notifications
+	 * have been sent by a process. Must be invoked when a process is removed.
+	 *
+	 * @param process The process
+	 */
+	private void releaseEntityLocks(Process process) {
+		Set<String> notifiedLocks = process.get(PROCESS_NOTIFIED_LOCKS);
+
+		if (notifiedLocks != null && !notifiedLocks.isEmpty()) {
+			notifyEntityLocks(notifiedLocks, false);
+			notifiedLocks.clear();
+		}
+	}
+
 	/**
 	 * Sets properties of the current client (e.g. info, locale) as process
 	 * parameters.
@@ -972,6 +1264,52 @@ public abstract class ProcessServiceImpl<E extends Entity>
 		}
 	}
 
+	/**
+	 * Updates the lock notifications for the entities that have been
+	 * modified by a process. Lock notifications are sent for newly modified
+	 * entities and unlock notifications for entities that are no longer
+	 * modified since the last update.
+	 *
+	 * @param process The process
+	 */
+	private void updateEntityLocks(Process process) {
+		Map<String, Entity> modifiedEntities =
+			process.get(CONTEXT_MODIFIED_ENTITIES);
+
+		Set<String> notifiedLocks = process.get(PROCESS_NOTIFIED_LOCKS);
+		Set<String> currentLocks = new HashSet<>();
+
+		for (Entity lockedEntity : modifiedEntities.values()) {
+			if (!lockedEntity.hasFlag(MetaTypes.LOCKED)) {
+				currentLocks.add(lockedEntity.getGlobalId());
+			}
+		}
+
+		if (notifiedLocks == null) {
+			if (currentLocks.isEmpty()) {
+				return;
+			}
+
+			notifiedLocks = new HashSet<>();
+			process.set(PROCESS_NOTIFIED_LOCKS, notifiedLocks);
+		}
+
+		Set<String> released = new HashSet<>(notifiedLocks);
+
+		released.removeAll(currentLocks);
+		currentLocks.removeAll(notifiedLocks);
+
+		if (!released.isEmpty()) {
+			notifyEntityLocks(released, false);
+			notifiedLocks.removeAll(released);
+		}
+
+		if (!currentLocks.isEmpty()) {
+			notifyEntityLocks(currentLocks, true);
+			notifiedLocks.addAll(currentLocks);
+		}
+	}
+
 	/**
 	 * Updates a process from a certain process state that has been received
 	 * from the client.
@@ -1033,4 +1371,48 @@ public abstract class ProcessServiceImpl<E extends Entity>
 
 		process.setParameter(INTERACTION_EVENT_PARAM, interactionParam);
 	}
+
+	/**
+	 * Contains a process definition together with the information that is
+	 * derived from it for the creation of process descriptions. Instances are
+	 * created once per definition class and then shared by all sessions. This
+	 * only avoids the repeated lookup of the definition and of its description
+	 * data. A new process instance is still created by the process framework
+	 * for each process launch.
+	 *
+	 * @author eso
+	 */
+	private static class PreparedDefinition {
+
+		final ProcessDefinition definition;
+
+		final int index;
+
+		final String name;
+
+		final String description;
+
+		final boolean inputRequired;
+
+		final boolean hasOptionalInput;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param definition The process definition
+		 * @param index      The index of the definition that is used as the
+		 *                   ID of process descriptions
+		 */
+		PreparedDefinition(ProcessDefinition definition, int index) {
+			this.definition = definition;
+			this.index = index;
+
+			name = definition.get(NAME);
+			description = definition.get(DESCRIPTION);
+			inputRequired =
+				definition.hasRelation(REQUIRED_PROCESS_INPUT_PARAMS);
+			hasOptionalInput =
+				definition.get(OPTIONAL_PROCESS_INPUT_PARAMS).size() > 0;
+		}
+	}
 }
@@ -0,0 +1,511 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import de.esoco.gwt.shared.ServiceOverloadException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Controls the admission of command requests to a {@link CommandServiceImpl}
+ * so that a single client session cannot starve other sessions. Requests are
+ * subject to the following limits:
+ *
+ * <ul>
+ *   <li>A maximum number of concurrent requests per session and optionally
+ *     per command in a session.</li>
+ *   <li>A token bucket rate limit per session.</li>
+ *   <li>A maximum number of concurrently executing requests over all
+ *     sessions. If that is reached requests wait in per-session queues that
+ *     are served in a weighted round-robin order so that each session gets a
+ *     fair share of the execution slots.</li>
+ * </ul>
+ *
+ * <p>Requests that exceed a limit or that cannot be executed within the
+ * maximum queue wait time are rejected with a recoverable
+ * {@link ServiceOverloadException} which the client can retry. The numbers of
+ * admitted and rejected requests are available as metrics.</p>
+ *
+ * <p>The limits should be configured before the instance is set on a service
+ * with {@link CommandServiceImpl#setRequestAdmission(RequestAdmission)}.</p>
+ *
+ * @author eso
+ */
+public class RequestAdmission {
+
+	private static final int PRUNE_INTERVAL = 1000;
+
+	private final Map<String, SessionState> sessions = new HashMap<>();
+
+	private final Deque<SessionState> waitingSessions = new ArrayDeque<>();
+
+	private final Map<String, Integer> commandLimits = new HashMap<>();
+
+	private final AtomicLong admittedRequests = new AtomicLong();
+
+	private final AtomicLong concurrencyRejections = new AtomicLong();
+
+	private final AtomicLong rateRejections = new AtomicLong();
+
+	private final AtomicLong queueRejections = new AtomicLong();
+
+	private int maxSessionRequests = 4;
+
+	private int maxActiveRequests = 0;
+
+	private double requestRate = 0;
+
+	private double requestBurst = 1;
+
+	private long maxQueueWait = 10000;
+
+	private ToIntFunction<String> sessionWeights = null;
+
+	private int activeRequests = 0;
+
+	private int admissionsSincePrune = 0;
+
+	/**
+	 * Admits the execution of a command for a session. If the execution has
+	 * to wait for a free execution slot this method blocks until the request
+	 * is admitted or the maximum wait time has been reached. The returned
+	 * ticket must be released after the command execution.
+	 *
+	 * @param sessionId The ID of the requesting session
+	 * @param command   The name of the command
+	 * @return The admission ticket
+	 * @throws ServiceOverloadException If the request has been rejected
+	 */
+	public synchronized Ticket admit(String sessionId, String command)
+		throws ServiceOverloadException {
+		SessionState session = getSessionState(sessionId);
+		Integer commandLimit = commandLimits.get(command);
+		int commandRequests = session.getCommandRequests(command);
+
+		session.refillTokens(requestRate, requestBurst);
+
+		if (session.requests >= maxSessionRequests ||
+			(commandLimit != null && commandRequests >= commandLimit)) {
+			concurrencyRejections.incrementAndGet();
+
+			throw new ServiceOverloadException("TooManyConcurrentRequests",
+				500);
+		}
+
+		if (requestRate > 0 && session.tokens < 1) {
+			rateRejections.incrementAndGet();
+
+			throw new ServiceOverloadException("RequestRateExceeded",
+				(int) Math.ceil((1 - session.tokens) / requestRate * 1000));
+		}
+
+		if (requestRate > 0) {
+			session.tokens -= 1;
+		}
+
+		session.requests++;
+		session.commandRequests.put(command, commandRequests + 1);
+
+		if (maxActiveRequests > 0 &&
+			(activeRequests >= maxActiveRequests ||
+				!waitingSessions.isEmpty())) {
+			awaitExecutionSlot(session, command);
+		} else {
+			activeRequests++;
+		}
+
+		admittedRequests.incrementAndGet();
+
+		return new Ticket(session, command);
+	}
+
+	/**
+	 * Returns the number of requests that have been admitted.
+	 *
+	 * @return The admitted request count
+	 */
+	public long getAdmittedRequestCount() {
+		return admittedRequests.get();
+	}
+
+	/**
+	 * Returns the number of requests that have been rejected because of the
+	 * concurrency limits of a session.
+	 *
+	 * @return The concurrency rejection count
+	 */
+	public long getConcurrencyRejectionCount() {
+		return concurrencyRejections.get();
+	}
+
+	/**
+	 * Returns the number of requests that have been rejected because they
+	 * could not be executed within the maximum queue wait time.
+	 *
+	 * @return The queue rejection count
+	 */
+	public long getQueueRejectionCount() {
+		return queueRejections.get();
+	}
+
+	/**
+	 * Returns the number of requests that have been rejected because of the
+	 * rate limit of a session.
+	 *
+	 * @return The rate rejection count
+	 */
+	public long getRateRejectionCount() {
+		return rateRejections.get();
+	}
+
+	/**
+	 * Sets the maximum number of concurrently executing requests over all
+	 * sessions. The default is zero for no limit.
+	 *
+	 * @param maxRequests The maximum number of active requests or zero for no
+	 *                    limit
+	 * @param maxWait     The maximum time in milliseconds a request waits for
+	 *                    execution before it is rejected
+	 */
+	public synchronized void setActiveRequestLimit(int maxRequests,
+		long maxWait) {
+		maxActiveRequests = Math.max(0, maxRequests);
+		maxQueueWait = maxWait;
+		dispatchWaitingRequests();
+	}
+
+	/**
+	 * Sets the maximum number of concurrent requests of a session for a
+	 * certain command.
+	 *
+	 * @param command     The command name
+	 * @param maxRequests The maximum number of concurrent requests or zero to
+	 *                    remove the limit
+	 */
+	public synchronized void setCommandLimit(String command, int maxRequests) {
+		if (maxRequests > 0) {
+			commandLimits.put(command, maxRequests);
+		} else {
+			commandLimits.remove(command);
+		}
+	}
+
+	/**
+	 * Sets the token bucket rate limit of sessions. The default is zero for no
+	 * rate limit.
+	 *
+	 * @param requestsPerSecond The rate at which tokens are added to the bucket
+	 *                          of a session or zero for no rate limit
+	 * @param burst             The maximum number of tokens in a bucket
+	 */
+	public synchronized void setRateLimit(double requestsPerSecond,
+		int burst) {
+		requestRate = Math.max(0, requestsPerSecond);
+		requestBurst = Math.max(1, burst);
+	}
+
+	/**
+	 * Sets the maximum number of concurrent (executing or waiting) requests
+	 * per session. The default is 4.
+	 *
+	 * @param maxRequests The maximum number of concurrent session requests
+	 */
+	public synchronized void setSessionLimit(int maxRequests) {
+		if (maxRequests <= 0) {
+			throw new IllegalArgumentException("Session limit must be > 0");
+		}
+
+		maxSessionRequests = maxRequests;
+	}
+
+	/**
+	 * Sets a function that returns the weights of sessions for the fair
+	 * queuing of waiting requests. A session with weight N can execute N
+	 * waiting requests before the next session is served. If not set all
+	 * sessions have the weight 1.
+	 *
+	 * @param weights A function that maps session IDs to weights or NULL for
+	 *                equal weights
+	 */
+	public synchronized void setSessionWeights(ToIntFunction<String> weights) {
+		sessionWeights = weights;
+	}
+
+	/**
+	 * Blocks until a waiting request has been granted an execution slot or
+	 * the maximum wait time has been reached. Must be invoked while
+	 * synchronized on this instance.
+	 *
+	 * @param session The session state
+	 * @param command The command name
+	 * @throws ServiceOverloadException If the wait time has been exceeded
+	 */
+	private void awaitExecutionSlot(SessionState session, String command)
+		throws ServiceOverloadException {
+		Waiter waiter = new Waiter();
+		long deadline = System.currentTimeMillis() + maxQueueWait;
+
+		if (session.waiters.isEmpty()) {
+			waitingSessions.addLast(session);
+		}
+
+		session.waiters.addLast(waiter);
+		dispatchWaitingRequests();
+
+		try {
+			while (!waiter.granted) {
+				long wait = deadline - System.currentTimeMillis();
+
+				if (wait <= 0) {
+					break;
+				}
+
+				wait(wait);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (!waiter.granted) {
+			session.waiters.remove(waiter);
+
+			if (session.waiters.isEmpty()) {
+				waitingSessions.remove(session);
+			}
+
+			release(session, command, false);
+			queueRejections.incrementAndGet();
+
+			throw new ServiceOverloadException("ServerBusy", 1000);
+		}
+	}
+
+	/**
+	 * Grants execution slots to waiting requests in a weighted round-robin
+	 * order of the waiting sessions. Must be invoked while synchronized on
+	 * this instance.
+	 */
+	private void dispatchWaitingRequests() {
+		boolean granted = false;
+
+		while (!waitingSessions.isEmpty() &&
+			(maxActiveRequests == 0 || activeRequests < maxActiveRequests)) {
+			SessionState session = waitingSessions.peekFirst();
+
+			session.waiters.pollFirst().granted = true;
+			activeRequests++;
+			granted = true;
+
+			if (session.waiters.isEmpty()) {
+				waitingSessions.pollFirst();
+				session.turnGrants = 0;
+			} else if (++session.turnGrants >= getWeight(session)) {
+				waitingSessions.addLast(waitingSessions.pollFirst());
+				session.turnGrants = 0;
+			}
+		}
+
+		if (granted) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the state of a session and creates it if necessary.
+	 *
+	 * @param sessionId The session ID
+	 * @return The session state
+	 */
+	private SessionState getSessionState(String sessionId) {
+		if (++admissionsSincePrune >= PRUNE_INTERVAL) {
+			pruneIdleSessions();
+		}
+
+		SessionState session = sessions.get(sessionId);
+
+		if (session == null) {
+			session = new SessionState(sessionId, requestBurst);
+			sessions.put(sessionId, session);
+		}
+
+		return session;
+	}
+
+	/**
+	 * Returns the fair queuing weight of a session.
+	 *
+	 * @param session The session state
+	 * @return The weight (at least 1)
+	 */
+	private int getWeight(SessionState session) {
+		return sessionWeights != null ?
+		       Math.max(1, sessionWeights.applyAsInt(session.id)) :
+		       1;
+	}
+
+	/**
+	 * Removes the states of sessions that have no active requests and a full
+	 * token bucket.
+	 */
+	private void pruneIdleSessions() {
+		Iterator<SessionState> states = sessions.values().iterator();
+
+		admissionsSincePrune = 0;
+
+		while (states.hasNext()) {
+			SessionState session = states.next();
+
+			session.refillTokens(requestRate, requestBurst);
+
+			if (session.requests == 0 && session.tokens >= requestBurst) {
+				states.remove();
+			}
+		}
+	}
+
+	/**
+	 * Releases a request of a session.
+	 *
+	 * @param session The session state
+	 * @param command The command name
+	 * @param active  TRUE if the request had an execution slot
+	 */
+	private synchronized void release(SessionState session, String command,
+		boolean active) {
+		session.requests--;
+		session.commandRequests.put(command,
+			session.getCommandRequests(command) - 1);
+
+		if (active) {
+			activeRequests--;
+			dispatchWaitingRequests();
+		}
+	}
+
+	/**
+	 * The admission ticket of a request. Must be released after the request
+	 * has been executed.
+	 *
+	 * @author eso
+	 */
+	public class Ticket {
+
+		private final SessionState session;
+
+		private final String command;
+
+		private boolean released = false;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param session The session state
+		 * @param command The command name
+		 */
+		Ticket(SessionState session, String command) {
+			this.session = session;
+			this.command = command;
+		}
+
+		/**
+		 * Releases this ticket. Has no effect if invoked repeatedly.
+		 */
+		public void release() {
+			synchronized (RequestAdmission.this) {
+				if (!released) {
+					released = true;
+					RequestAdmission.this.release(session, command, true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The admission state of a session. All fields are guarded by the
+	 * enclosing instance.
+	 *
+	 * @author eso
+	 */
+	private static class SessionState {
+
+		final String id;
+
+		final Map<String, Integer> commandRequests = new HashMap<>();
+
+		final Deque<Waiter> waiters = new ArrayDeque<>();
+
+		int requests = 0;
+
+		int turnGrants = 0;
+
+		double tokens;
+
+		long lastRefill = System.nanoTime();
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param id     The session ID
+		 * @param tokens The initial number of tokens
+		 */
+		SessionState(String id, double tokens) {
+			this.id = id;
+			this.tokens = tokens;
+		}
+
+		/**
+		 * Returns the number of concurrent requests for a certain command.
+		 *
+		 * @param command The command name
+		 * @return The number of requests
+		 */
+		int getCommandRequests(String command) {
+			Integer count = commandRequests.get(command);
+
+			return count != null ? count : 0;
+		}
+
+		/**
+		 * Adds the tokens for the time since the last refill.
+		 *
+		 * @param rate  The token rate per second
+		 * @param burst The maximum number of tokens
+		 */
+		void refillTokens(double rate, double burst) {
+			long now = System.nanoTime();
+
+			tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1e9);
+			lastRefill = now;
+		}
+	}
+
+	/**
+	 * A request that waits for an execution slot.
+	 *
+	 * @author eso
+	 */
+	private static class Waiter {
+
+		boolean granted = false;
+	}
+}
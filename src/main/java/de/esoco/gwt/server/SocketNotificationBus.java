@@ -0,0 +1,468 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import de.esoco.gwt.server.ClientNotificationService.OverflowPolicy;
+import de.esoco.lib.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A {@link NotificationBus} that relays messages over TCP connections. Each
+ * bus listens on a local address for the messages of other nodes and sends
+ * its own messages to a list of peer addresses. Because the addresses can be
+ * on the loopback interface multiple nodes can also be run and tested on a
+ * single machine.
+ *
+ * <p>Messages are published to a bounded queue for each peer from which they
+ * are sent by a separate thread. If a peer cannot keep up or is unreachable
+ * its queue will fill up and messages will be dropped according to the
+ * {@link OverflowPolicy} of this bus. The connection to an unreachable peer
+ * is retried periodically.</p>
+ *
+ * <p>Because the bus accepts connections from the network it should either
+ * listen on an address that is only reachable by the cluster nodes or be
+ * created with a shared secret. If a secret is set connecting nodes must
+ * send it as the first data of the connection or else they will be
+ * disconnected. The number of inbound connections is limited relative to
+ * the number of peers.</p>
+ *
+ * @author eso
+ */
+public class SocketNotificationBus implements NotificationBus {
+
+	private static final int RECONNECT_DELAY = 1000;
+
+	private static final int CONNECT_TIMEOUT = 5000;
+
+	private static final int HANDSHAKE_TIMEOUT = 5000;
+
+	private final InetSocketAddress localAddress;
+
+	private final byte[] sharedSecret;
+
+	private final int maxInboundConnections;
+
+	private final Map<Socket, Thread> inboundConnections =
+		new ConcurrentHashMap<>();
+
+	private final List<Peer> peers = new ArrayList<>();
+
+	private final int maxQueueSize;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final AtomicLong droppedMessages = new AtomicLong();
+
+	private volatile boolean running = false;
+
+	private ServerSocket serverSocket;
+
+	private Thread serverThread;
+
+	/**
+	 * Creates a new instance without a shared secret.
+	 *
+	 * @see #SocketNotificationBus(InetSocketAddress, List, int,
+	 * OverflowPolicy, String)
+	 */
+	public SocketNotificationBus(InetSocketAddress localAddress,
+		List<InetSocketAddress> peerAddresses, int maxQueueSize,
+		OverflowPolicy policy) {
+		this(localAddress, peerAddresses, maxQueueSize, policy, null);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param localAddress  The local address to listen on
+	 * @param peerAddresses The addresses of the peer nodes
+	 * @param maxQueueSize  The maximum number of queued messages per peer
+	 * @param policy        The policy to apply if the queue of a peer is full
+	 * @param sharedSecret  The secret that all nodes must send when
+	 *                      connecting or NULL to accept all connections
+	 */
+	public SocketNotificationBus(InetSocketAddress localAddress,
+		List<InetSocketAddress> peerAddresses, int maxQueueSize,
+		OverflowPolicy policy, String sharedSecret) {
+		if (maxQueueSize <= 0) {
+			throw new IllegalArgumentException("Queue size must be > 0");
+		}
+
+		this.localAddress = localAddress;
+		this.maxQueueSize = maxQueueSize;
+		this.overflowPolicy = policy;
+		this.sharedSecret = sharedSecret != null ?
+		                    sharedSecret.getBytes(StandardCharsets.UTF_8) :
+		                    new byte[0];
+
+		if (this.sharedSecret.length > 0xFFFF) {
+			throw new IllegalArgumentException("Shared secret too long");
+		}
+
+		for (InetSocketAddress address : peerAddresses) {
+			peers.add(new Peer(address));
+		}
+
+		// allow for reconnecting peers whose previous connection has not
+		// been detected as closed yet
+		maxInboundConnections = Math.max(4, 2 * peers.size());
+	}
+
+	@Override
+	public void close() {
+		running = false;
+
+		try {
+			if (serverSocket != null) {
+				serverSocket.close();
+			}
+		} catch (IOException e) {
+			Log.error("Closing notification bus socket failed", e);
+		}
+
+		if (serverThread != null) {
+			serverThread.interrupt();
+		}
+
+		for (Map.Entry<Socket, Thread> inbound :
+			inboundConnections.entrySet()) {
+			closeSocket(inbound.getKey());
+			inbound.getValue().interrupt();
+		}
+
+		inboundConnections.clear();
+
+		for (Peer peer : peers) {
+			peer.close();
+		}
+	}
+
+	/**
+	 * Returns the number of messages that have been dropped because of full
+	 * peer queues.
+	 *
+	 * @return The dropped message count
+	 */
+	public long getDroppedMessageCount() {
+		return droppedMessages.get();
+	}
+
+	@Override
+	public void publish(NotificationBusMessage message) {
+		if (message.getDataSize() > NotificationBusMessage.MAX_MESSAGE_SIZE) {
+			Log.warn("Notification too large for bus: " + message);
+
+			return;
+		}
+
+		for (Peer peer : peers) {
+			peer.offer(message);
+		}
+	}
+
+	@Override
+	public void start(Consumer<NotificationBusMessage> receiver)
+		throws IOException {
+		serverSocket = new ServerSocket();
+		serverSocket.bind(localAddress);
+		running = true;
+
+		serverThread = startThread("NotificationBusServer",
+			() -> acceptConnections(receiver));
+
+		for (Peer peer : peers) {
+			peer.thread =
+				startThread("NotificationBusPeer-" + peer.address, peer::run);
+		}
+
+		Log.infof("Notification bus listening at %s", localAddress);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[%s]", getClass().getSimpleName(),
+			localAddress);
+	}
+
+	/**
+	 * Accepts the connections of other nodes and starts a reader thread for
+	 * each. If the maximum number of inbound connections has been reached
+	 * new connections will be closed immediately.
+	 *
+	 * @param receiver The message receiver
+	 */
+	private void acceptConnections(Consumer<NotificationBusMessage> receiver) {
+		while (running) {
+			try {
+				Socket socket = serverSocket.accept();
+
+				if (inboundConnections.size() >= maxInboundConnections) {
+					Log.warn("Notification bus connection rejected: " +
+						socket.getRemoteSocketAddress());
+					closeSocket(socket);
+				} else {
+					Thread reader = createThread(
+						"NotificationBusReader-" +
+							socket.getRemoteSocketAddress(),
+						() -> readMessages(socket, receiver));
+
+					// register before start so that the reader can remove it
+					inboundConnections.put(socket, reader);
+					reader.start();
+				}
+			} catch (IOException e) {
+				if (running) {
+					Log.error("Accepting notification bus connection failed",
+						e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks the shared secret that a connecting node must send first.
+	 *
+	 * @param socket The connection socket
+	 * @param input  The connection input
+	 * @return TRUE if the secret is valid
+	 * @throws IOException If reading the secret fails
+	 */
+	private boolean checkSharedSecret(Socket socket, DataInputStream input)
+		throws IOException {
+		socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+
+		int length = input.readUnsignedShort();
+		byte[] secret = new byte[length];
+
+		input.readFully(secret);
+		socket.setSoTimeout(0);
+
+		return MessageDigest.isEqual(secret, sharedSecret);
+	}
+
+	/**
+	 * Closes a socket and ignores errors.
+	 *
+	 * @param socket The socket to close
+	 */
+	private void closeSocket(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// ignored on close
+		}
+	}
+
+	/**
+	 * Creates a daemon thread.
+	 *
+	 * @param name     The thread name
+	 * @param runnable The code to run
+	 * @return The new thread (not started)
+	 */
+	private Thread createThread(String name, Runnable runnable) {
+		Thread thread = new Thread(runnable, name);
+
+		thread.setDaemon(true);
+
+		return thread;
+	}
+
+	/**
+	 * Reads the messages from the connection of another node until the
+	 * connection is closed. Errors of the receiver are logged and don't
+	 * affect the processing of subsequent messages.
+	 *
+	 * @param socket   The connection socket
+	 * @param receiver The message receiver
+	 */
+	private void readMessages(Socket socket,
+		Consumer<NotificationBusMessage> receiver) {
+		try (DataInputStream input = new DataInputStream(
+			new BufferedInputStream(socket.getInputStream()))) {
+			if (!checkSharedSecret(socket, input)) {
+				Log.warn("Invalid notification bus secret from " +
+					socket.getRemoteSocketAddress());
+
+				return;
+			}
+
+			while (running) {
+				NotificationBusMessage message =
+					NotificationBusMessage.read(input);
+
+				try {
+					receiver.accept(message);
+				} catch (RuntimeException e) {
+					Log.error("Processing of bus message failed: " + message,
+						e);
+				}
+			}
+		} catch (EOFException e) {
+			// connection closed by the peer
+		} catch (IOException e) {
+			if (running) {
+				Log.error("Reading from notification bus failed", e);
+			}
+		} finally {
+			inboundConnections.remove(socket);
+			closeSocket(socket);
+		}
+	}
+
+	/**
+	 * Starts a daemon thread.
+	 *
+	 * @param name     The thread name
+	 * @param runnable The code to run
+	 * @return The new thread
+	 */
+	private Thread startThread(String name, Runnable runnable) {
+		Thread thread = createThread(name, runnable);
+
+		thread.start();
+
+		return thread;
+	}
+
+	/**
+	 * A peer node with its outbound message queue.
+	 *
+	 * @author eso
+	 */
+	private class Peer {
+
+		final InetSocketAddress address;
+
+		final LinkedBlockingDeque<NotificationBusMessage> queue =
+			new LinkedBlockingDeque<>(maxQueueSize);
+
+		volatile Socket socket;
+
+		Thread thread;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param address The peer address
+		 */
+		Peer(InetSocketAddress address) {
+			this.address = address;
+		}
+
+		/**
+		 * Closes the connection to the peer.
+		 */
+		void close() {
+			Socket peerSocket = socket;
+
+			queue.clear();
+
+			if (thread != null) {
+				thread.interrupt();
+			}
+
+			if (peerSocket != null) {
+				closeSocket(peerSocket);
+			}
+		}
+
+		/**
+		 * Queues a message for sending to the peer without blocking.
+		 *
+		 * @param message The message
+		 */
+		void offer(NotificationBusMessage message) {
+			while (!queue.offerLast(message)) {
+				droppedMessages.incrementAndGet();
+
+				if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+					break;
+				}
+
+				queue.pollFirst();
+			}
+		}
+
+		/**
+		 * Sends the queued messages to the peer and re-connects if the
+		 * connection fails.
+		 */
+		void run() {
+			while (running) {
+				try (Socket peerSocket = new Socket()) {
+					peerSocket.connect(address, CONNECT_TIMEOUT);
+					peerSocket.setTcpNoDelay(true);
+					socket = peerSocket;
+
+					DataOutputStream output = new DataOutputStream(
+						new BufferedOutputStream(peerSocket.getOutputStream()));
+
+					output.writeShort(sharedSecret.length);
+					output.write(sharedSecret);
+
+					while (running) {
+						NotificationBusMessage message = queue.takeFirst();
+
+						message.write(output);
+
+						// send all messages that have been queued meanwhile
+						while ((message = queue.pollFirst()) != null) {
+							message.write(output);
+						}
+
+						output.flush();
+					}
+				} catch (InterruptedException e) {
+					return;
+				} catch (IOException e) {
+					if (running) {
+						Log.warn("Notification bus peer unavailable: " +
+							address);
+
+						try {
+							TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY);
+						} catch (InterruptedException ie) {
+							return;
+						}
+					}
+				} finally {
+					socket = null;
+				}
+			}
+		}
+	}
+}
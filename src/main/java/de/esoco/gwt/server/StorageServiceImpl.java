@@ -22,6 +22,7 @@ import de.esoco.data.SessionData;
 import de.esoco.data.document.TabularDocumentWriter;
 import de.esoco.data.element.QueryResultElement;
 import de.esoco.data.element.StringDataElement;
+import de.esoco.data.element.ValueDictionary;
 import de.esoco.data.storage.StorageAdapter;
 import de.esoco.data.storage.StorageAdapterId;
 import de.esoco.data.storage.StorageAdapterRegistry;
@@ -44,10 +45,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.WeakHashMap;
 
 import static de.esoco.lib.property.ContentProperties.FILE_NAME;
 import static org.obrel.core.RelationTypes.newMapType;
+import static org.obrel.core.RelationTypes.newType;
 
 /**
  * Implementation of the {@link StorageService} interface.
@@ -64,6 +67,12 @@ public abstract class StorageServiceImpl<E extends Entity>
 	private static final RelationType<Map<StorageAdapterId, StorageAdapter>>
 		STORAGE_ADAPTER_MAP = newMapType(false);
 
+	// relation type to store the query value dictionary of a session
+	private static final RelationType<ValueDictionary>
+		SESSION_VALUE_DICTIONARY = newType();
+
+	private static final int MAX_VALUE_DICTIONARY_SIZE = 10000;
+
 	private static long nextStorageAdapterId = 1;
 
 	static {
@@ -180,6 +189,11 @@ public abstract class StorageServiceImpl<E extends Entity>
 
 		adapterMap.put(id, adapter);
 
+		if (adapter instanceof DatabaseStorageAdapter) {
+			((DatabaseStorageAdapter) adapter).setValueDictionary(
+				getSessionValueDictionary());
+		}
+
 		return id;
 	}
 
@@ -256,4 +270,37 @@ public abstract class StorageServiceImpl<E extends Entity>
 
 		return adapterMap;
 	}
+
+	/**
+	 * Returns the dictionary that is used to encode repeated values in the
+	 * query results of the current session.
+	 *
+	 * @return The session value dictionary
+	 * @throws StorageException If the client is not authenticated
+	 */
+	private ValueDictionary getSessionValueDictionary()
+		throws StorageException {
+		SessionData sessionData;
+
+		try {
+			sessionData = getSessionData();
+		} catch (AuthenticationException e) {
+			throw new StorageException(e);
+		}
+
+		synchronized (sessionData) {
+			ValueDictionary dictionary =
+				sessionData.get(SESSION_VALUE_DICTIONARY);
+
+			if (dictionary == null) {
+				// random IDs don't match the dictionaries of clients that
+				// have been connected to other servers or previous runs
+				dictionary = new ValueDictionary(UUID.randomUUID().toString(),
+					MAX_VALUE_DICTIONARY_SIZE);
+				sessionData.set(SESSION_VALUE_DICTIONARY, dictionary);
+			}
+
+			return dictionary;
+		}
+	}
 }
@@ -0,0 +1,732 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import de.esoco.data.SessionData;
+import de.esoco.data.UploadHandler;
+import de.esoco.lib.logging.Log;
+import org.obrel.core.RelationType;
+import org.obrel.core.RelationTypes;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static org.obrel.core.RelationTypes.newType;
+
+/**
+ * A servlet that receives the uploads that have been prepared with
+ * {@link AuthenticatedServiceImpl#prepareUpload(UploadHandler)} with
+ * non-blocking I/O and streams the data directly into the
+ * {@link UploadHandler} of the upload. The handler is invoked on a separate
+ * thread while the request data is read by a Servlet 3.1 {@link ReadListener}
+ * so that no container thread is blocked by slow clients or handlers. The
+ * servlet must be deployed with async support at the upload URL (by default
+ * "upload").
+ *
+ * <p>An upload can either be sent as a single request or in chunks. Chunked
+ * uploads must set the header {@link #HEADER_LENGTH} to the total length of
+ * the upload and {@link #HEADER_OFFSET} to the offset of the chunk in the
+ * upload. An optional {@link #HEADER_CHECKSUM} contains the hexadecimal CRC32
+ * checksum of the chunk. A chunk is only forwarded to the handler after it
+ * has been received completely and verified so that a failed chunk can be
+ * sent again. The response to each chunk contains the offset of the next
+ * expected chunk in the offset header which can also be queried with a GET
+ * request to resume an interrupted upload. The response to the last chunk
+ * (or to a single-request upload) is sent after the handler has processed
+ * the upload. An upload is removed from the session when it has been
+ * processed successfully.</p>
+ *
+ * <p>The memory that is used by the uploads of a session is bounded. Single
+ * requests are paused if the handler cannot keep up. A chunk that would
+ * exceed the session limit is rejected with the status code 503 and should
+ * be sent again after a short delay.</p>
+ *
+ * <p>The upload handlers are executed by a thread pool with a limited size.
+ * If all threads are busy new uploads are queued until a thread becomes
+ * available.</p>
+ *
+ * <p>The limits can be set with the servlet init parameters
+ * {@link #PARAM_MAX_CHUNK_SIZE}, {@link #PARAM_MAX_SESSION_BUFFER},
+ * {@link #PARAM_IDLE_TIMEOUT}, and {@link #PARAM_MAX_HANDLER_THREADS}.</p>
+ *
+ * @author eso
+ */
+public class StreamingUploadServlet extends HttpServlet {
+
+	/**
+	 * The header containing the offset of a chunk in the upload data.
+	 */
+	public static final String HEADER_OFFSET = "Upload-Offset";
+
+	/**
+	 * The header containing the total length of a chunked upload.
+	 */
+	public static final String HEADER_LENGTH = "Upload-Length";
+
+	/**
+	 * The header containing the hexadecimal CRC32 checksum of a chunk.
+	 */
+	public static final String HEADER_CHECKSUM = "Upload-Checksum";
+
+	/**
+	 * The header containing the URL-encoded name of the uploaded file.
+	 */
+	public static final String HEADER_NAME = "Upload-Name";
+
+	/**
+	 * The init parameter for the maximum size of a chunk in bytes. This is
+	 * also the amount of data that is buffered for single-request uploads.
+	 */
+	public static final String PARAM_MAX_CHUNK_SIZE = "maxChunkSize";
+
+	/**
+	 * The init parameter for the maximum number of bytes that are buffered
+	 * for the uploads of a session.
+	 */
+	public static final String PARAM_MAX_SESSION_BUFFER = "maxSessionBuffer";
+
+	/**
+	 * The init parameter for the time in milliseconds after which an upload
+	 * without new data is aborted.
+	 */
+	public static final String PARAM_IDLE_TIMEOUT = "idleTimeout";
+
+	/**
+	 * The init parameter for the maximum number of threads that execute
+	 * upload handlers concurrently.
+	 */
+	public static final String PARAM_MAX_HANDLER_THREADS = "maxHandlerThreads";
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	private static final RelationType<SessionUploads> SESSION_STREAMING_UPLOADS =
+		newType();
+
+	static {
+		RelationTypes.init(StreamingUploadServlet.class);
+	}
+
+	private int maxChunkSize = 1024 * 1024;
+
+	private long maxSessionBuffer = 8 * 1024 * 1024;
+
+	private long idleTimeout = 5 * 60 * 1000;
+
+	private int maxHandlerThreads = 16;
+
+	private transient ExecutorService handlerExecutor;
+
+	@Override
+	public void destroy() {
+		handlerExecutor.shutdownNow();
+
+		super.destroy();
+	}
+
+	@Override
+	public void init() throws ServletException {
+		super.init();
+
+		maxChunkSize = getIntParameter(PARAM_MAX_CHUNK_SIZE, maxChunkSize);
+		maxSessionBuffer =
+			getIntParameter(PARAM_MAX_SESSION_BUFFER, (int) maxSessionBuffer);
+		idleTimeout = getIntParameter(PARAM_IDLE_TIMEOUT, (int) idleTimeout);
+		maxHandlerThreads =
+			getIntParameter(PARAM_MAX_HANDLER_THREADS, maxHandlerThreads);
+
+		ThreadPoolExecutor executor =
+			new ThreadPoolExecutor(maxHandlerThreads, maxHandlerThreads, 60,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+		executor.allowCoreThreadTimeOut(true);
+		handlerExecutor = executor;
+	}
+
+	/**
+	 * Returns the offset of the next expected chunk of an upload in the
+	 * response header {@link #HEADER_OFFSET}.
+	 *
+	 * @see HttpServlet#doGet(HttpServletRequest, HttpServletResponse)
+	 */
+	@Override
+	protected void doGet(HttpServletRequest request,
+		HttpServletResponse response) throws IOException {
+		SessionData sessionData = getSessionData(request);
+
+		if (sessionData == null) {
+			AuthenticatedServiceImpl.setErrorResponse(response,
+				HttpServletResponse.SC_UNAUTHORIZED, "User not authorized");
+		} else {
+			SessionUploads uploads = getSessionUploads(sessionData);
+			long offset;
+
+			synchronized (uploads) {
+				Upload upload = uploads.active.get(request.getParameter("id"));
+
+				offset = upload != null ? upload.offset : 0;
+			}
+
+			response.setHeader(HEADER_OFFSET, Long.toString(offset));
+			response.setStatus(HttpServletResponse.SC_OK);
+		}
+	}
+
+	/**
+	 * Receives an upload or a chunk of an upload.
+	 *
+	 * @see HttpServlet#doPost(HttpServletRequest, HttpServletResponse)
+	 */
+	@Override
+	protected void doPost(HttpServletRequest request,
+		HttpServletResponse response) throws IOException {
+		SessionData sessionData = getSessionData(request);
+		String id = request.getParameter("id");
+		UploadHandler handler = null;
+
+		if (sessionData != null) {
+			handler =
+				sessionData.get(AuthenticatedServiceImpl.SESSION_UPLOADS).get(id);
+		}
+
+		if (handler == null) {
+			AuthenticatedServiceImpl.setErrorResponse(response,
+				HttpServletResponse.SC_NOT_FOUND, "Unknown upload: " + id);
+
+			return;
+		}
+
+		SessionUploads uploads = getSessionUploads(sessionData);
+		long length = getLongHeader(request, HEADER_LENGTH);
+		long offset = Math.max(0, getLongHeader(request, HEADER_OFFSET));
+		long chunkLength = request.getContentLengthLong();
+		int status = 0;
+		int reservation = 0;
+		Upload upload;
+
+		synchronized (uploads) {
+			upload = uploads.active.get(id);
+
+			if (upload == null && offset == 0) {
+				upload = new Upload(id, length, uploads);
+				uploads.active.put(id, upload);
+				upload.start(sessionData, handler, getFileName(request),
+					request.getContentType());
+			}
+
+			if (upload == null || upload.receiving ||
+				offset != upload.offset) {
+				status = HttpServletResponse.SC_CONFLICT;
+			} else if (upload.isChunked() &&
+				(chunkLength < 0 || chunkLength > maxChunkSize)) {
+				status = HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
+			} else {
+				reservation =
+					upload.isChunked() ? (int) chunkLength : maxChunkSize;
+
+				if (uploads.bufferedBytes + reservation > maxSessionBuffer) {
+					status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+				} else {
+					uploads.bufferedBytes += reservation;
+					upload.receiving = true;
+				}
+			}
+		}
+
+		if (status != 0) {
+			response.setHeader(HEADER_OFFSET,
+				Long.toString(upload != null ? upload.offset : 0));
+
+			if (status == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+				response.setHeader("Retry-After", "1");
+			}
+
+			response.setStatus(status);
+		} else {
+			AsyncContext asyncContext = request.startAsync();
+			ServletInputStream input = request.getInputStream();
+
+			asyncContext.setTimeout(idleTimeout);
+			input.setReadListener(
+				new ChunkReader(upload, asyncContext, input, reservation,
+					request.getHeader(HEADER_CHECKSUM)));
+		}
+	}
+
+	/**
+	 * Returns the name of an uploaded file from the request header.
+	 *
+	 * @param request The request
+	 * @return The file name
+	 */
+	private String getFileName(HttpServletRequest request) {
+		String name = request.getHeader(HEADER_NAME);
+
+		if (name != null) {
+			try {
+				name = URLDecoder.decode(name, "UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				// UTF-8 is always supported
+			}
+		}
+
+		return name != null ? name : "upload";
+	}
+
+	/**
+	 * Returns the value of an integer init parameter.
+	 *
+	 * @param name         The parameter name
+	 * @param defaultValue The default value if the parameter is not set
+	 * @return The parameter value
+	 */
+	private int getIntParameter(String name, int defaultValue) {
+		String value = getInitParameter(name);
+
+		return value != null ? Integer.parseInt(value) : defaultValue;
+	}
+
+	/**
+	 * Returns the value of a numeric request header.
+	 *
+	 * @param request The request
+	 * @param header  The header name
+	 * @return The header value or -1 if not set or invalid
+	 */
+	private long getLongHeader(HttpServletRequest request, String header) {
+		String value = request.getHeader(header);
+
+		try {
+			return value != null ? Long.parseLong(value.trim()) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the session data for the session of a request.
+	 *
+	 * @param request The request
+	 * @return The session data or NULL if the session is not authenticated
+	 */
+	private SessionData getSessionData(HttpServletRequest request) {
+		HttpSession session = request.getSession(false);
+
+		return session != null ?
+		       AuthenticatedServiceImpl
+			       .getSessionMap(getServletContext())
+			       .get(session.getId()) :
+		       null;
+	}
+
+	/**
+	 * Returns the streaming uploads of a session and creates them on demand.
+	 *
+	 * @param sessionData The session data
+	 * @return The session uploads
+	 */
+	private SessionUploads getSessionUploads(SessionData sessionData) {
+		synchronized (sessionData) {
+			SessionUploads uploads = sessionData.get(SESSION_STREAMING_UPLOADS);
+
+			if (uploads == null) {
+				uploads = new SessionUploads();
+				sessionData.set(SESSION_STREAMING_UPLOADS, uploads);
+			}
+
+			return uploads;
+		}
+	}
+
+	/**
+	 * Sends the response to an upload request and completes the asynchronous
+	 * request processing.
+	 *
+	 * @param asyncContext The asynchronous context of the request
+	 * @param status       The response status code
+	 * @param offset       The offset of the next expected chunk
+	 */
+	private void respond(AsyncContext asyncContext, int status, long offset) {
+		try {
+			HttpServletResponse response =
+				(HttpServletResponse) asyncContext.getResponse();
+
+			response.setHeader(HEADER_OFFSET, Long.toString(offset));
+			response.setStatus(status);
+			asyncContext.complete();
+		} catch (IllegalStateException e) {
+			// request has already been completed by a timeout or error
+			Log.warn("Upload response could not be sent", e);
+		}
+	}
+
+	/**
+	 * A read listener that receives the data of an upload request.
+	 *
+	 * @author eso
+	 */
+	private class ChunkReader implements ReadListener {
+
+		private final Upload upload;
+
+		private final AsyncContext asyncContext;
+
+		private final ServletInputStream input;
+
+		private final int reservation;
+
+		private final String checksum;
+
+		private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+
+		private final CRC32 crc = new CRC32();
+
+		private final ByteArrayOutputStream chunk;
+
+		private long received = 0;
+
+		private boolean failed = false;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param upload       The upload
+		 * @param asyncContext The asynchronous request context
+		 * @param input        The request input stream
+		 * @param reservation  The number of bytes reserved for the request
+		 * @param checksum     The expected chunk checksum or NULL for none
+		 */
+		ChunkReader(Upload upload, AsyncContext asyncContext,
+			ServletInputStream input, int reservation, String checksum) {
+			this.upload = upload;
+			this.asyncContext = asyncContext;
+			this.input = input;
+			this.reservation = reservation;
+			this.checksum = checksum;
+
+			chunk = upload.isChunked() ?
+			        new ByteArrayOutputStream(reservation) :
+			        null;
+		}
+
+		@Override
+		public synchronized void onAllDataRead() {
+			if (failed) {
+				return;
+			}
+
+			if (chunk != null) {
+				completeChunk();
+			} else {
+				upload.stream.finish();
+				upload.result.whenComplete(
+					(r, e) -> upload.sessionUploads.release(reservation));
+				completeUpload(received);
+			}
+		}
+
+		@Override
+		public synchronized void onDataAvailable() throws IOException {
+			while (!failed && input.isReady()) {
+				int count = input.read(buffer);
+
+				if (count < 0) {
+					return;
+				}
+
+				received += count;
+
+				if (chunk != null) {
+					if (received > reservation) {
+						fail(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+
+						return;
+					}
+
+					chunk.write(buffer, 0, count);
+					crc.update(buffer, 0, count);
+				} else if (!upload.stream.append(buffer, 0, count)) {
+					// pause until the handler has consumed enough data
+					upload.stream.setSpaceListener(this::resume);
+
+					return;
+				}
+			}
+		}
+
+		@Override
+		public synchronized void onError(Throwable error) {
+			Log.warn("Upload failed: " + upload.id, error);
+
+			if (!failed) {
+				failed = true;
+				upload.sessionUploads.release(reservation);
+
+				if (chunk != null) {
+					// keep the upload so that the chunk can be sent again
+					synchronized (upload.sessionUploads) {
+						upload.receiving = false;
+					}
+				} else {
+					upload.stream.fail(new IOException(error));
+				}
+			}
+
+			try {
+				asyncContext.complete();
+			} catch (IllegalStateException e) {
+				// already completed
+			}
+		}
+
+		/**
+		 * Completes a received chunk by verifying the checksum and appending
+		 * the data to the upload stream.
+		 */
+		private void completeChunk() {
+			boolean valid = checksum == null;
+			byte[] data = chunk.toByteArray();
+			long offset;
+
+			if (!valid) {
+				try {
+					valid =
+						Long.parseLong(checksum.trim(), 16) == crc.getValue();
+				} catch (NumberFormatException e) {
+					Log.warn("Invalid upload checksum: " + checksum);
+				}
+			}
+
+			// release the part of the reservation that will not be released
+			// by the consumption of the chunk data
+			upload.sessionUploads.release(
+				valid ? reservation - data.length : reservation);
+
+			synchronized (upload.sessionUploads) {
+				if (valid) {
+					upload.offset += data.length;
+				}
+
+				upload.receiving = false;
+				offset = upload.offset;
+			}
+
+			if (!valid) {
+				respond(asyncContext, HttpServletResponse.SC_BAD_REQUEST,
+					offset);
+			} else {
+				upload.stream.appendChunk(data);
+
+				if (offset >= upload.length) {
+					upload.stream.finish();
+					completeUpload(offset);
+				} else {
+					respond(asyncContext, HttpServletResponse.SC_NO_CONTENT,
+						offset);
+				}
+			}
+		}
+
+		/**
+		 * Sends the response for the last request of an upload after the
+		 * upload handler has finished.
+		 *
+		 * @param offset The final upload offset
+		 */
+		private void completeUpload(long offset) {
+			upload.result.whenComplete((r, e) -> respond(asyncContext,
+				e == null ?
+				HttpServletResponse.SC_OK :
+				HttpServletResponse.SC_INTERNAL_SERVER_ERROR, offset));
+		}
+
+		/**
+		 * Aborts the reading of the request with an error status.
+		 *
+		 * @param status The response status code
+		 */
+		private void fail(int status) {
+			long offset;
+
+			failed = true;
+			upload.sessionUploads.release(reservation);
+
+			synchronized (upload.sessionUploads) {
+				upload.receiving = false;
+				offset = upload.offset;
+			}
+
+			respond(asyncContext, status, offset);
+		}
+
+		/**
+		 * Resumes reading after a pause.
+		 */
+		private void resume() {
+			try {
+				if (input.isReady()) {
+					onDataAvailable();
+				}
+			} catch (IOException e) {
+				onError(e);
+			}
+		}
+	}
+
+	/**
+	 * The state of the streaming uploads of a session. All fields are guarded
+	 * by the instance.
+	 *
+	 * @author eso
+	 */
+	private static class SessionUploads {
+
+		final Map<String, Upload> active = new HashMap<>();
+
+		long bufferedBytes = 0;
+
+		/**
+		 * Releases buffer memory that has been reserved by an upload.
+		 *
+		 * @param bytes The number of bytes to release
+		 */
+		synchronized void release(int bytes) {
+			bufferedBytes -= bytes;
+		}
+	}
+
+	/**
+	 * The state of a streaming upload. The offset and the receiving flag are
+	 * guarded by the session uploads.
+	 *
+	 * @author eso
+	 */
+	private class Upload {
+
+		final String id;
+
+		final long length;
+
+		final SessionUploads sessionUploads;
+
+		final UploadStream stream;
+
+		CompletableFuture<Void> result;
+
+		long offset = 0;
+
+		boolean receiving = false;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param id             The upload ID
+		 * @param length         The total length for chunked uploads or -1
+		 *                       for single-request uploads
+		 * @param sessionUploads The uploads of the session
+		 */
+		Upload(String id, long length, SessionUploads sessionUploads) {
+			this.id = id;
+			this.length = length;
+			this.sessionUploads = sessionUploads;
+
+			stream = new UploadStream(maxChunkSize, idleTimeout,
+				length >= 0 ? sessionUploads::release : null);
+		}
+
+		/**
+		 * Checks whether this is a chunked upload.
+		 *
+		 * @return TRUE for a chunked upload
+		 */
+		boolean isChunked() {
+			return length >= 0;
+		}
+
+		/**
+		 * Removes the handler of this upload from the uploads that have been
+		 * prepared for a session.
+		 *
+		 * @param sessionData The session data
+		 */
+		void removeUploadHandler(SessionData sessionData) {
+			Map<String, UploadHandler> handlers =
+				sessionData.get(AuthenticatedServiceImpl.SESSION_UPLOADS);
+
+			synchronized (handlers) {
+				handlers.remove(id);
+			}
+		}
+
+		/**
+		 * Starts the processing of the upload data by the upload handler on a
+		 * separate thread.
+		 *
+		 * @param sessionData The data of the session the upload belongs to
+		 * @param handler     The upload handler
+		 * @param fileName    The name of the uploaded file
+		 * @param contentType The content type of the upload
+		 */
+		void start(SessionData sessionData, UploadHandler handler,
+			String fileName, String contentType) {
+			String type =
+				contentType != null ? contentType : "application/octet-stream";
+
+			result = CompletableFuture.runAsync(() -> {
+				try {
+					handler.processUploadData(fileName, type, stream);
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				} finally {
+					stream.close();
+				}
+			}, handlerExecutor);
+
+			result.whenComplete((r, e) -> {
+				synchronized (sessionUploads) {
+					sessionUploads.active.remove(id);
+				}
+
+				if (e != null) {
+					Log.error("Upload processing failed: " + id, e);
+				} else {
+					removeUploadHandler(sessionData);
+				}
+			});
+		}
+	}
+}
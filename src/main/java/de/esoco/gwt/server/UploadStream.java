@@ -0,0 +1,303 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.IntConsumer;
+
+/**
+ * An input stream that hands the data of an upload from the threads that
+ * receive it over to the thread that processes it. The data is added in
+ * chunks that are queued until they have been read. The amount of queued data
+ * is bounded by a capacity: if {@link #append(byte[], int, int)} returns FALSE
+ * the producer must pause until the space listener is notified. Reading
+ * threads block until data is available, the stream has been finished or
+ * failed, or until no data has arrived within the idle timeout.
+ *
+ * @author eso
+ */
+class UploadStream extends InputStream {
+
+	private final Deque<byte[]> chunks = new ArrayDeque<>();
+
+	private final int capacity;
+
+	private final long idleTimeout;
+
+	private final IntConsumer consumptionListener;
+
+	private byte[] currentChunk = null;
+
+	private int position = 0;
+
+	private int queuedBytes = 0;
+
+	private boolean finished = false;
+
+	private boolean closed = false;
+
+	private IOException failure = null;
+
+	private Runnable spaceListener = null;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param capacity            The number of queued bytes at which producers
+	 *                            should pause
+	 * @param idleTimeout         The maximum time in milliseconds a reader
+	 *                            waits for new data
+	 * @param consumptionListener A listener that will be notified with the
+	 *                            size of each chunk that has been read
+	 *                            completely (and with the size of all data
+	 *                            that is discarded on or after closing) or
+	 *                            NULL for none
+	 */
+	UploadStream(int capacity, long idleTimeout,
+		IntConsumer consumptionListener) {
+		this.capacity = capacity;
+		this.idleTimeout = idleTimeout;
+		this.consumptionListener = consumptionListener;
+	}
+
+	@Override
+	public synchronized int available() {
+		return queuedBytes - position;
+	}
+
+	@Override
+	public void close() {
+		Runnable listener;
+		int discardedBytes;
+
+		synchronized (this) {
+			discardedBytes = queuedBytes;
+			closed = true;
+			chunks.clear();
+			currentChunk = null;
+			queuedBytes = 0;
+			listener = spaceListener;
+			spaceListener = null;
+			notifyAll();
+		}
+
+		if (discardedBytes > 0 && consumptionListener != null) {
+			consumptionListener.accept(discardedBytes);
+		}
+
+		if (listener != null) {
+			listener.run();
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] singleByte = new byte[1];
+
+		return read(singleByte, 0, 1) < 0 ? -1 : singleByte[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		byte[] consumedChunk = null;
+		Runnable listener = null;
+		int count;
+
+		synchronized (this) {
+			if (!awaitData()) {
+				return -1;
+			}
+
+			count = Math.min(length, currentChunk.length - position);
+
+			System.arraycopy(currentChunk, position, buffer, offset, count);
+			position += count;
+
+			if (position == currentChunk.length) {
+				consumedChunk = currentChunk;
+				queuedBytes -= consumedChunk.length;
+				currentChunk = null;
+				position = 0;
+
+				if (queuedBytes < capacity) {
+					listener = spaceListener;
+					spaceListener = null;
+				}
+			}
+		}
+
+		if (consumedChunk != null && consumptionListener != null) {
+			consumptionListener.accept(consumedChunk.length);
+		}
+
+		if (listener != null) {
+			listener.run();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Appends data to this stream. The data will be copied so that the
+	 * producer can re-use the buffer. Data that is added after the stream has
+	 * been closed by the reader will be discarded (see
+	 * {@link #appendChunk(byte[])}).
+	 *
+	 * @param data   The buffer containing the data
+	 * @param offset The offset of the data in the buffer
+	 * @param length The length of the data
+	 * @return TRUE if the stream has still capacity for more data, FALSE if
+	 * the producer should pause
+	 */
+	boolean append(byte[] data, int offset, int length) {
+		byte[] chunk = new byte[length];
+
+		System.arraycopy(data, offset, chunk, 0, length);
+
+		return appendChunk(chunk);
+	}
+
+	/**
+	 * Appends a chunk of data to this stream without copying it. If the
+	 * stream has already been closed by the reader the chunk will be
+	 * discarded and reported to the consumption listener as if it had been
+	 * read so that the producer can release resources that have been
+	 * reserved for it.
+	 *
+	 * @param chunk The data chunk (must not be modified afterwards)
+	 * @return TRUE if the stream has still capacity for more data, FALSE if
+	 * the producer should pause
+	 */
+	boolean appendChunk(byte[] chunk) {
+		boolean discarded;
+		boolean hasCapacity;
+
+		synchronized (this) {
+			discarded = closed;
+
+			if (!closed && chunk.length > 0) {
+				chunks.add(chunk);
+				queuedBytes += chunk.length;
+				notifyAll();
+			}
+
+			hasCapacity = closed || queuedBytes < capacity;
+		}
+
+		if (discarded && chunk.length > 0 && consumptionListener != null) {
+			consumptionListener.accept(chunk.length);
+		}
+
+		return hasCapacity;
+	}
+
+	/**
+	 * Terminates this stream with an error that will be thrown to the reader.
+	 *
+	 * @param error The error
+	 */
+	synchronized void fail(IOException error) {
+		failure = error;
+		notifyAll();
+	}
+
+	/**
+	 * Marks the end of the data. The reader will receive the end of the stream
+	 * after all queued data has been read.
+	 */
+	synchronized void finish() {
+		finished = true;
+		notifyAll();
+	}
+
+	/**
+	 * Checks whether the stream can receive more data without exceeding its
+	 * capacity.
+	 *
+	 * @return TRUE if more data can be appended
+	 */
+	synchronized boolean hasCapacity() {
+		return closed || queuedBytes < capacity;
+	}
+
+	/**
+	 * Sets a listener that will be invoked once when the queued data falls
+	 * below the capacity or the stream is closed. If that is already the case
+	 * the listener will be invoked immediately.
+	 *
+	 * @param listener The listener to invoke
+	 */
+	void setSpaceListener(Runnable listener) {
+		boolean invokeNow;
+
+		synchronized (this) {
+			invokeNow = closed || queuedBytes < capacity;
+
+			if (!invokeNow) {
+				spaceListener = listener;
+			}
+		}
+
+		if (invokeNow) {
+			listener.run();
+		}
+	}
+
+	/**
+	 * Waits until data is available for reading. Must be invoked while
+	 * synchronized on this instance.
+	 *
+	 * @return TRUE if data is available, FALSE if the end of the stream has
+	 * been reached
+	 * @throws IOException If the stream has failed or timed out
+	 */
+	private boolean awaitData() throws IOException {
+		long timeout = System.currentTimeMillis() + idleTimeout;
+
+		while (currentChunk == null) {
+			if (failure != null) {
+				throw failure;
+			} else if (closed) {
+				throw new IOException("Upload stream closed");
+			}
+
+			currentChunk = chunks.poll();
+
+			if (currentChunk == null) {
+				long wait = timeout - System.currentTimeMillis();
+
+				if (finished) {
+					return false;
+				} else if (wait <= 0) {
+					throw new IOException("Upload timed out");
+				}
+
+				try {
+					wait(wait);
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException("Upload interrupted");
+				}
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,115 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contains the methods to encode and decode batches of client notification
+ * messages that are sent in a single WebSocket frame. A batch consists of the
+ * {@link #BATCH_PREFIX} followed by the messages, each prefixed with its
+ * length and a colon. This compact format contains no escaping or other
+ * overhead and therefore also compresses well if the WebSocket connection
+ * uses the permessage-deflate extension.
+ *
+ * @author eso
+ */
+public class NotificationBatch {
+
+	/**
+	 * The prefix of notification frames that contain a message batch.
+	 */
+	public static final String BATCH_PREFIX = "\u001EBatch:";
+
+	/**
+	 * Private, only static use.
+	 */
+	private NotificationBatch() {
+	}
+
+	/**
+	 * Decodes the messages of a batch frame.
+	 *
+	 * @param frame The frame that has been encoded with
+	 *              {@link #encode(List)}
+	 * @return A list of the batch messages
+	 * @throws IllegalArgumentException If the frame is not a valid batch
+	 */
+	public static List<String> decode(String frame) {
+		List<String> messages = new ArrayList<>();
+		int length = frame.length();
+		int position = BATCH_PREFIX.length();
+
+		try {
+			while (position < length) {
+				int separator = frame.indexOf(':', position);
+				int messageLength =
+					Integer.parseInt(frame.substring(position, separator));
+
+				position = separator + 1;
+				messages.add(
+					frame.substring(position, position + messageLength));
+				position += messageLength;
+			}
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid batch frame", e);
+		}
+
+		return messages;
+	}
+
+	/**
+	 * Encodes a list of messages into a single frame. If the list contains
+	 * only a single message that doesn't start with the batch prefix it will
+	 * be returned unchanged.
+	 *
+	 * @param messages The messages to encode
+	 * @return The encoded frame
+	 */
+	public static String encode(List<String> messages) {
+		if (messages.size() == 1 && !isBatch(messages.get(0))) {
+			return messages.get(0);
+		}
+
+		int size = BATCH_PREFIX.length();
+
+		for (String message : messages) {
+			size += message.length() + 6;
+		}
+
+		StringBuilder frame = new StringBuilder(size);
+
+		frame.append(BATCH_PREFIX);
+
+		for (String message : messages) {
+			frame.append(message.length()).append(':').append(message);
+		}
+
+		return frame.toString();
+	}
+
+	/**
+	 * Checks whether a notification frame contains a message batch.
+	 *
+	 * @param frame The frame to check
+	 * @return TRUE if the frame is a batch
+	 */
+	public static boolean isBatch(String frame) {
+		return frame.startsWith(BATCH_PREFIX);
+	}
+}
@@ -38,9 +38,23 @@ public interface ProcessService extends StorageService {
 	 */
 	public static final String APPLICATION_MAIN_PROCESS = "__AppMainProcess";
 
+	/**
+	 * A {@link ProcessState} property containing the comma-separated global
+	 * IDs of the entities that are displayed in the current interaction of a
+	 * process, excluding the entities modified by the process itself. Only set
+	 * if the service has a client notification service so that the client can
+	 * watch the locks of these entities through the {@link #ENTITY_LOCK_TOPIC}.
+	 */
+	public static final PropertyName<String> PROCESS_DISPLAYED_ENTITIES =
+		PropertyName.newStringName("ProcessDisplayedEntities");
+
 	/**
 	 * A {@link ProcessState} property containing the list of the entities that
-	 * are current locked by a process.
+	 * are current locked by a process. Only set if the service has no client
+	 * notification service. Otherwise lock changes are pushed as
+	 * {@link #ENTITY_LOCKED_NOTIFICATION} and
+	 * {@link #ENTITY_UNLOCKED_NOTIFICATION} to the subscribers of the
+	 * {@link #ENTITY_LOCK_TOPIC} of an entity.
 	 */
 	public static final PropertyName<String> PROCESS_ENTITY_LOCKS =
 		PropertyName.newStringName("ProcessEntityLocks");
@@ -52,6 +66,43 @@ public interface ProcessService extends StorageService {
 	public static final PropertyName<Boolean> PROCESS_AUTHENTICATED =
 		PropertyName.newBooleanName("PROCESS_AUTHENTICATED");
 
+	/**
+	 * A process state flag that indicates that the server will push a
+	 * notification to the client if the state of an automatically continuing
+	 * process changes. The client should then wait for such a notification
+	 * instead of re-executing the process immediately.
+	 */
+	public static final PropertyName<Boolean> PROCESS_UPDATE_PUSH =
+		PropertyName.newBooleanName("ProcessUpdatePush");
+
+	/**
+	 * The prefix of client notification messages that indicate a process
+	 * update. The prefix is followed by the ID of the updated process.
+	 */
+	public static final String PROCESS_UPDATE_NOTIFICATION = "ProcessUpdate:";
+
+	/**
+	 * The prefix of the client notification topics for the lock changes of
+	 * entities. The prefix is followed by the global ID of the entity. Clients
+	 * that display an entity should subscribe to its topic to be notified if
+	 * the entity is locked or unlocked by another process.
+	 */
+	public static final String ENTITY_LOCK_TOPIC = "EntityLock:";
+
+	/**
+	 * The prefix of client notification messages that indicate that an entity
+	 * has been locked. The prefix is followed by the global ID of the entity.
+	 */
+	public static final String ENTITY_LOCKED_NOTIFICATION = "EntityLocked:";
+
+	/**
+	 * The prefix of client notification messages that indicate that an entity
+	 * has been unlocked. The prefix is followed by the global ID of the
+	 * entity.
+	 */
+	public static final String ENTITY_UNLOCKED_NOTIFICATION =
+		"EntityUnlocked:";
+
 	// - Commands
 	// --------------------------------------------------------------
 
@@ -0,0 +1,62 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.shared;
+
+/**
+ * A recoverable service exception that signals that a request has been
+ * rejected because the client has exceeded its request limits or the server
+ * is overloaded. The request can be repeated after the delay returned by
+ * {@link #getRetryDelay()}, preferably with an increasing backoff.
+ *
+ * @author eso
+ */
+public class ServiceOverloadException extends ServiceException {
+
+	private static final long serialVersionUID = 1L;
+
+	private int retryDelay;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param message    The error message
+	 * @param retryDelay The suggested delay in milliseconds before the request
+	 *                   is repeated
+	 */
+	public ServiceOverloadException(String message, int retryDelay) {
+		super(message, true);
+
+		this.retryDelay = retryDelay;
+	}
+
+	/**
+	 * Default constructor for serialization.
+	 *
+	 * @see ServiceException#ServiceException()
+	 */
+	ServiceOverloadException() {
+	}
+
+	/**
+	 * Returns the suggested delay before the rejected request is repeated.
+	 *
+	 * @return The retry delay in milliseconds
+	 */
+	public final int getRetryDelay() {
+		return retryDelay;
+	}
+}
@@ -23,6 +23,7 @@ import de.esoco.data.element.StringMapDataElement;
 import de.esoco.lib.model.DataModel;
 import de.esoco.lib.model.FilterableDataModel;
 import de.esoco.lib.property.ContentProperties;
+import de.esoco.lib.property.PropertyName;
 import de.esoco.lib.property.SortDirection;
 import de.esoco.lib.property.StorageProperties;
 
@@ -44,6 +45,21 @@ public interface StorageService extends AuthenticatedService {
 	 */
 	public static final String ERROR_LOCKED_ENTITY_ID = "LockedEntityId";
 
+	/**
+	 * A query property that contains the ID of the value dictionary that is
+	 * known to the client. If this property is set the server encodes repeated
+	 * values in query results with a session-specific value dictionary.
+	 */
+	public static final PropertyName<String> QUERY_DICTIONARY_ID =
+		PropertyName.newStringName("QueryDictionaryId");
+
+	/**
+	 * A query property that contains the number of value dictionary entries
+	 * that are known to the client.
+	 */
+	public static final PropertyName<Integer> QUERY_DICTIONARY_SIZE =
+		PropertyName.newIntegerName("QueryDictionarySize");
+
 	//- Commands
 	// ---------------------------------------------------------------
 
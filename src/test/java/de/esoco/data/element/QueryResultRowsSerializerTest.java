@@ -0,0 +1,300 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.data.element;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.client.rpc.SerializationStreamReader;
+import com.google.gwt.user.client.rpc.SerializationStreamWriter;
+import de.esoco.lib.model.DataModel;
+import de.esoco.lib.model.ListDataModel;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test of {@link QueryResultRows_CustomFieldSerializer}.
+ *
+ * @author eso
+ */
+public class QueryResultRowsSerializerTest {
+
+	/**
+	 * Test the serialization of hierarchical children.
+	 *
+	 * @throws SerializationException If the serialization fails
+	 */
+	@Test
+	public void testChildren() throws SerializationException {
+		QueryResultRows rows = new QueryResultRows();
+		List<DataModel<String>> children =
+			Arrays.asList(createRow("C1", 0, false, "X"),
+				createRow("C2", 1, false, "Y"));
+
+		rows.add(
+			new HierarchicalDataObject("P", 0, Arrays.asList("A"), false,
+				null, children));
+		rows.add(createRow("Q", 1, false, "B"));
+
+		QueryResultRows result = serializeAndRestore(rows);
+		HierarchicalDataObject parent = (HierarchicalDataObject) result.get(0);
+
+		assertRowEquals(rows.get(0), parent);
+		assertRowEquals(rows.get(1), result.get(1));
+		assertEquals(2, parent.children.getElementCount());
+		assertRowEquals(children.get(1), parent.children.getElement(1));
+	}
+
+	/**
+	 * Test the column-oriented serialization of rows with different value
+	 * counts, non-consecutive indices, mixed editable states and flags.
+	 *
+	 * @throws SerializationException If the serialization fails
+	 */
+	@Test
+	public void testColumns() throws SerializationException {
+		QueryResultRows rows = new QueryResultRows();
+		Set<String> flags = new HashSet<>(Arrays.asList("F1", "F2"));
+
+		rows.add(createRow("1", 10, true, "A", "B", null));
+		rows.add(createRow("2", 11, false, "A", "C", "B"));
+		rows.add(
+			new HierarchicalDataObject("3", 15, Arrays.asList("D"), true,
+				flags, (List<DataModel<String>>) null));
+
+		QueryResultRows result = serializeAndRestore(rows);
+
+		assertEquals(rows.size(), result.size());
+
+		for (int i = 0; i < rows.size(); i++) {
+			assertRowEquals(rows.get(i), result.get(i));
+		}
+	}
+
+	/**
+	 * Test the serialization of an empty result.
+	 *
+	 * @throws SerializationException If the serialization fails
+	 */
+	@Test
+	public void testEmpty() throws SerializationException {
+		assertEquals(0, serializeAndRestore(new QueryResultRows()).size());
+	}
+
+	/**
+	 * Test the reset of a client dictionary that contains more entries than
+	 * the session dictionary with the same ID.
+	 *
+	 * @throws SerializationException If the serialization fails
+	 */
+	@Test
+	public void testMismatchingSessionDictionary()
+		throws SerializationException {
+		ValueDictionary sessionDictionary = new ValueDictionary("D4", 100);
+		ValueDictionary clientDictionary =
+			ValueDictionary.getClientDictionary();
+		QueryResultRows rows = new QueryResultRows();
+
+		clientDictionary.update("D4", 0, Arrays.asList("$X", "$Y", "$Z"));
+		rows.add(createRow("1", 0, false, "$A", "$B"));
+		rows.setValueDictionary(sessionDictionary, clientDictionary.getId(),
+			clientDictionary.size());
+
+		QueryResultRows result = serializeAndRestore(rows);
+
+		assertRowEquals(rows.get(0), result.get(0));
+		assertEquals(Arrays.asList("$A", "$B"),
+			clientDictionary.getValues(0, clientDictionary.size()));
+	}
+
+	/**
+	 * Test that a result which contains only the new entries of a session
+	 * dictionary that has been replaced on the client is rejected.
+	 */
+	@Test
+	public void testReplacedSessionDictionary() {
+		ValueDictionary sessionDictionary = new ValueDictionary("D2", 100);
+		QueryResultRows rows = new QueryResultRows();
+
+		sessionDictionary.encode("$A");
+		rows.add(createRow("1", 0, false, "$B"));
+
+		// rows are created for a client that knows the first entry
+		rows.setValueDictionary(sessionDictionary, "D2", 1);
+
+		// but the client dictionary has been replaced meanwhile
+		ValueDictionary
+			.getClientDictionary()
+			.update("D3", 0, Collections.emptyList());
+
+		assertThrows(SerializationException.class,
+			() -> serializeAndRestore(rows));
+	}
+
+	/**
+	 * Test the encoding of resource IDs with a session dictionary.
+	 *
+	 * @throws SerializationException If the serialization fails
+	 */
+	@Test
+	public void testSessionDictionary() throws SerializationException {
+		ValueDictionary sessionDictionary = new ValueDictionary("D1", 100);
+		ValueDictionary clientDictionary =
+			ValueDictionary.getClientDictionary();
+		QueryResultRows rows = new QueryResultRows();
+
+		rows.add(createRow("1", 0, false, "$R1", "Text"));
+		rows.add(createRow("2", 1, false, "$R2", null));
+		rows.setValueDictionary(sessionDictionary, clientDictionary.getId(),
+			clientDictionary.size());
+
+		QueryResultRows result = serializeAndRestore(rows);
+
+		assertRowEquals(rows.get(0), result.get(0));
+		assertRowEquals(rows.get(1), result.get(1));
+		assertEquals("D1", clientDictionary.getId());
+		assertEquals(Arrays.asList("$R1", "$R2"),
+			clientDictionary.getValues(0, clientDictionary.size()));
+
+		// only the new entries are transferred with the next page
+		rows = new QueryResultRows();
+		rows.add(createRow("3", 2, false, "$R2"));
+		rows.add(createRow("4", 3, false, "$R3"));
+		rows.setValueDictionary(sessionDictionary, clientDictionary.getId(),
+			clientDictionary.size());
+
+		assertEquals(2, rows.getDictionaryStart());
+
+		result = serializeAndRestore(rows);
+
+		assertRowEquals(rows.get(0), result.get(0));
+		assertRowEquals(rows.get(1), result.get(1));
+		assertEquals(Arrays.asList("$R1", "$R2", "$R3"),
+			clientDictionary.getValues(0, clientDictionary.size()));
+	}
+
+	/**
+	 * Test the fallback to the standard serialization of rows that are not
+	 * hierarchical data objects.
+	 *
+	 * @throws SerializationException If the serialization fails
+	 */
+	@Test
+	public void testStandardRows() throws SerializationException {
+		QueryResultRows rows = new QueryResultRows();
+		DataModel<String> row =
+			new ListDataModel<String>("ROW", Arrays.asList("A", "B"));
+
+		rows.add(createRow("1", 0, false, "A"));
+		rows.add(row);
+
+		QueryResultRows result = serializeAndRestore(rows);
+
+		assertEquals(2, result.size());
+		assertSame(rows.get(0), result.get(0));
+		assertSame(row, result.get(1));
+	}
+
+	/**
+	 * Asserts that a restored row is equal to the original row.
+	 *
+	 * @param expected The original row
+	 * @param actual   The restored row
+	 */
+	private static void assertRowEquals(DataModel<String> expected,
+		DataModel<String> actual) {
+		HierarchicalDataObject expectedObject =
+			(HierarchicalDataObject) expected;
+		HierarchicalDataObject actualObject = (HierarchicalDataObject) actual;
+
+		assertEquals(expectedObject.getId(), actualObject.getId());
+		assertEquals(expectedObject.getIndex(), actualObject.getIndex());
+		assertEquals(expectedObject.isEditable(), actualObject.isEditable());
+		assertEquals(expectedObject.values, actualObject.values);
+		assertEquals(new HashSet<>(expectedObject.getFlags()),
+			new HashSet<>(actualObject.getFlags()));
+	}
+
+	/**
+	 * Creates a row without flags and children.
+	 *
+	 * @param id       The row ID
+	 * @param index    The row index
+	 * @param editable The editable state
+	 * @param values   The row values
+	 * @return The new row
+	 */
+	private static HierarchicalDataObject createRow(String id, int index,
+		boolean editable, String... values) {
+		return new HierarchicalDataObject(id, index, Arrays.asList(values),
+			editable, Collections.emptySet(), (List<DataModel<String>>) null);
+	}
+
+	/**
+	 * Creates a serialization stream that writes to or reads from a list of
+	 * values in the order of the stream method invocations.
+	 *
+	 * @param streamType The stream interface
+	 * @param data       The list of stream values
+	 * @return The new stream
+	 */
+	private static <T> T createStream(Class<T> streamType, List<Object> data) {
+		return streamType.cast(
+			Proxy.newProxyInstance(streamType.getClassLoader(),
+				new Class<?>[] { streamType }, (proxy, method, args) -> {
+					String name = method.getName();
+
+					if (name.startsWith("write")) {
+						data.add(args[0]);
+
+						return null;
+					} else if (name.startsWith("read")) {
+						return data.remove(0);
+					} else {
+						throw new UnsupportedOperationException(name);
+					}
+				}));
+	}
+
+	/**
+	 * Serializes rows with the custom field serializer and restores them from
+	 * the serialized data.
+	 *
+	 * @param rows The rows to serialize
+	 * @return The restored rows
+	 * @throws SerializationException If the serialization fails
+	 */
+	private static QueryResultRows serializeAndRestore(QueryResultRows rows)
+		throws SerializationException {
+		List<Object> data = new LinkedList<>();
+
+		QueryResultRows_CustomFieldSerializer.serialize(
+			createStream(SerializationStreamWriter.class, data), rows);
+
+		return QueryResultRows_CustomFieldSerializer.instantiate(
+			createStream(SerializationStreamReader.class, data));
+	}
+}
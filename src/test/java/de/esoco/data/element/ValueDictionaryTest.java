@@ -0,0 +1,131 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.data.element;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test of {@link ValueDictionary}.
+ *
+ * @author eso
+ */
+public class ValueDictionaryTest {
+
+	/**
+	 * Test of {@link ValueDictionary#encode(String)}.
+	 */
+	@Test
+	public void testEncode() {
+		ValueDictionary dictionary = new ValueDictionary("D1", 2);
+
+		assertEquals(0, dictionary.encode("A"));
+		assertEquals(1, dictionary.encode("B"));
+		assertEquals(0, dictionary.encode("A"));
+		assertEquals(-1, dictionary.encode("C"));
+		assertEquals(2, dictionary.size());
+		assertEquals("B", dictionary.get(1));
+		assertEquals(Arrays.asList("A", "B"), dictionary.getValues(0, 2));
+		assertEquals(Collections.singletonList("B"),
+			dictionary.getValues(1, 2));
+	}
+
+	/**
+	 * Test of {@link ValueDictionary#replace(String, java.util.List)} with a
+	 * server dictionary that has the same ID but fewer entries than the client
+	 * dictionary.
+	 */
+	@Test
+	public void testReplace() {
+		ValueDictionary server = new ValueDictionary("D1", 10);
+		ValueDictionary client = new ValueDictionary("", 10);
+		QueryResultRows rows = new QueryResultRows();
+
+		assertTrue(client.update("D1", 0, Arrays.asList("A", "B", "C")));
+
+		server.encode("X");
+		server.encode("Y");
+
+		// the server must send all entries if the client knows more
+		rows.setValueDictionary(server, client.getId(), client.size());
+		assertEquals(0, rows.getDictionaryStart());
+		assertTrue(rows.isDictionaryReset());
+
+		// a plain update would keep the invalid entries
+		client.replace("D1", server.getValues(0, server.size()));
+		assertEquals(Arrays.asList("X", "Y"), client.getValues(0, 2));
+		assertEquals(2, client.size());
+		assertEquals(1, client.encode("Y"));
+
+		server.encode("Z");
+		rows.setValueDictionary(server, client.getId(), client.size());
+		assertEquals(2, rows.getDictionaryStart());
+		assertFalse(rows.isDictionaryReset());
+		assertTrue(client.update("D1", 2, Arrays.asList("Z")));
+		assertEquals("Z", client.get(2));
+	}
+
+	/**
+	 * Test of {@link ValueDictionary#update(String, int, java.util.List)} with
+	 * overlapping and outdated updates.
+	 */
+	@Test
+	public void testUpdateIdempotent() {
+		ValueDictionary dictionary = new ValueDictionary("D1", 10);
+
+		assertTrue(dictionary.update("D1", 0, Arrays.asList("A", "B")));
+		assertTrue(dictionary.update("D1", 1, Arrays.asList("B", "C")));
+		assertTrue(dictionary.update("D1", 0, Arrays.asList("A")));
+		assertTrue(dictionary.update("D1", 3, Collections.emptyList()));
+		assertEquals(Arrays.asList("A", "B", "C"), dictionary.getValues(0, 3));
+		assertEquals(2, dictionary.encode("C"));
+
+		// values after a gap can't be applied
+		assertFalse(dictionary.update("D1", 4, Arrays.asList("E")));
+		assertEquals(3, dictionary.size());
+	}
+
+	/**
+	 * Test of {@link ValueDictionary#update(String, int, java.util.List)} with
+	 * the ID of a different dictionary.
+	 */
+	@Test
+	public void testUpdateReplacedDictionary() {
+		ValueDictionary dictionary = new ValueDictionary("D1", 10);
+
+		assertTrue(dictionary.update("D1", 0, Arrays.asList("A", "B")));
+
+		// an update of a new dictionary that doesn't start at zero can't be
+		// applied
+		assertFalse(dictionary.update("D2", 1, Arrays.asList("X")));
+		assertEquals("D1", dictionary.getId());
+		assertEquals(Arrays.asList("A", "B"), dictionary.getValues(0, 2));
+
+		// the full content of a new dictionary replaces the current content
+		assertTrue(dictionary.update("D2", 0, Arrays.asList("X")));
+		assertEquals("D2", dictionary.getId());
+		assertEquals(1, dictionary.size());
+		assertEquals(0, dictionary.encode("X"));
+		assertEquals(1, dictionary.encode("A"));
+	}
+}
@@ -0,0 +1,114 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import de.esoco.lib.model.DataModel;
+import de.esoco.lib.model.ListDataModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Test of {@link ColumnIndex}.
+ *
+ * @author eso
+ */
+public class ColumnIndexTest {
+
+	private static final String[] VALUES =
+		new String[] { "b", "A", null, "a", "c", "b", "Ab" };
+
+	/**
+	 * Test the lookup of equal values.
+	 */
+	@Test
+	public void testLookupEqual() {
+		ColumnIndex index = createIndex();
+
+		assertArrayEquals(new int[] { 0, 5 }, index.lookupEqual("b"));
+		assertArrayEquals(new int[] { 1 }, index.lookupEqual("A"));
+		assertArrayEquals(new int[0], index.lookupEqual("B"));
+		assertArrayEquals(new int[0], index.lookupEqual(null));
+	}
+
+	/**
+	 * Test the lookup of value prefixes.
+	 */
+	@Test
+	public void testLookupPrefix() {
+		ColumnIndex index = createIndex();
+
+		assertArrayEquals(new int[] { 1, 6 }, index.lookupPrefix("A", false));
+		assertArrayEquals(new int[] { 3 }, index.lookupPrefix("a", false));
+		assertArrayEquals(new int[] { 1, 3, 6 },
+			index.lookupPrefix("A", true));
+		assertArrayEquals(new int[] { 6 }, index.lookupPrefix("aB", true));
+		assertArrayEquals(new int[0], index.lookupPrefix("d", true));
+	}
+
+	/**
+	 * Test the lookup of value ranges.
+	 */
+	@Test
+	public void testLookupRange() {
+		ColumnIndex index = createIndex();
+
+		assertArrayEquals(new int[] { 3, 0, 5 },
+			index.lookupRange("a", true, "b", true));
+		assertArrayEquals(new int[0],
+			index.lookupRange("a", false, "b", false));
+		assertArrayEquals(new int[] { 3, 0, 5, 4 },
+			index.lookupRange("Ab", false, null, false));
+		assertArrayEquals(new int[] { 1, 6 },
+			index.lookupRange(null, false, "a", false));
+		assertArrayEquals(new int[0], index.lookupRange("c", false, "a", true));
+	}
+
+	/**
+	 * Test the sorting of the column values.
+	 */
+	@Test
+	public void testSorting() {
+		ColumnIndex index = createIndex();
+
+		// NULL is not indexed and equal values keep their original order
+		assertArrayEquals(new int[] { 1, 6, 3, 0, 5, 4 },
+			index.getSortedRows());
+		assertArrayEquals(new String[] { "A", "Ab", "a", "b", "b", "c" },
+			index.getSortedValues());
+	}
+
+	/**
+	 * Creates an index of the second column of rows that contain the test
+	 * values.
+	 *
+	 * @return The new index
+	 */
+	private ColumnIndex createIndex() {
+		List<DataModel<String>> rows = new ArrayList<>();
+
+		for (String value : VALUES) {
+			rows.add(new ListDataModel<>("R", Arrays.asList("X", value)));
+		}
+
+		return new ColumnIndex(rows, 1);
+	}
+}
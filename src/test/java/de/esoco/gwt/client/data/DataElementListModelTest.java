@@ -0,0 +1,163 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import de.esoco.data.element.DataElementList;
+import de.esoco.data.element.StringDataElement;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test of {@link DataElementListModel}.
+ *
+ * @author eso
+ */
+public class DataElementListModelTest {
+
+	/**
+	 * Test the filtering of the model elements by name.
+	 */
+	@Test
+	public void testElementNames() {
+		DataElementList root = createHierarchy();
+
+		for (boolean lazy : new boolean[] { false, true }) {
+			DataElementListModel model =
+				new DataElementListModel(null, root, Arrays.asList("B", "Sub"),
+					"", false, lazy);
+
+			assertEquals(2, model.getElementCount());
+			assertEquals("b", model.getElement(0));
+			assertEquals("Sub",
+				((DataElementListModel) model.getElement(1))
+					.getModelElement()
+					.getName());
+
+			model = new DataElementListModel(null, root, null, "", true, lazy);
+
+			assertEquals(1, model.getElementCount());
+			assertTrue(model.getElement(0) instanceof DataElementListModel);
+
+			assertThrows(IllegalArgumentException.class,
+				() -> new DataElementListModel(null, root,
+					Arrays.asList("X"), "", false, lazy));
+		}
+	}
+
+	/**
+	 * Test that the values of a lazy model are only created on access and
+	 * then kept, including NULL values.
+	 */
+	@Test
+	public void testLazyCreation() {
+		DataElementList root = createHierarchy();
+		StringDataElement a = (StringDataElement) root.getElementAt("A");
+		StringDataElement b = (StringDataElement) root.getElementAt("B");
+		DataElementList sub = (DataElementList) root.getElementAt("Sub");
+
+		DataElementListModel model =
+			new DataElementListModel(null, root, null, "", false, true);
+
+		// modifications before the first access are visible
+		a.setValue("a2");
+		b.setValue(null);
+		sub.addElement(new StringDataElement("D", "d"));
+
+		assertEquals("a2", model.getElement(0));
+		assertNull(model.getElement(1));
+
+		DataElementListModel subModel =
+			(DataElementListModel) model.getElement(2);
+
+		assertSame(model, subModel.getParent());
+		assertEquals(2, subModel.getElementCount());
+
+		// created values are kept
+		a.setValue("a3");
+		b.setValue("b3");
+
+		assertEquals("a2", model.getElement(0));
+		assertNull(model.getElement(1));
+		assertSame(subModel, model.getElement(2));
+	}
+
+	/**
+	 * Test that lazy and eager models contain equal values.
+	 */
+	@Test
+	public void testLazyEqualsEager() {
+		DataElementList root = createHierarchy();
+
+		DataElementListModel eager =
+			new DataElementListModel(null, root, null, "", false, false);
+		DataElementListModel lazy =
+			new DataElementListModel(null, root, null, "", false, true);
+
+		assertFalse(eager.isLazy());
+		assertTrue(lazy.isLazy());
+		assertEquals(toList(eager), toList(lazy));
+	}
+
+	/**
+	 * Creates a hierarchy of data elements.
+	 *
+	 * @return The root element list
+	 */
+	private DataElementList createHierarchy() {
+		DataElementList root = new DataElementList("Root", null, null, null);
+		DataElementList sub = new DataElementList("Sub", null, null, null);
+
+		sub.addElement(new StringDataElement("C", "c"));
+		root.addElement(new StringDataElement("A", "a"));
+		root.addElement(new StringDataElement("B", "b"));
+		root.addElement(sub);
+
+		return root;
+	}
+
+	/**
+	 * Converts a model hierarchy into nested lists.
+	 *
+	 * @param model The model to convert
+	 * @return A list containing the model values
+	 */
+	private List<Object> toList(DataElementListModel model) {
+		List<Object> values = new ArrayList<>();
+
+		for (int i = 0; i < model.getElementCount(); i++) {
+			Object value = model.getElement(i);
+
+			if (value instanceof DataElementListModel) {
+				value = toList((DataElementListModel) value);
+			}
+
+			values.add(value);
+		}
+
+		return values;
+	}
+}
@@ -0,0 +1,259 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import de.esoco.lib.model.ColumnDefinition;
+import de.esoco.lib.model.DataModel;
+import de.esoco.lib.model.FilterableDataModel;
+import de.esoco.lib.model.ListDataModel;
+import de.esoco.lib.model.SimpleColumnDefinition;
+import de.esoco.lib.property.SortDirection;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Test of the sorting of {@link FilterableListDataModel}. Date values are
+ * only tested in their millisecond form because the parsing of formatted
+ * dates requires the GWT locale.
+ *
+ * @author eso
+ */
+public class FilterableListDataModelTest {
+
+	private static final String[] INDEX_VALUES =
+		new String[] { "b", "A", null, "a", "", "c", "b", "Ab", "a", null };
+
+	/**
+	 * Test the sorting of date values.
+	 */
+	@Test
+	public void testDateSorting() {
+		FilterableListDataModel<DataModel<String>> model =
+			createModel(Date.class, "30000", "1000", "200", "86400000");
+
+		model.setSortDirection("Value", SortDirection.ASCENDING);
+		assertOrder(model, 2, 1, 0, 3);
+
+		model.setSortDirection("Value", SortDirection.DESCENDING);
+		assertOrder(model, 3, 0, 1, 2);
+	}
+
+	/**
+	 * Test that empty values are sorted last in both directions.
+	 */
+	@Test
+	public void testEmptyValuesLast() {
+		FilterableListDataModel<DataModel<String>> model =
+			createModel(String.class, "b", null, "a", "", "c");
+
+		model.setSortDirection("Value", SortDirection.ASCENDING);
+		assertOrder(model, 2, 0, 4, 1, 3);
+
+		model.setSortDirection("Value", SortDirection.DESCENDING);
+		assertOrder(model, 4, 0, 2, 1, 3);
+
+		model = createModel(Integer.class, "", "2", null, "1");
+
+		model.setSortDirection("Value", SortDirection.ASCENDING);
+		assertOrder(model, 3, 1, 0, 2);
+
+		model.setSortDirection("Value", SortDirection.DESCENDING);
+		assertOrder(model, 1, 3, 0, 2);
+	}
+
+	/**
+	 * Test the sorting of parsed values that are mixed with values that
+	 * cannot be parsed.
+	 */
+	@Test
+	public void testMixedValues() {
+		FilterableListDataModel<DataModel<String>> model =
+			createModel(Integer.class, "10", "x", "2", null, "a");
+
+		// unparsed values are sorted after the parsed values but before
+		// empty values, each group in the sort direction
+		model.setSortDirection("Value", SortDirection.ASCENDING);
+		assertOrder(model, 2, 0, 4, 1, 3);
+
+		model.setSortDirection("Value", SortDirection.DESCENDING);
+		assertOrder(model, 0, 2, 1, 4, 3);
+	}
+
+	/**
+	 * Test that the last sorted column has the highest priority if multiple
+	 * columns are sorted.
+	 */
+	@Test
+	public void testMultiColumnPriority() {
+		List<DataModel<String>> rows = new ArrayList<>();
+
+		addRow(rows, "b", "2");
+		addRow(rows, "a", "1");
+		addRow(rows, "a", "2");
+		addRow(rows, "b", "1");
+
+		FilterableListDataModel<DataModel<String>> model =
+			new FilterableListDataModel<>("TEST", rows,
+				Arrays.asList(createColumn("Row", Integer.class),
+					createColumn("Name", String.class),
+					createColumn("Value", Integer.class)));
+
+		model.setSortDirection("Name", SortDirection.ASCENDING);
+		model.setSortDirection("Value", SortDirection.DESCENDING);
+		assertOrder(model, 2, 0, 1, 3);
+
+		// a column that is sorted again becomes the primary sort column
+		model.setSortDirection("Name", null);
+		model.setSortDirection("Name", SortDirection.DESCENDING);
+		assertOrder(model, 0, 3, 2, 1);
+
+		model.removeSorting();
+		assertOrder(model, 0, 1, 2, 3);
+	}
+
+	/**
+	 * Test the sorting of numeric values.
+	 */
+	@Test
+	public void testNumericSorting() {
+		FilterableListDataModel<DataModel<String>> model =
+			createModel(Double.class, "10", "9", "100", "-1.5", "9.25");
+
+		model.setSortDirection("Value", SortDirection.ASCENDING);
+		assertOrder(model, 3, 1, 4, 0, 2);
+
+		model.setSortDirection("Value", SortDirection.DESCENDING);
+		assertOrder(model, 2, 0, 4, 1, 3);
+	}
+
+	/**
+	 * Test that the sorting of indexed models by the column index yields the
+	 * same order as the sorting by comparison.
+	 */
+	@Test
+	public void testSortByIndex() {
+		String[] values = new String[INDEX_VALUES.length * 10];
+
+		for (int i = 0; i < values.length; i++) {
+			values[i] = INDEX_VALUES[(i * 7) % INDEX_VALUES.length];
+		}
+
+		FilterableListDataModel<DataModel<String>> indexed =
+			createModel(String.class, values);
+		FilterableListDataModel<DataModel<String>> compared =
+			createModel(String.class, values);
+
+		indexed.setIndexThreshold(0);
+		compared.setIndexThreshold(Integer.MAX_VALUE);
+
+		for (SortDirection direction : SortDirection.values()) {
+			indexed.setSortDirection("Value", direction);
+			compared.setSortDirection("Value", direction);
+
+			assertArrayEquals(getRowNumbers(compared),
+				getRowNumbers(indexed), direction.name());
+		}
+
+		String filter = FilterableDataModel.CONSTRAINT_AND_PREFIX + "=c";
+
+		// the rows of a narrow filter are sorted by comparison
+		indexed.setFilter("Value", filter);
+		compared.setFilter("Value", filter);
+
+		assertArrayEquals(getRowNumbers(compared), getRowNumbers(indexed));
+	}
+
+	/**
+	 * Adds a row to a list.
+	 *
+	 * @param rows   The row list
+	 * @param values The values of the row after the row number
+	 */
+	private void addRow(List<DataModel<String>> rows, String... values) {
+		List<String> row = new ArrayList<>();
+
+		row.add(Integer.toString(rows.size()));
+		row.addAll(Arrays.asList(values));
+		rows.add(new ListDataModel<>("R", row));
+	}
+
+	/**
+	 * Asserts the order of the rows in a model.
+	 *
+	 * @param model      The model
+	 * @param rowNumbers The expected original numbers of the rows
+	 */
+	private void assertOrder(FilterableListDataModel<DataModel<String>> model,
+		int... rowNumbers) {
+		assertArrayEquals(rowNumbers, getRowNumbers(model));
+	}
+
+	/**
+	 * Creates a column definition.
+	 *
+	 * @param id       The column ID
+	 * @param datatype The column datatype
+	 * @return The new column definition
+	 */
+	private ColumnDefinition createColumn(String id, Class<?> datatype) {
+		return new SimpleColumnDefinition(id, id, datatype.getName(), true,
+			true, false);
+	}
+
+	/**
+	 * Creates a model with a single value column.
+	 *
+	 * @param datatype The datatype of the value column
+	 * @param values   The column values
+	 * @return The new model
+	 */
+	private FilterableListDataModel<DataModel<String>> createModel(
+		Class<?> datatype, String... values) {
+		List<DataModel<String>> rows = new ArrayList<>();
+
+		for (String value : values) {
+			addRow(rows, value);
+		}
+
+		return new FilterableListDataModel<>("TEST", rows,
+			Arrays.asList(createColumn("Row", Integer.class),
+				createColumn("Value", datatype)));
+	}
+
+	/**
+	 * Returns the original numbers of the rows in a model.
+	 *
+	 * @param model The model
+	 * @return The row numbers in the current order of the model
+	 */
+	private int[] getRowNumbers(
+		FilterableListDataModel<DataModel<String>> model) {
+		int[] rowNumbers = new int[model.getElementCount()];
+
+		for (int i = 0; i < rowNumbers.length; i++) {
+			rowNumbers[i] = Integer.parseInt(model.getElement(i).getElement(0));
+		}
+
+		return rowNumbers;
+	}
+}
@@ -0,0 +1,95 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Test of {@link PageCache}.
+ *
+ * @author eso
+ */
+public class PageCacheTest {
+
+	/**
+	 * Test the clearing of the cache.
+	 */
+	@Test
+	public void testClear() {
+		PageCache<String> cache = new PageCache<>(2, 10);
+
+		cache.putAll(0, Arrays.asList("R0", "R1", "R2"));
+		cache.clear();
+
+		assertEquals(0, cache.getPageCount());
+		assertNull(cache.get(0));
+	}
+
+	/**
+	 * Test the least-recently-used eviction of pages.
+	 */
+	@Test
+	public void testEviction() {
+		// 5 rows are rounded up to 3 pages
+		PageCache<String> cache = new PageCache<>(2, 5);
+
+		cache.putAll(0, Arrays.asList("R0", "R1", "R2", "R3", "R4", "R5"));
+		assertEquals(3, cache.getPageCount());
+
+		// access the first page so that the second becomes the eldest
+		assertEquals("R0", cache.get(0));
+		cache.putAll(6, Arrays.asList("R6"));
+
+		assertEquals(3, cache.getPageCount());
+		assertEquals("R1", cache.get(1));
+		assertNull(cache.get(2));
+		assertNull(cache.get(3));
+		assertEquals("R4", cache.get(4));
+		assertEquals("R6", cache.get(6));
+	}
+
+	/**
+	 * Test storing and reading rows across page boundaries.
+	 */
+	@Test
+	public void testPutAll() {
+		PageCache<String> cache = new PageCache<>(4, 100);
+
+		assertEquals(4, cache.getPageSize());
+		cache.putAll(3, Arrays.asList("R3", "R4", "R5"));
+
+		assertEquals(2, cache.getPageCount());
+		assertEquals("R3", cache.get(3));
+		assertEquals("R5", cache.get(5));
+
+		// rows of partially filled pages that have not been stored
+		assertNull(cache.get(2));
+		assertNull(cache.get(6));
+		assertNull(cache.get(8));
+
+		cache.putAll(5, Arrays.asList("X5", "R6"));
+		assertEquals(2, cache.getPageCount());
+		assertEquals("R4", cache.get(4));
+		assertEquals("X5", cache.get(5));
+		assertEquals("R6", cache.get(6));
+	}
+}
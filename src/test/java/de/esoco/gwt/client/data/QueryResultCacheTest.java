@@ -0,0 +1,169 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import de.esoco.gwt.client.data.QueryResultCache.Entry;
+import de.esoco.lib.property.SortDirection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test of {@link QueryResultCache}.
+ *
+ * @author eso
+ */
+public class QueryResultCacheTest {
+
+	/**
+	 * Resets the static state of the cache after each test.
+	 */
+	@AfterEach
+	public void reset() {
+		QueryResultCache.clear();
+		QueryResultCache.setMaxAge(5 * 60 * 1000);
+		QueryResultCache.setMaxQueries(20);
+	}
+
+	/**
+	 * Test the invalidation of referenced entries by clearing the cache.
+	 */
+	@Test
+	public void testClear() {
+		Entry entry = QueryResultCache.get("Q", 10, 100);
+
+		assertTrue(entry.isValid());
+		assertSame(entry, QueryResultCache.get("Q", 10, 100));
+
+		QueryResultCache.clear();
+
+		assertFalse(entry.isValid());
+		assertNotSame(entry, QueryResultCache.get("Q", 10, 100));
+	}
+
+	/**
+	 * Test the creation of cache keys.
+	 */
+	@Test
+	public void testCreateKey() {
+		Map<String, String> filters = new LinkedHashMap<>();
+		Map<String, String> reversed = new LinkedHashMap<>();
+		Map<String, SortDirection> sorting = new HashMap<>();
+
+		filters.put("A", "=1");
+		filters.put("B", "=2");
+		reversed.put("B", "=2");
+		reversed.put("A", "=1");
+
+		String key = QueryResultCache.createKey("Q", filters, sorting);
+
+		assertEquals(key, QueryResultCache.createKey("Q", reversed, sorting));
+		assertNotEquals(key,
+			QueryResultCache.createKey("P", filters, sorting));
+
+		sorting.put("A", SortDirection.ASCENDING);
+
+		assertNotEquals(key,
+			QueryResultCache.createKey("Q", filters, sorting));
+	}
+
+	/**
+	 * Test the expiration of entries.
+	 *
+	 * @throws InterruptedException If waiting for the expiration fails
+	 */
+	@Test
+	public void testMaxAge() throws InterruptedException {
+		Entry entry = QueryResultCache.get("Q", 10, 100);
+
+		QueryResultCache.setMaxAge(1);
+		Thread.sleep(10);
+
+		assertFalse(entry.isValid());
+		assertNotSame(entry, QueryResultCache.get("Q", 10, 100));
+
+		QueryResultCache.setMaxAge(0);
+		assertTrue(entry.isValid());
+	}
+
+	/**
+	 * Test the least-recently-used eviction of queries.
+	 */
+	@Test
+	public void testMaxQueries() {
+		Entry first = QueryResultCache.get("Q1", 10, 100);
+		Entry second = QueryResultCache.get("Q2", 10, 100);
+		Entry third = QueryResultCache.get("Q3", 10, 100);
+
+		// access the first query so that the second becomes the eldest
+		QueryResultCache.get("Q1", 10, 100);
+		QueryResultCache.setMaxQueries(2);
+
+		assertSame(first, QueryResultCache.get("Q1", 10, 100));
+		assertSame(third, QueryResultCache.get("Q3", 10, 100));
+		assertNotSame(second, QueryResultCache.get("Q2", 10, 100));
+
+		// adding the second query again has evicted the first
+		assertNotSame(first, QueryResultCache.get("Q1", 10, 100));
+	}
+
+	/**
+	 * Test the removal of a query that has been sent again by the server.
+	 */
+	@Test
+	public void testRemoveQuery() {
+		Map<String, String> filters = new HashMap<>();
+		Map<String, SortDirection> sorting = new HashMap<>();
+		String key = QueryResultCache.createKey("Q", filters, sorting);
+		String otherQueryKey =
+			QueryResultCache.createKey("Q1", filters, sorting);
+
+		filters.put("A", "=1");
+
+		String filteredKey = QueryResultCache.createKey("Q", filters, sorting);
+		Entry entry = QueryResultCache.get(key, 10, 100);
+		Entry filteredEntry = QueryResultCache.get(filteredKey, 10, 100);
+		Entry otherQueryEntry = QueryResultCache.get(otherQueryKey, 10, 100);
+
+		entry.querySize = 42;
+		QueryResultCache.removeQuery("Q");
+
+		// entries that are still referenced by models must become invalid
+		assertFalse(entry.isValid());
+		assertFalse(filteredEntry.isValid());
+		assertTrue(otherQueryEntry.isValid());
+
+		Entry newEntry = QueryResultCache.get(key, 10, 100);
+
+		assertNotSame(entry, newEntry);
+		assertEquals(0, newEntry.querySize);
+		assertNotSame(filteredEntry,
+			QueryResultCache.get(filteredKey, 10, 100));
+		assertSame(otherQueryEntry,
+			QueryResultCache.get(otherQueryKey, 10, 100));
+	}
+}
@@ -0,0 +1,260 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import de.esoco.lib.model.DataModel;
+import de.esoco.lib.model.FilterableDataModel;
+import de.esoco.lib.model.ListDataModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test of {@link RowFilter}.
+ *
+ * @author eso
+ */
+public class RowFilterTest {
+
+	private static final List<String> FIELDS = Arrays.asList("Name", "City");
+
+	private static final List<DataModel<String>> ROWS = new ArrayList<>();
+
+	static {
+		addRow("Alice", "Berlin");
+		addRow("bob", "Hamburg");
+		addRow("Carol", null);
+		addRow("alex", "Bremen");
+		addRow("Dave", "Berlin");
+	}
+
+	/**
+	 * Adds a test row.
+	 *
+	 * @param values The row values
+	 */
+	private static void addRow(String... values) {
+		ROWS.add(new ListDataModel<>("R" + ROWS.size(), Arrays.asList(values)));
+	}
+
+	/**
+	 * Creates a constraint that is combined with AND.
+	 *
+	 * @param constraint The comparison and value of the constraint
+	 * @return The constraint string
+	 */
+	private static String and(String constraint) {
+		return FilterableDataModel.CONSTRAINT_AND_PREFIX + constraint;
+	}
+
+	/**
+	 * Creates a constraint that is combined with OR.
+	 *
+	 * @param constraint The comparison and value of the constraint
+	 * @return The constraint string
+	 */
+	private static String or(String constraint) {
+		return FilterableDataModel.CONSTRAINT_OR_PREFIX + constraint;
+	}
+
+	/**
+	 * Test the combination of constraints and column filters.
+	 */
+	@Test
+	public void testCombination() {
+		String separator = FilterableDataModel.CONSTRAINT_SEPARATOR;
+
+		assertMatches(
+			filter("Name", and("=a*") + separator + and("\u2260alex")), 0);
+		assertMatches(filter("Name", and("=bob") + separator + or("=Dave")), 1,
+			4);
+		assertMatches(filter("Name", and("=a*"), "City", and("=Berlin")), 0);
+		assertMatches(filter("Name", and("=a*"), "City", or("=Hamburg")), 0,
+			1, 3);
+
+		// the values of unknown columns never match
+		assertMatches(filter("Name", and("=bob"), "Age", or("=42")), 1);
+		assertMatches(filter("Age", and("\u2260 42")));
+	}
+
+	/**
+	 * Test lexical comparisons.
+	 */
+	@Test
+	public void testComparison() {
+		assertMatches(filter("Name", and("<C")), 0);
+		assertMatches(filter("Name", and("\u2264Carol")), 0, 2);
+		assertMatches(filter("Name", and(">alex")), 1);
+		assertMatches(filter("Name", and("\u2265a")), 1, 3);
+	}
+
+	/**
+	 * Test the equals and not equals comparisons.
+	 */
+	@Test
+	public void testEquals() {
+		assertMatches(filter("Name", and("=Alice")), 0);
+		assertMatches(filter("Name", and("=alice")));
+		assertMatches(filter("Name", and("\u2260Alice")), 1, 2, 3, 4);
+
+		// NULL values never match
+		assertMatches(filter("City", and("\u2260Berlin")), 1, 3);
+		assertMatches(filter("City", and("=")));
+	}
+
+	/**
+	 * Test the checking of the filter definition.
+	 */
+	@Test
+	public void testHasDefinition() {
+		Map<String, String> filters = filter("Name", and("=a*"));
+		RowFilter filter = RowFilter.compile(filters, FIELDS);
+
+		assertTrue(filter.hasDefinition(filter("Name", and("=a*"))));
+		assertFalse(filter.hasDefinition(filter("Name", and("=b*"))));
+
+		// the filter must not be affected by changes of the constraints
+		filters.put("City", and("=Berlin"));
+		assertFalse(filter.hasDefinition(filters));
+	}
+
+	/**
+	 * Test the detection of narrower filters.
+	 */
+	@Test
+	public void testRefinement() {
+		RowFilter filter = compile(filter("Name", and("=a*")));
+
+		assertTrue(compile(filter("Name", and("=al*"))).isRefinementOf(filter));
+		assertTrue(compile(filter("Name", and("=al"))).isRefinementOf(filter));
+		assertTrue(compile(filter("Name", and("=a*"), "City", and("=Berlin")))
+			.isRefinementOf(filter));
+
+		assertFalse(filter.isRefinementOf(
+			compile(filter("Name", and("=a*"), "City", and("=Berlin")))));
+		assertFalse(compile(filter("Name", and("=b*"))).isRefinementOf(filter));
+		assertFalse(compile(filter("Name",
+			and("=al*") + FilterableDataModel.CONSTRAINT_SEPARATOR +
+				or("=b*"))).isRefinementOf(filter));
+		assertFalse(compile(filter("Name", and("=a*"), "City", or("=Berlin")))
+			.isRefinementOf(filter));
+	}
+
+	/**
+	 * Test the selection of candidate rows from column indexes.
+	 */
+	@Test
+	public void testSelectCandidates() {
+		ColumnIndex[] indexes = new ColumnIndex[] {
+			new ColumnIndex(ROWS, 0), new ColumnIndex(ROWS, 1) };
+
+		assertArrayEquals(new int[] { 0, 3 },
+			compile(filter("Name", and("=a*"))).selectCandidates(indexes));
+		assertArrayEquals(new int[] { 3 },
+			compile(filter("Name", and("=a*"), "City", and("=Bremen")))
+				.selectCandidates(indexes));
+		assertArrayEquals(new int[] { 1, 4 },
+			compile(filter("Name", and("~bob,Dave"))).selectCandidates(
+				indexes));
+		assertArrayEquals(new int[] { 1, 3 },
+			compile(filter("Name", and("\u2265a"))).selectCandidates(indexes));
+
+		assertNull(compile(filter("Name", and("\u2260bob"))).selectCandidates(
+			indexes));
+		assertNull(compile(filter("Name", and("=*o*"))).selectCandidates(
+			indexes));
+		assertNull(compile(filter("Name", and("=a*"), "City", or("=Berlin")))
+			.selectCandidates(indexes));
+	}
+
+	/**
+	 * Test the matching of value alternatives.
+	 */
+	@Test
+	public void testValueList() {
+		assertMatches(filter("Name", and("~bob,Dave")), 1, 4);
+		assertMatches(filter("Name", and("~a*,Dave")), 0, 3, 4);
+		assertMatches(filter("City", and("~Bonn,K\u00f6ln")));
+	}
+
+	/**
+	 * Test the matching of wildcard patterns.
+	 */
+	@Test
+	public void testWildcards() {
+		assertMatches(filter("Name", and("=a*")), 0, 3);
+		assertMatches(filter("Name", and("=A*")), 0);
+		assertMatches(filter("Name", and("=*o*")), 1, 2);
+		assertMatches(filter("City", and("=B*n")), 0, 3, 4);
+	}
+
+	/**
+	 * Asserts that a filter matches exactly certain test rows.
+	 *
+	 * @param filters The filter constraints
+	 * @param rows    The positions of the expected rows
+	 */
+	private void assertMatches(Map<String, String> filters, int... rows) {
+		RowFilter filter = compile(filters);
+		List<Integer> matches = new ArrayList<>();
+
+		for (int i = 0; i < ROWS.size(); i++) {
+			if (filter.matches(ROWS.get(i))) {
+				matches.add(i);
+			}
+		}
+
+		assertArrayEquals(rows,
+			matches.stream().mapToInt(Integer::intValue).toArray(),
+			filters.toString());
+	}
+
+	/**
+	 * Compiles a filter for the test rows.
+	 *
+	 * @param filters The filter constraints
+	 * @return The compiled filter
+	 */
+	private RowFilter compile(Map<String, String> filters) {
+		return RowFilter.compile(filters, FIELDS);
+	}
+
+	/**
+	 * Creates the filter constraints of a data model.
+	 *
+	 * @param columnConstraints Alternating column IDs and constraints
+	 * @return The ordered mapping from column IDs to constraints
+	 */
+	private Map<String, String> filter(String... columnConstraints) {
+		Map<String, String> filters = new LinkedHashMap<>();
+
+		for (int i = 0; i < columnConstraints.length; i += 2) {
+			filters.put(columnConstraints[i], columnConstraints[i + 1]);
+		}
+
+		return filters;
+	}
+}
@@ -0,0 +1,166 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.client.data;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test of {@link RowWindow}.
+ *
+ * @author eso
+ */
+public class RowWindowTest {
+
+	/**
+	 * Test appending rows beyond the capacity.
+	 */
+	@Test
+	public void testAppend() {
+		RowWindow<String> window = new RowWindow<>(3);
+
+		window.clear(10);
+		assertTrue(window.isEmpty());
+
+		for (int i = 10; i < 15; i++) {
+			window.append("R" + i);
+		}
+
+		assertEquals(3, window.size());
+		assertEquals(12, window.getStart());
+		assertEquals(15, window.getEnd());
+		assertFalse(window.contains(11));
+		assertFalse(window.contains(15));
+		assertRows(window, 12, 15);
+		assertThrows(IndexOutOfBoundsException.class, () -> window.get(11));
+	}
+
+	/**
+	 * Test changing the capacity.
+	 */
+	@Test
+	public void testCapacity() {
+		RowWindow<String> window = createWindow(4, 0, 6);
+
+		window.setCapacity(2);
+		assertEquals(2, window.getCapacity());
+		assertEquals(2, window.getStart());
+		assertRows(window, 2, 4);
+
+		window.setCapacity(5);
+		window.append("R4");
+		window.append("R5");
+		window.prepend("R1");
+		assertEquals(5, window.size());
+		assertRows(window, 1, 6);
+
+		window.setCapacity(0);
+		assertEquals(1, window.getCapacity());
+		assertRows(window, 1, 2);
+	}
+
+	/**
+	 * Test prepending rows beyond the capacity.
+	 */
+	@Test
+	public void testPrepend() {
+		RowWindow<String> window = createWindow(3, 5, 7);
+
+		for (int i = 4; i >= 2; i--) {
+			window.prepend("R" + i);
+		}
+
+		assertEquals(3, window.size());
+		assertEquals(2, window.getStart());
+		assertRows(window, 2, 5);
+		assertFalse(window.contains(5));
+	}
+
+	/**
+	 * Test the retaining of a row range.
+	 */
+	@Test
+	public void testRetain() {
+		RowWindow<String> window = createWindow(8, 10, 18);
+
+		window.retain(12, 15);
+		assertEquals(3, window.size());
+		assertRows(window, 12, 15);
+
+		window.retain(0, 100);
+		assertRows(window, 12, 15);
+
+		window.retain(20, 30);
+		assertTrue(window.isEmpty());
+		assertEquals(20, window.getStart());
+	}
+
+	/**
+	 * Test replacing rows.
+	 */
+	@Test
+	public void testSet() {
+		RowWindow<String> window = createWindow(3, 0, 5);
+
+		window.set(3, "X");
+		assertEquals("X", window.get(3));
+		assertEquals("R4", window.get(4));
+		assertThrows(IndexOutOfBoundsException.class,
+			() -> window.set(1, "X"));
+	}
+
+	/**
+	 * Asserts that a window contains the rows created by
+	 * {@link #createWindow(int, int, int)} for a certain range.
+	 *
+	 * @param window The window to check
+	 * @param from   The index of the first row
+	 * @param to     The index after the last row
+	 */
+	private void assertRows(RowWindow<String> window, int from, int to) {
+		assertEquals(from, window.getStart());
+		assertEquals(to, window.getEnd());
+
+		for (int i = from; i < to; i++) {
+			assertEquals("R" + i, window.get(i));
+		}
+	}
+
+	/**
+	 * Creates a window that has rows appended for a certain index range.
+	 *
+	 * @param capacity The window capacity
+	 * @param from     The index of the first row
+	 * @param to       The index after the last row
+	 * @return The new window
+	 */
+	private RowWindow<String> createWindow(int capacity, int from, int to) {
+		RowWindow<String> window = new RowWindow<>(capacity);
+
+		window.clear(from);
+
+		for (int i = from; i < to; i++) {
+			window.append("R" + i);
+		}
+
+		return window;
+	}
+}
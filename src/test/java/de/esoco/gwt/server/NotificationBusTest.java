@@ -0,0 +1,318 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import de.esoco.gwt.server.ClientNotificationService.OverflowPolicy;
+import de.esoco.gwt.server.NotificationBusMessage.Target;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test of the {@link NotificationBus} implementations. The socket bus is
+ * tested with nodes on the loopback interface.
+ *
+ * @author eso
+ */
+public class NotificationBusTest {
+
+	private static final String SECRET = "secret";
+
+	private static final int TIMEOUT = 5000;
+
+	private final List<NotificationBus> buses = new ArrayList<>();
+
+	private final List<ClientNotificationService> services =
+		new ArrayList<>();
+
+	/**
+	 * Closes all buses and services after a test.
+	 */
+	@AfterEach
+	public void closeAll() {
+		for (ClientNotificationService service : services) {
+			service.stop();
+		}
+
+		for (NotificationBus bus : buses) {
+			bus.close();
+		}
+	}
+
+	/**
+	 * Test that duplicates of the messages from the in-memory bus are
+	 * ignored by the notification service.
+	 *
+	 * @throws IOException If starting a bus fails
+	 */
+	@Test
+	public void testInMemoryDuplicates() throws IOException {
+		ClientNotificationService service = createService();
+		InMemoryNotificationBus serviceBus =
+			new InMemoryNotificationBus("DuplicateTest");
+		InMemoryNotificationBus bus =
+			new InMemoryNotificationBus("DuplicateTest");
+		BlockingQueue<NotificationBusMessage> received =
+			new LinkedBlockingQueue<>();
+
+		buses.add(bus);
+		service.setNotificationBus(serviceBus);
+		bus.start(received::add);
+
+		NotificationBusMessage message = createMessage("Node", 1, "Test");
+
+		bus.publish(message);
+		bus.publish(message);
+		bus.publish(createMessage("Node", 2, "Test"));
+
+		assertEquals(2, service.getBusMessageCount());
+		assertEquals(1, service.getDuplicateBusMessageCount());
+
+		// messages are only relayed to the other buses of the group
+		assertTrue(received.isEmpty());
+	}
+
+	/**
+	 * Test the dropping of messages if the queue of a peer is full.
+	 *
+	 * @throws Exception If the test fails
+	 */
+	@Test
+	public void testQueueOverflow() throws Exception {
+		assertEquals(Arrays.asList("Node:4", "Node:5"),
+			publishToFullQueue(OverflowPolicy.DROP_OLDEST));
+		assertEquals(Arrays.asList("Node:1", "Node:2"),
+			publishToFullQueue(OverflowPolicy.DROP_NEWEST));
+	}
+
+	/**
+	 * Test that nodes that don't send the shared secret are rejected.
+	 *
+	 * @throws Exception If the test fails
+	 */
+	@Test
+	public void testSharedSecret() throws Exception {
+		BlockingQueue<NotificationBusMessage> received =
+			new LinkedBlockingQueue<>();
+		InetSocketAddress address = getFreeAddress();
+
+		startSocketBus(address, Collections.emptyList(), SECRET,
+			received::add);
+
+		SocketNotificationBus invalid =
+			startSocketBus(getFreeAddress(), Arrays.asList(address),
+				"invalid", message -> {
+				});
+
+		invalid.publish(createMessage("Invalid", 1, "Test"));
+		assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+
+		SocketNotificationBus valid =
+			startSocketBus(getFreeAddress(), Arrays.asList(address), SECRET,
+				message -> {
+				});
+
+		valid.publish(createMessage("Valid", 1, "Test"));
+		assertEquals("Valid:1",
+			received.poll(TIMEOUT, TimeUnit.MILLISECONDS).getId());
+		assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Test the relaying of messages between two socket bus nodes and the
+	 * filtering of duplicates by the notification service.
+	 *
+	 * @throws Exception If the test fails
+	 */
+	@Test
+	public void testSocketLoopback() throws Exception {
+		InetSocketAddress serviceAddress = getFreeAddress();
+		InetSocketAddress nodeAddress = getFreeAddress();
+		BlockingQueue<NotificationBusMessage> received =
+			new LinkedBlockingQueue<>();
+		ClientNotificationService service = createService();
+
+		SocketNotificationBus serviceBus =
+			new SocketNotificationBus(serviceAddress,
+				Arrays.asList(nodeAddress), 10, OverflowPolicy.DROP_OLDEST,
+				SECRET);
+
+		service.setNotificationBus(serviceBus);
+
+		SocketNotificationBus node =
+			startSocketBus(nodeAddress, Arrays.asList(serviceAddress), SECRET,
+				received::add);
+
+		NotificationBusMessage message =
+			new NotificationBusMessage("Node", 1, Target.TOPIC, "Topic",
+				new BinaryNotification(1, "Path", new byte[] { 1, 2, 3 }));
+
+		node.publish(message);
+		node.publish(message);
+		node.publish(createMessage("Node", 2, "Test"));
+
+		awaitCondition(() -> service.getBusMessageCount() == 2 &&
+			service.getDuplicateBusMessageCount() == 1);
+
+		service.notifyTopic("Topic", "Reply");
+
+		NotificationBusMessage reply =
+			received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+
+		assertEquals(Target.TOPIC, reply.getTarget());
+		assertEquals("Topic", reply.getTargetKey());
+		assertEquals("Reply", reply.getMessage());
+		assertEquals(2, service.getBusMessageCount());
+	}
+
+	/**
+	 * Waits until a condition becomes TRUE.
+	 *
+	 * @param condition The condition
+	 * @throws InterruptedException If the waiting is interrupted
+	 */
+	private void awaitCondition(BooleanSupplier condition)
+		throws InterruptedException {
+		long end = System.currentTimeMillis() + TIMEOUT;
+
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < end, "Timeout");
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Creates a text message.
+	 *
+	 * @param node     The origin node
+	 * @param sequence The sequence number
+	 * @param text     The message text
+	 * @return The new message
+	 */
+	private NotificationBusMessage createMessage(String node, long sequence,
+		String text) {
+		return new NotificationBusMessage(node, sequence, Target.ALL, null,
+			text);
+	}
+
+	/**
+	 * Creates a notification service that will be stopped after the test.
+	 *
+	 * @return The new service
+	 */
+	private ClientNotificationService createService() {
+		ClientNotificationService service =
+			new ClientNotificationService("test");
+
+		services.add(service);
+
+		return service;
+	}
+
+	/**
+	 * Returns a free address on the loopback interface.
+	 *
+	 * @return The socket address
+	 * @throws IOException If no free port is available
+	 */
+	private InetSocketAddress getFreeAddress() throws IOException {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+
+		try (ServerSocket socket = new ServerSocket(0, 1, loopback)) {
+			return new InetSocketAddress(loopback, socket.getLocalPort());
+		}
+	}
+
+	/**
+	 * Publishes five messages to a bus with a peer queue size of two before
+	 * the bus is started and returns the IDs of the messages that are
+	 * received by the peer.
+	 *
+	 * @param policy The overflow policy
+	 * @return The IDs of the received messages
+	 * @throws Exception If the test fails
+	 */
+	private List<String> publishToFullQueue(OverflowPolicy policy)
+		throws Exception {
+		BlockingQueue<NotificationBusMessage> received =
+			new LinkedBlockingQueue<>();
+		InetSocketAddress address = getFreeAddress();
+		List<String> ids = new ArrayList<>();
+
+		startSocketBus(address, Collections.emptyList(), null, received::add);
+
+		SocketNotificationBus bus =
+			new SocketNotificationBus(getFreeAddress(),
+				Arrays.asList(address), 2, policy);
+
+		buses.add(bus);
+
+		for (int i = 1; i <= 5; i++) {
+			bus.publish(createMessage("Node", i, "Test"));
+		}
+
+		assertEquals(3, bus.getDroppedMessageCount());
+		bus.start(message -> {
+		});
+
+		ids.add(received.poll(TIMEOUT, TimeUnit.MILLISECONDS).getId());
+		ids.add(received.poll(TIMEOUT, TimeUnit.MILLISECONDS).getId());
+		assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+
+		return ids;
+	}
+
+	/**
+	 * Starts a socket bus that will be closed after the test.
+	 *
+	 * @param address  The local address
+	 * @param peers    The peer addresses
+	 * @param secret   The shared secret
+	 * @param receiver The message receiver
+	 * @return The new bus
+	 * @throws IOException If starting the bus fails
+	 */
+	private SocketNotificationBus startSocketBus(InetSocketAddress address,
+		List<InetSocketAddress> peers, String secret,
+		Consumer<NotificationBusMessage> receiver) throws IOException {
+		SocketNotificationBus bus =
+			new SocketNotificationBus(address, peers, 10,
+				OverflowPolicy.DROP_OLDEST, secret);
+
+		buses.add(bus);
+		bus.start(receiver);
+
+		return bus;
+	}
+}
@@ -0,0 +1,213 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import de.esoco.gwt.server.RequestAdmission.Ticket;
+import de.esoco.gwt.shared.ServiceOverloadException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test of {@link RequestAdmission}.
+ *
+ * @author eso
+ */
+public class RequestAdmissionTest {
+
+	/**
+	 * Test the concurrency limit of a command.
+	 *
+	 * @throws ServiceOverloadException If a request is rejected unexpectedly
+	 */
+	@Test
+	public void testCommandLimit() throws ServiceOverloadException {
+		RequestAdmission admission = new RequestAdmission();
+
+		admission.setCommandLimit("Slow", 1);
+
+		Ticket ticket = admission.admit("A", "Slow");
+
+		assertThrows(ServiceOverloadException.class,
+			() -> admission.admit("A", "Slow"));
+		admission.admit("A", "Fast").release();
+		admission.admit("B", "Slow").release();
+
+		// repeated releases must not free additional slots
+		ticket.release();
+		ticket.release();
+		ticket = admission.admit("A", "Slow");
+
+		assertThrows(ServiceOverloadException.class,
+			() -> admission.admit("A", "Slow"));
+		assertEquals(2, admission.getConcurrencyRejectionCount());
+		ticket.release();
+	}
+
+	/**
+	 * Test the weighted round-robin order of waiting requests.
+	 *
+	 * @throws Exception If the test fails
+	 */
+	@Test
+	public void testFairQueuing() throws Exception {
+		RequestAdmission admission = new RequestAdmission();
+
+		admission.setActiveRequestLimit(1, 5000);
+
+		assertEquals(Arrays.asList("A1", "B1", "A2", "B2", "A3"),
+			executeQueued(admission, "A1", "A2", "A3", "B1", "B2"));
+
+		admission.setSessionWeights(session -> session.equals("A") ? 2 : 1);
+
+		assertEquals(Arrays.asList("A1", "A2", "B1", "A3", "B2"),
+			executeQueued(admission, "A1", "A2", "A3", "B1", "B2"));
+	}
+
+	/**
+	 * Test the rejection of requests that wait too long for an execution
+	 * slot.
+	 *
+	 * @throws ServiceOverloadException If a request is rejected unexpectedly
+	 */
+	@Test
+	public void testQueueTimeout() throws ServiceOverloadException {
+		RequestAdmission admission = new RequestAdmission();
+
+		admission.setActiveRequestLimit(1, 50);
+
+		Ticket ticket = admission.admit("A", "Command");
+
+		assertThrows(ServiceOverloadException.class,
+			() -> admission.admit("B", "Command"));
+		assertEquals(1, admission.getQueueRejectionCount());
+
+		ticket.release();
+		admission.admit("B", "Command").release();
+		assertEquals(2, admission.getAdmittedRequestCount());
+	}
+
+	/**
+	 * Test the token bucket rate limit of sessions.
+	 *
+	 * @throws ServiceOverloadException If a request is rejected unexpectedly
+	 */
+	@Test
+	public void testRateLimit() throws ServiceOverloadException {
+		RequestAdmission admission = new RequestAdmission();
+
+		admission.setRateLimit(0.01, 2);
+		admission.admit("A", "Command").release();
+		admission.admit("A", "Command").release();
+
+		ServiceOverloadException e =
+			assertThrows(ServiceOverloadException.class,
+				() -> admission.admit("A", "Command"));
+
+		assertTrue(e.isRecoverable());
+		assertTrue(e.getRetryDelay() > 0);
+		assertEquals(1, admission.getRateRejectionCount());
+
+		// other sessions have their own bucket
+		admission.admit("B", "Command").release();
+	}
+
+	/**
+	 * Test the concurrency limit of sessions.
+	 *
+	 * @throws ServiceOverloadException If a request is rejected unexpectedly
+	 */
+	@Test
+	public void testSessionLimit() throws ServiceOverloadException {
+		RequestAdmission admission = new RequestAdmission();
+
+		admission.setSessionLimit(2);
+
+		Ticket first = admission.admit("A", "Command");
+		Ticket second = admission.admit("A", "Command");
+
+		ServiceOverloadException e =
+			assertThrows(ServiceOverloadException.class,
+				() -> admission.admit("A", "Command"));
+
+		assertTrue(e.isRecoverable());
+		admission.admit("B", "Command").release();
+
+		first.release();
+		admission.admit("A", "Command").release();
+		second.release();
+
+		assertEquals(1, admission.getConcurrencyRejectionCount());
+		assertEquals(4, admission.getAdmittedRequestCount());
+	}
+
+	/**
+	 * Queues requests while the only execution slot is occupied and returns
+	 * the order in which they have been executed after the slot has been
+	 * released.
+	 *
+	 * @param admission The request admission with an active request limit
+	 *                  of one
+	 * @param requests  The request names, starting with the session ID
+	 * @return The request names in the order of execution
+	 * @throws Exception If queuing or executing the requests fails
+	 */
+	private List<String> executeQueued(RequestAdmission admission,
+		String... requests) throws Exception {
+		List<String> executed = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> threads = new ArrayList<>();
+		Ticket blocking = admission.admit("X", "Command");
+
+		for (String request : requests) {
+			Thread thread = new Thread(() -> {
+				try {
+					Ticket ticket =
+						admission.admit(request.substring(0, 1), "Command");
+
+					executed.add(request);
+					ticket.release();
+				} catch (ServiceOverloadException e) {
+					executed.add(e.getMessage());
+				}
+			});
+
+			thread.start();
+			threads.add(thread);
+
+			// wait until the request is queued to have a defined order
+			while (thread.isAlive() &&
+				thread.getState() != Thread.State.TIMED_WAITING) {
+				Thread.sleep(1);
+			}
+		}
+
+		blocking.release();
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		return executed;
+	}
+}
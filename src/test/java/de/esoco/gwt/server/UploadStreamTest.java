@@ -0,0 +1,154 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test of {@link UploadStream}.
+ *
+ * @author eso
+ */
+public class UploadStreamTest {
+
+	/**
+	 * Test the capacity limit and the notification of the space listener.
+	 *
+	 * @throws IOException If reading fails
+	 */
+	@Test
+	public void testCapacity() throws IOException {
+		UploadStream stream = new UploadStream(4, 1000, null);
+		AtomicBoolean notified = new AtomicBoolean();
+
+		assertTrue(stream.append(new byte[] { 1, 2, 3 }, 0, 3));
+		assertFalse(stream.append(new byte[] { 4, 5 }, 0, 2));
+		assertFalse(stream.hasCapacity());
+
+		stream.setSpaceListener(() -> notified.set(true));
+		assertFalse(notified.get());
+
+		// reading a part of the first chunk doesn't free space
+		assertEquals(1, stream.read());
+		assertFalse(notified.get());
+
+		assertEquals(2, stream.read(new byte[4], 0, 4));
+		assertTrue(notified.get());
+		assertTrue(stream.hasCapacity());
+
+		// invoked immediately if space is available
+		notified.set(false);
+		stream.setSpaceListener(() -> notified.set(true));
+		assertTrue(notified.get());
+	}
+
+	/**
+	 * Test that the data that is discarded on closing is reported to the
+	 * consumption listener.
+	 */
+	@Test
+	public void testClose() {
+		List<Integer> consumed = new ArrayList<>();
+		UploadStream stream = new UploadStream(100, 1000, consumed::add);
+		AtomicBoolean notified = new AtomicBoolean();
+
+		stream.append(new byte[10], 0, 10);
+		stream.append(new byte[5], 0, 5);
+		stream.close();
+
+		assertEquals(Arrays.asList(15), consumed);
+
+		// chunks appended after closing are discarded immediately
+		assertTrue(stream.append(new byte[7], 0, 7));
+		assertEquals(Arrays.asList(15, 7), consumed);
+
+		stream.setSpaceListener(() -> notified.set(true));
+		assertTrue(notified.get());
+		assertThrows(IOException.class, () -> stream.read());
+	}
+
+	/**
+	 * Test that a failure is thrown to the reader.
+	 */
+	@Test
+	public void testFail() {
+		UploadStream stream = new UploadStream(100, 1000, null);
+		IOException failure = new IOException("Test");
+
+		stream.fail(failure);
+
+		assertSame(failure, assertThrows(IOException.class, stream::read));
+	}
+
+	/**
+	 * Test the timeout of a reader that doesn't receive data.
+	 */
+	@Test
+	public void testIdleTimeout() {
+		UploadStream stream = new UploadStream(100, 50, null);
+
+		assertThrows(IOException.class, stream::read);
+	}
+
+	/**
+	 * Test reading the data of multiple chunks that are appended by another
+	 * thread.
+	 *
+	 * @throws Exception If the test fails
+	 */
+	@Test
+	public void testRead() throws Exception {
+		List<Integer> consumed = new ArrayList<>();
+		UploadStream stream = new UploadStream(100, 5000, consumed::add);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] data = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+		byte[] buffer = new byte[3];
+		int count;
+
+		Thread producer = new Thread(() -> {
+			stream.append(data, 0, 5);
+			stream.append(data, 5, 3);
+			stream.finish();
+		});
+
+		producer.start();
+
+		while ((count = stream.read(buffer, 0, buffer.length)) >= 0) {
+			output.write(buffer, 0, count);
+		}
+
+		producer.join();
+
+		assertArrayEquals(data, output.toByteArray());
+		assertEquals(Arrays.asList(5, 3), consumed);
+		assertEquals(-1, stream.read());
+	}
+}
@@ -0,0 +1,84 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-gwt' project.
+// Copyright 2019 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.gwt.shared;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test of {@link NotificationBatch}.
+ *
+ * @author eso
+ */
+public class NotificationBatchTest {
+
+	/**
+	 * Test the encoding and decoding of message batches.
+	 */
+	@Test
+	public void testBatch() {
+		List<String> messages =
+			Arrays.asList("Update:1", "", "Text with: colons", "12:34",
+				"\u00e4\u00f6\u00fc");
+
+		String frame = NotificationBatch.encode(messages);
+
+		assertTrue(NotificationBatch.isBatch(frame));
+		assertEquals(messages, NotificationBatch.decode(frame));
+	}
+
+	/**
+	 * Test of {@link NotificationBatch#decode(String)} with invalid frames.
+	 */
+	@Test
+	public void testInvalidBatch() {
+		assertThrows(IllegalArgumentException.class,
+			() -> NotificationBatch.decode(
+				NotificationBatch.BATCH_PREFIX + "5:abc"));
+		assertThrows(IllegalArgumentException.class,
+			() -> NotificationBatch.decode(
+				NotificationBatch.BATCH_PREFIX + "abc"));
+	}
+
+	/**
+	 * Test that single messages are not encoded as a batch unless they could
+	 * be mistaken for one.
+	 */
+	@Test
+	public void testSingleMessage() {
+		String batchLike = NotificationBatch.BATCH_PREFIX + "3:abc";
+
+		assertEquals("Message",
+			NotificationBatch.encode(Collections.singletonList("Message")));
+		assertFalse(NotificationBatch.isBatch("Message"));
+
+		String frame =
+			NotificationBatch.encode(Collections.singletonList(batchLike));
+
+		assertTrue(NotificationBatch.isBatch(frame));
+		assertEquals(Collections.singletonList(batchLike),
+			NotificationBatch.decode(frame));
+	}
+}